@@ -0,0 +1,10 @@
+-- The indexes of the changelog 20261018140000_added_conversation_indexes.xml, keep them aligned.
+
+set search_path = bench;
+
+create index ix_conversation__room_id_created_date on conversation (room_id, created_date);
+create index ix_conversation__room_id_id_sender_id on conversation (room_id, id, sender_id);
+create index ix_rel_room__user__user_id_room_id on rel_room__user (user_id, room_id);
+create index ix_room_read_state__user_id_unread on room_read_state (user_id, room_id, unread_count) where unread_count > 0;
+
+vacuum analyze;
@@ -0,0 +1,53 @@
+-- The SQL of the hot queries of ConversationRepository and RoomReadStateRepository, as generated by Hibernate,
+-- with the parameters chosen by seed.sql.
+
+set search_path = bench;
+select * from params \gset
+
+\echo '== history page (ConversationRepository.findAllByRoomId)'
+explain (analyze, buffers)
+select * from conversation where room_id = :hot_room order by created_date desc limit 20;
+
+\echo '== history count (ConversationRepository.findAllByRoomId)'
+explain (analyze, buffers)
+select count(*) from conversation where room_id = :hot_room;
+
+\echo '== last conversations of the rooms of a user (ConversationRepository.findLastConversationIdsByRoomIds)'
+explain (analyze, buffers)
+select room_id, max(id) from conversation
+where room_id in (select room_id from rel_room__user where user_id = :busy_user)
+group by room_id;
+
+\echo '== senders of the conversations read (ConversationRepository.findSenderLoginsByRoomIdAndIdBetween)'
+explain (analyze, buffers)
+select distinct u.login from conversation c join jhi_user u on u.id = c.sender_id
+where c.room_id = :hot_room and c.id > :hot_watermark and c.id <= :hot_last_id and u.login <> :'reader_login';
+
+\echo '== unread count after a new watermark (RoomReadStateRepository.advanceWatermark)'
+explain (analyze, buffers)
+select count(*) from conversation where room_id = :hot_room and sender_id <> :reader_id and id > :hot_watermark;
+
+\echo '== unread counts by room (RoomReadStateRepository.findUnreadCountsByUserIdGroupedByRoom)'
+explain (analyze, buffers)
+select room_id, unread_count from room_read_state where user_id = :busy_user and unread_count > 0;
+
+\echo '== unread counts by sender (RoomReadStateRepository.findUnreadCountsByUserIdGroupedBySender)'
+explain (analyze, buffers)
+select u.user_id, sum(s.unread_count) from room_read_state s
+join room r on r.id = s.room_id
+join rel_room__user u on u.room_id = r.id
+where s.user_id = :busy_user and u.user_id <> :busy_user and r.group_id is null and s.unread_count > 0
+group by u.user_id;
+
+\echo '== rooms of a user (RoomRepository.findAllByUsersIsContaining)'
+explain (analyze, buffers)
+select r.* from room r where exists (select 1 from rel_room__user u where u.room_id = r.id and u.user_id = :busy_user);
+
+\echo '== unread counts by room, counted over the conversations as before the counters'
+explain (analyze, buffers)
+select r.id, count(c.id) from conversation c
+join room r on r.id = c.room_id
+join rel_room__user u on u.room_id = r.id
+left join room_read_state s on s.room_id = r.id and s.user_id = u.user_id
+where u.user_id = :busy_user and c.sender_id <> :busy_user and c.id > coalesce(s.last_read_conversation_id, 0)
+group by r.id;
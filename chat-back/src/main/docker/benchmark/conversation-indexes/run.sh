@@ -0,0 +1,33 @@
+#!/bin/sh
+# Compares the plans and execution times of the hot queries without and with the indexes of
+# 20261018140000_added_conversation_indexes.xml, on a seeded dataset of 10 000 000 conversations.
+#
+# Usage: ./run.sh [psql options]
+# Defaults to the database of src/main/docker/postgresql.yml, started with:
+#   docker-compose -f src/main/docker/postgresql.yml up -d
+# Seeding takes several minutes and about 3 GB of disk.
+
+set -e
+cd "$(dirname "$0")"
+[ $# -eq 0 ] && set -- -h localhost -U chatty chatty
+psql="psql -X -q -v ON_ERROR_STOP=1 $*"
+
+echo "Seeding the bench schema"
+$psql -f seed.sql
+
+# the first run warms the cache, the second one is kept
+$psql -f queries.sql > /dev/null
+$psql -f queries.sql > before.txt
+echo "Creating the indexes"
+$psql -f indexes.sql
+$psql -f queries.sql > /dev/null
+$psql -f queries.sql > after.txt
+
+summary() {
+    awk '/^== / { query = substr($0, 4) } /Execution Time/ { print $3 "\t" query }' "$1"
+}
+echo "Execution times in ms, before and after the indexes (plans in before.txt and after.txt)"
+summary before.txt > before.tsv
+summary after.txt > after.tsv
+paste before.tsv after.tsv | awk -F '\t' '{ printf "%10s %10s  %s\n", $1, $3, $2 }'
+rm before.tsv after.tsv
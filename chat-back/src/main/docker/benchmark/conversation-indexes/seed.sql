@@ -0,0 +1,107 @@
+-- Seeds the bench schema with a dataset shaped like a busy chat: 20 000 users, 200 000 rooms (180 000 private rooms
+-- of 2 members and 20 000 group rooms of 20) and 10 000 000 conversations, most of them in a few hot rooms.
+-- The tables mirror those created by Liquibase, without their indexes; the data only depends on the seed below.
+
+drop schema if exists bench cascade;
+create schema bench;
+set search_path = bench;
+select setseed(0.42);
+
+create table jhi_user (
+    id bigint primary key,
+    login varchar(50) not null unique
+);
+
+create table room (
+    id bigint primary key,
+    name varchar(255),
+    group_id bigint,
+    created_by varchar(50) not null,
+    created_date timestamp
+);
+
+create table rel_room__user (
+    user_id bigint not null references jhi_user (id),
+    room_id bigint not null references room (id),
+    primary key (room_id, user_id)
+);
+
+create table conversation (
+    id bigint primary key,
+    content varchar(255),
+    room_id bigint references room (id),
+    sender_id bigint references jhi_user (id),
+    created_by varchar(50) not null,
+    created_date timestamp,
+    last_modified_by varchar(50),
+    last_modified_date timestamp
+);
+
+create table room_read_state (
+    room_id bigint not null references room (id),
+    user_id bigint not null references jhi_user (id),
+    last_read_conversation_id bigint not null,
+    last_read_date timestamp,
+    unread_count integer not null default 0,
+    primary key (room_id, user_id)
+);
+
+insert into jhi_user (id, login)
+select id, 'user' || id from generate_series(1, 20000) id;
+
+insert into room (id, name, group_id, created_by, created_date)
+select id, 'room' || id, case when id > 180000 then 1 + id % 100 end, 'system', timestamp '2026-01-01'
+from generate_series(1, 200000) id;
+
+-- member m of room r: 2 members per private room, 20 per group room
+create function room_member(r bigint, m int) returns bigint language sql immutable as $$
+    select case
+        when r <= 180000 and m = 0 then (r - 1) % 20000 + 1
+        when r <= 180000 then ((r - 1) % 20000 + 1 + (r - 1) / 20000 * 97) % 20000 + 1
+        else (r * 31 + m * 1009) % 20000 + 1
+    end
+$$;
+
+insert into rel_room__user (room_id, user_id)
+select r.id, room_member(r.id, m)
+from room r cross join generate_series(0, 19) m
+where m < case when r.id <= 180000 then 2 else 20 end;
+
+-- rooms drawn with a cubic skew: the first rooms get most of the conversations
+insert into conversation (id, content, room_id, sender_id, created_by, created_date)
+select c.id, md5(c.id::text), c.room_id, room_member(c.room_id, c.m), 'user' || room_member(c.room_id, c.m),
+    timestamp '2026-01-01' + c.id * interval '1 second'
+from (
+    select id, r.room_id, floor(random() * case when r.room_id <= 180000 then 2 else 20 end)::int m
+    from (select id, floor(200000 * power(random(), 3))::bigint + 1 room_id from generate_series(1, 10000000) id) r
+) c;
+
+-- members have read their rooms up to a random point of the last tenth of the conversations, a third of them entirely
+insert into room_read_state (room_id, user_id, last_read_conversation_id, last_read_date)
+select ru.room_id, ru.user_id,
+    case when random() < 0.33 then l.last_id else floor(l.last_id * (0.9 + random() * 0.1))::bigint end,
+    timestamp '2026-06-01'
+from rel_room__user ru
+join (select room_id, max(id) last_id from conversation group by room_id) l on l.room_id = ru.room_id;
+
+update room_read_state s set unread_count = u.unread_count
+from (
+    select s.room_id, s.user_id, count(*) unread_count
+    from room_read_state s
+    join conversation c on c.room_id = s.room_id and c.id > s.last_read_conversation_id and c.sender_id <> s.user_id
+    group by s.room_id, s.user_id
+) u
+where u.room_id = s.room_id and u.user_id = s.user_id;
+
+-- parameters of the queries: the busiest room, the member with the most rooms, a watermark in the busiest room
+create table params as
+select
+    hot.room_id hot_room,
+    hot.last_id hot_last_id,
+    (select id from conversation where room_id = hot.room_id order by id desc offset 500 limit 1) hot_watermark,
+    room_member(hot.room_id, 0) reader_id,
+    'user' || room_member(hot.room_id, 0) reader_login,
+    (select user_id from rel_room__user group by user_id order by count(*) desc, user_id limit 1) busy_user
+from (select room_id, max(id) last_id from conversation group by room_id order by count(*) desc limit 1) hot;
+
+vacuum analyze;
@@ -1,5 +1,6 @@
 package com.chatty.config;
 
+import java.util.UUID;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -9,4 +10,655 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
-public class ApplicationProperties {}
+public class ApplicationProperties {
+
+    private final Authentication authentication = new Authentication();
+
+    private final Cache cache = new Cache();
+
+    private final Conversation conversation = new Conversation();
+
+    private final Presence presence = new Presence();
+
+    private final Websocket websocket = new Websocket();
+
+    public Authentication getAuthentication() {
+        return authentication;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Conversation getConversation() {
+        return conversation;
+    }
+
+    public Presence getPresence() {
+        return presence;
+    }
+
+    public Websocket getWebsocket() {
+        return websocket;
+    }
+
+    public static class Authentication {
+
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+
+        private int queueCapacity = 200;
+
+        private long queueTimeoutMs = 5000;
+
+        private int retryAfterSeconds = 5;
+
+        private final RefreshToken refreshToken = new RefreshToken();
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getQueueTimeoutMs() {
+            return queueTimeoutMs;
+        }
+
+        public void setQueueTimeoutMs(long queueTimeoutMs) {
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public RefreshToken getRefreshToken() {
+            return refreshToken;
+        }
+
+        public static class RefreshToken {
+
+            private long validityInSeconds = 86400;
+
+            private long revocationSyncIntervalMs = 60000;
+
+            public long getValidityInSeconds() {
+                return validityInSeconds;
+            }
+
+            public void setValidityInSeconds(long validityInSeconds) {
+                this.validityInSeconds = validityInSeconds;
+            }
+
+            public long getRevocationSyncIntervalMs() {
+                return revocationSyncIntervalMs;
+            }
+
+            public void setRevocationSyncIntervalMs(long revocationSyncIntervalMs) {
+                this.revocationSyncIntervalMs = revocationSyncIntervalMs;
+            }
+        }
+    }
+
+    public static class Cache {
+
+        private final RoomMembership roomMembership = new RoomMembership();
+
+        private final UsersByLogin usersByLogin = new UsersByLogin();
+
+        private final VerifiedTokens verifiedTokens = new VerifiedTokens();
+
+        public RoomMembership getRoomMembership() {
+            return roomMembership;
+        }
+
+        public UsersByLogin getUsersByLogin() {
+            return usersByLogin;
+        }
+
+        public VerifiedTokens getVerifiedTokens() {
+            return verifiedTokens;
+        }
+
+        public static class RoomMembership {
+
+            private int maxEntries = 10000;
+
+            private long timeToLiveSeconds = 600;
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+        }
+
+        public static class UsersByLogin {
+
+            private long maxEntries = 10000;
+
+            private long timeToLiveSeconds = 600;
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+        }
+
+        public static class VerifiedTokens {
+
+            private int maxEntries = 10000;
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+        }
+    }
+
+    public static class Conversation {
+
+        private final WriteBehind writeBehind = new WriteBehind();
+
+        private final ReadReceipt readReceipt = new ReadReceipt();
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public ReadReceipt getReadReceipt() {
+            return readReceipt;
+        }
+
+        public static class ReadReceipt {
+
+            private long coalesceIntervalMs = 1000;
+
+            public long getCoalesceIntervalMs() {
+                return coalesceIntervalMs;
+            }
+
+            public void setCoalesceIntervalMs(long coalesceIntervalMs) {
+                this.coalesceIntervalMs = coalesceIntervalMs;
+            }
+        }
+
+        public static class WriteBehind {
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 25;
+
+            private long flushIntervalMs = 200;
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+        }
+    }
+
+    public static class Presence {
+
+        private long snapshotIntervalMs = 50;
+
+        private long broadcastIntervalMs = 250;
+
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+
+        public long getBroadcastIntervalMs() {
+            return broadcastIntervalMs;
+        }
+
+        public void setBroadcastIntervalMs(long broadcastIntervalMs) {
+            this.broadcastIntervalMs = broadcastIntervalMs;
+        }
+    }
+
+    public static class Websocket {
+
+        private final Broker broker = new Broker();
+
+        private final Cluster cluster = new Cluster();
+
+        private final Channels channels = new Channels();
+
+        private final Transport transport = new Transport();
+
+        public Broker getBroker() {
+            return broker;
+        }
+
+        public Cluster getCluster() {
+            return cluster;
+        }
+
+        public Channels getChannels() {
+            return channels;
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        public static class Transport {
+
+            private int sendTimeLimitMs = 10 * 1000;
+
+            private int sendBufferSizeLimit = 512 * 1024;
+
+            private int messageSizeLimit = 64 * 1024;
+
+            private long slowConsumerThresholdMs = 1000;
+
+            public int getSendTimeLimitMs() {
+                return sendTimeLimitMs;
+            }
+
+            public void setSendTimeLimitMs(int sendTimeLimitMs) {
+                this.sendTimeLimitMs = sendTimeLimitMs;
+            }
+
+            public int getSendBufferSizeLimit() {
+                return sendBufferSizeLimit;
+            }
+
+            public void setSendBufferSizeLimit(int sendBufferSizeLimit) {
+                this.sendBufferSizeLimit = sendBufferSizeLimit;
+            }
+
+            public int getMessageSizeLimit() {
+                return messageSizeLimit;
+            }
+
+            public void setMessageSizeLimit(int messageSizeLimit) {
+                this.messageSizeLimit = messageSizeLimit;
+            }
+
+            public long getSlowConsumerThresholdMs() {
+                return slowConsumerThresholdMs;
+            }
+
+            public void setSlowConsumerThresholdMs(long slowConsumerThresholdMs) {
+                this.slowConsumerThresholdMs = slowConsumerThresholdMs;
+            }
+        }
+
+        public static class Channels {
+
+            private final Inbound inbound = new Inbound();
+
+            private final Channel outbound = new Channel(8, 32);
+
+            public Inbound getInbound() {
+                return inbound;
+            }
+
+            public Channel getOutbound() {
+                return outbound;
+            }
+
+            public static class Channel {
+
+                private int corePoolSize;
+
+                private int maxPoolSize;
+
+                private int queueCapacity = 10000;
+
+                private int keepAliveSeconds = 60;
+
+                public Channel(int corePoolSize, int maxPoolSize) {
+                    this.corePoolSize = corePoolSize;
+                    this.maxPoolSize = maxPoolSize;
+                }
+
+                public int getCorePoolSize() {
+                    return corePoolSize;
+                }
+
+                public void setCorePoolSize(int corePoolSize) {
+                    this.corePoolSize = corePoolSize;
+                }
+
+                public int getMaxPoolSize() {
+                    return maxPoolSize;
+                }
+
+                public void setMaxPoolSize(int maxPoolSize) {
+                    this.maxPoolSize = maxPoolSize;
+                }
+
+                public int getQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                public void setQueueCapacity(int queueCapacity) {
+                    this.queueCapacity = queueCapacity;
+                }
+
+                public int getKeepAliveSeconds() {
+                    return keepAliveSeconds;
+                }
+
+                public void setKeepAliveSeconds(int keepAliveSeconds) {
+                    this.keepAliveSeconds = keepAliveSeconds;
+                }
+            }
+
+            public static class Inbound extends Channel {
+
+                private final VirtualThreads virtualThreads = new VirtualThreads();
+
+                public Inbound() {
+                    super(16, 64);
+                }
+
+                public VirtualThreads getVirtualThreads() {
+                    return virtualThreads;
+                }
+
+                public static class VirtualThreads {
+
+                    private boolean enabled = false;
+
+                    private int maxConcurrency = 1000;
+
+                    public boolean isEnabled() {
+                        return enabled;
+                    }
+
+                    public void setEnabled(boolean enabled) {
+                        this.enabled = enabled;
+                    }
+
+                    public int getMaxConcurrency() {
+                        return maxConcurrency;
+                    }
+
+                    public void setMaxConcurrency(int maxConcurrency) {
+                        this.maxConcurrency = maxConcurrency;
+                    }
+                }
+            }
+        }
+
+        public static class Cluster {
+
+            private ClusterTransportType transport = ClusterTransportType.NONE;
+
+            private String nodeId = UUID.randomUUID().toString();
+
+            private long heartbeatIntervalMs = 5000;
+
+            private long nodeTimeoutMs = 15000;
+
+            public ClusterTransportType getTransport() {
+                return transport;
+            }
+
+            public void setTransport(ClusterTransportType transport) {
+                this.transport = transport;
+            }
+
+            public boolean isEnabled() {
+                return transport != ClusterTransportType.NONE;
+            }
+
+            public String getNodeId() {
+                return nodeId;
+            }
+
+            public void setNodeId(String nodeId) {
+                this.nodeId = nodeId;
+            }
+
+            public long getHeartbeatIntervalMs() {
+                return heartbeatIntervalMs;
+            }
+
+            public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+                this.heartbeatIntervalMs = heartbeatIntervalMs;
+            }
+
+            public long getNodeTimeoutMs() {
+                return nodeTimeoutMs;
+            }
+
+            public void setNodeTimeoutMs(long nodeTimeoutMs) {
+                this.nodeTimeoutMs = nodeTimeoutMs;
+            }
+
+            public enum ClusterTransportType {
+                /**
+                 * Single node.
+                 */
+                NONE,
+                /**
+                 * In-process transport, for tests running several nodes in the same JVM.
+                 */
+                LOOPBACK,
+                /**
+                 * The STOMP broker of the relay.
+                 */
+                BROKER,
+            }
+        }
+
+        public static class Broker {
+
+            private BrokerMode mode = BrokerMode.SIMPLE;
+
+            private final Relay relay = new Relay();
+
+            public BrokerMode getMode() {
+                return mode;
+            }
+
+            public void setMode(BrokerMode mode) {
+                this.mode = mode;
+            }
+
+            public Relay getRelay() {
+                return relay;
+            }
+
+            public enum BrokerMode {
+                /**
+                 * In-memory broker, limited to a single node.
+                 */
+                SIMPLE,
+                /**
+                 * External STOMP broker (RabbitMQ, ActiveMQ Artemis...), shared by all the nodes.
+                 */
+                RELAY,
+            }
+
+            public static class Relay {
+
+                private String host = "localhost";
+
+                private int port = 61613;
+
+                private String virtualHost;
+
+                private String clientLogin = "guest";
+
+                private String clientPasscode = "guest";
+
+                private String systemLogin = "guest";
+
+                private String systemPasscode = "guest";
+
+                private long systemHeartbeatSendIntervalMs = 10000;
+
+                private long systemHeartbeatReceiveIntervalMs = 10000;
+
+                private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+                private int maxConnections = 10000;
+
+                private int connectTimeoutMs = 10000;
+
+                public String getHost() {
+                    return host;
+                }
+
+                public void setHost(String host) {
+                    this.host = host;
+                }
+
+                public int getPort() {
+                    return port;
+                }
+
+                public void setPort(int port) {
+                    this.port = port;
+                }
+
+                public String getVirtualHost() {
+                    return virtualHost;
+                }
+
+                public void setVirtualHost(String virtualHost) {
+                    this.virtualHost = virtualHost;
+                }
+
+                public String getClientLogin() {
+                    return clientLogin;
+                }
+
+                public void setClientLogin(String clientLogin) {
+                    this.clientLogin = clientLogin;
+                }
+
+                public String getClientPasscode() {
+                    return clientPasscode;
+                }
+
+                public void setClientPasscode(String clientPasscode) {
+                    this.clientPasscode = clientPasscode;
+                }
+
+                public String getSystemLogin() {
+                    return systemLogin;
+                }
+
+                public void setSystemLogin(String systemLogin) {
+                    this.systemLogin = systemLogin;
+                }
+
+                public String getSystemPasscode() {
+                    return systemPasscode;
+                }
+
+                public void setSystemPasscode(String systemPasscode) {
+                    this.systemPasscode = systemPasscode;
+                }
+
+                public long getSystemHeartbeatSendIntervalMs() {
+                    return systemHeartbeatSendIntervalMs;
+                }
+
+                public void setSystemHeartbeatSendIntervalMs(long systemHeartbeatSendIntervalMs) {
+                    this.systemHeartbeatSendIntervalMs = systemHeartbeatSendIntervalMs;
+                }
+
+                public long getSystemHeartbeatReceiveIntervalMs() {
+                    return systemHeartbeatReceiveIntervalMs;
+                }
+
+                public void setSystemHeartbeatReceiveIntervalMs(long systemHeartbeatReceiveIntervalMs) {
+                    this.systemHeartbeatReceiveIntervalMs = systemHeartbeatReceiveIntervalMs;
+                }
+
+                public int getIoThreads() {
+                    return ioThreads;
+                }
+
+                public void setIoThreads(int ioThreads) {
+                    this.ioThreads = ioThreads;
+                }
+
+                public int getMaxConnections() {
+                    return maxConnections;
+                }
+
+                public void setMaxConnections(int maxConnections) {
+                    this.maxConnections = maxConnections;
+                }
+
+                public int getConnectTimeoutMs() {
+                    return connectTimeoutMs;
+                }
+
+                public void setConnectTimeoutMs(int connectTimeoutMs) {
+                    this.connectTimeoutMs = connectTimeoutMs;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.chatty.config;
+
+import com.chatty.repository.UserRepository;
+import java.time.Duration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Creates the Ehcache regions of the Hibernate second-level and query caches, sized by {@code jhipster.cache.ehcache},
+ * and the caches of the application, sized by {@code application.cache}.
+ * <p>
+ * The caches of the application are transaction aware: inside a transaction, their entries are put and evicted once it
+ * commits, so that a transaction rolled back leaves them untouched.
+ * <p>
+ * The caches are only used once {@code hibernate.cache.use_second_level_cache} and {@code use_query_cache} are
+ * enabled. They live in the memory of each node: the writes of a node evict its own entries, while the other nodes keep
+ * theirs until they expire. With {@code hibernate.generate_statistics}, the hits and misses of each region are
+ * published as {@code hibernate.second.level.cache.requests} and {@code hibernate.cache.query.requests}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    /**
+     * Region of the query results, named after the Hibernate default.
+     */
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    /**
+     * Region of the last update of each table, against which the query results are checked.
+     */
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> usersByLoginConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
+        ApplicationProperties.Cache.UsersByLogin usersByLogin = applicationProperties.getCache().getUsersByLogin();
+
+        jcacheConfiguration = configuration(ehcache.getMaxEntries(), ehcache.getTimeToLiveSeconds());
+        usersByLoginConfiguration = configuration(usersByLogin.getMaxEntries(), usersByLogin.getTimeToLiveSeconds());
+    }
+
+    private static javax.cache.configuration.Configuration<Object, Object> configuration(long maxEntries, long timeToLiveSeconds) {
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(timeToLiveSeconds)))
+                .build()
+        );
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    @Bean
+    public CacheManagerCustomizer<JCacheCacheManager> transactionAwareCacheManagerCustomizer() {
+        return cacheManager -> cacheManager.setTransactionAware(true);
+    }
+
+    @Bean
+    public JCacheManagerCustomizer cacheManagerCustomizer() {
+        return cm -> {
+            createCache(cm, com.chatty.domain.User.class.getName());
+            createCache(cm, com.chatty.domain.Authority.class.getName());
+            createCache(cm, com.chatty.domain.User.class.getName() + ".authorities");
+            createCache(cm, com.chatty.domain.Group.class.getName());
+            createCache(cm, com.chatty.domain.Group.class.getName() + ".users");
+            createCache(cm, com.chatty.domain.Room.class.getName());
+            createCache(cm, com.chatty.domain.Room.class.getName() + ".users");
+            createCache(cm, QUERY_RESULTS_REGION);
+            createCache(cm, UPDATE_TIMESTAMPS_REGION);
+            createCache(cm, UserRepository.USERS_BY_LOGIN_CACHE, usersByLoginConfiguration);
+            createCache(cm, UserRepository.USERS_BY_EMAIL_CACHE, usersByLoginConfiguration);
+        };
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, jcacheConfiguration);
+    }
+
+    private void createCache(
+        javax.cache.CacheManager cm,
+        String cacheName,
+        javax.cache.configuration.Configuration<Object, Object> configuration
+    ) {
+        javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        } else {
+            cm.createCache(cacheName, configuration);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.chatty.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Runs one periodic job on a thread of its own, instead of the {@code spring.task.scheduling} pool shared by the
+ * {@code @Scheduled} methods.
+ * <p>
+ * Meant for the frequent jobs whose delay users notice, such as the presence flushes: the jobs of the shared pool, a
+ * nightly purge on a slow database for instance, cannot hold them back, and adding a job to either never requires
+ * resizing the pool. As with {@code @Scheduled}, an exception of a run is logged and the next runs still happen.
+ */
+public class DedicatedScheduler {
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    /**
+     * @param name the name of the job, which its thread is named after.
+     */
+    public DedicatedScheduler(String name) {
+        taskScheduler.setThreadNamePrefix(name + "-");
+    }
+
+    /**
+     * Run a job every {@code delayMs} after the end of its previous run, the first time {@code delayMs} from now, until
+     * {@link #stop()}.
+     *
+     * @param job the job.
+     * @param delayMs the delay between the end of a run and the start of the next one.
+     */
+    public void start(Runnable job, long delayMs) {
+        taskScheduler.initialize();
+        Duration delay = Duration.ofMillis(delayMs);
+        taskScheduler.scheduleWithFixedDelay(job, Instant.now().plus(delay), delay);
+    }
+
+    /**
+     * Stop the job, once its current run is over.
+     */
+    public void stop() {
+        taskScheduler.shutdown();
+    }
+}
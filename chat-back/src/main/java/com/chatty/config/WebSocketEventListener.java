@@ -1,58 +1,50 @@
 package com.chatty.config;
 
-import com.chatty.domain.Notification;
-import com.chatty.domain.enumeration.NotificationType;
 import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.OnlineUsersSnapshotService;
+import com.chatty.web.websocket.PresenceBroadcaster;
 import com.chatty.web.websocket.UserSocketService;
-import com.chatty.web.websocket.dto.UserSocketDTO;
-import com.google.gson.Gson;
+import com.chatty.web.websocket.cluster.ClusterPresenceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
 import java.security.Principal;
-import java.time.Instant;
-import java.util.List;
 
 @Component
 public class WebSocketEventListener {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketEventListener.class);
-    private final SimpMessagingTemplate template;
     private final UserSocketService userSocketService;
+    private final OnlineUsersSnapshotService onlineUsersSnapshotService;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final ClusterPresenceService clusterPresenceService;
 
-    public WebSocketEventListener(SimpMessagingTemplate template, UserSocketService userSocketService) {
-        this.template = template;
+    public WebSocketEventListener(
+        UserSocketService userSocketService,
+        OnlineUsersSnapshotService onlineUsersSnapshotService,
+        PresenceBroadcaster presenceBroadcaster,
+        ClusterPresenceService clusterPresenceService
+    ) {
         this.userSocketService = userSocketService;
+        this.onlineUsersSnapshotService = onlineUsersSnapshotService;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.clusterPresenceService = clusterPresenceService;
     }
 
-    private void handleSession(String username, String logText, UserState userState) {
+    private void handleSession(String username, String logText, UserState userState, long version) {
         logger.info(logText);
-        Notification notification = new Notification();
-        notification.setTime(Instant.now());
-        notification.setContent(logText);
-        notification.setType(NotificationType.USER_STATE);
-        notification.addToMetadata("USER", username);
-        notification.addToMetadata("STATE", userState.name());
-        // Notify everyone about user.
-        template.convertAndSend("/topic/public", notification);
+        // Notify everyone about user, with the other changes of the broadcast window.
+        presenceBroadcaster.publish(username, userState, version);
     }
 
-    private void onUserSubscribe(String username) {
-        Notification notification = new Notification();
-        notification.setTime(Instant.now());
-        notification.setType(NotificationType.ONLINE_USERS);
-        List<UserSocketDTO> userSocketDTOS = userSocketService.getSubscribedSocketUsersByDestination("/topic/public");
-        userSocketDTOS.removeIf(userState -> userState.getUsername().equals(username));
-        notification.addToMetadata("USERS", String.join(", ", new Gson().toJson(userSocketDTOS)));
-        template.convertAndSendToUser(username
-            , "/queue/messages", notification);
+    private void onUserSubscribe(String username, String sessionId) {
+        onlineUsersSnapshotService.sendSnapshot(username, sessionId);
     }
 
     @EventListener
@@ -60,7 +52,13 @@ public class WebSocketEventListener {
         Principal principal = event.getUser();
         if (principal != null) {
             String username = principal.getName();
-            handleSession(username, "User «" + username + "» Connected", UserState.ONLINE);
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+            // only the first session of a user brings them online
+            long version = userSocketService.connect(username, sessionId);
+            if (version != UserSocketService.UNCHANGED) {
+                handleSession(username, "User «" + username + "» Connected", UserState.ONLINE, version);
+            }
+            clusterPresenceService.localPresenceChanged(username);
         }
     }
 
@@ -69,8 +67,12 @@ public class WebSocketEventListener {
         Principal principal = event.getUser();
         if (principal != null) {
             String username = principal.getName();
-            handleSession(username, "User «" + username + "» Disconnected", UserState.OFFLINE);
-            userSocketService.removeByUsername(username);
+            // the user stays online as long as another of their sessions is open
+            long version = userSocketService.disconnect(username, event.getSessionId());
+            if (version != UserSocketService.UNCHANGED) {
+                handleSession(username, "User «" + username + "» Disconnected", UserState.OFFLINE, version);
+            }
+            clusterPresenceService.localPresenceChanged(username);
         }
     }
 
@@ -78,12 +80,9 @@ public class WebSocketEventListener {
     public void handleSessionSubscribeEvent(SessionSubscribeEvent event) {
         Principal principal = event.getUser();
         if (principal != null) {
-            String user = principal.getName();
-            GenericMessage message = (GenericMessage) event.getMessage();
-            String simpDestination = (String) message.getHeaders().get("simpDestination");
-            String destination = "/user/" + user + "/queue/messages";
-            if (simpDestination.startsWith(destination)) {
-                onUserSubscribe(principal.getName());
+            String simpDestination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+            if (simpDestination != null && simpDestination.startsWith("/user/queue/messages")) {
+                onUserSubscribe(principal.getName(), SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders()));
             }
         }
     }
@@ -0,0 +1,29 @@
+package com.chatty.config;
+
+import com.chatty.security.jwt.JWTChannelInterceptor;
+import com.chatty.security.jwt.TokenProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * Authenticates the STOMP sessions on their CONNECT frame. Ordered before {@link WebsocketSecurityConfiguration}, so
+ * that the messages are authorized against the user of the session.
+ */
+@Configuration
+@Order(Ordered.HIGHEST_PRECEDENCE + 99)
+public class WebsocketAuthenticationConfiguration implements WebSocketMessageBrokerConfigurer {
+
+    private final TokenProvider tokenProvider;
+
+    public WebsocketAuthenticationConfiguration(TokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new JWTChannelInterceptor(tokenProvider));
+    }
+}
@@ -0,0 +1,131 @@
+package com.chatty.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors of the client inbound and outbound channels of the STOMP broker, sized by
+ * {@code application.websocket.channels}.
+ * <p>
+ * The queues are bounded: once the queue and the pool of a channel are full, its messages are refused, and counted,
+ * instead of piling up in memory. Each executor reports, tagged with its channel, the threads running a message, the
+ * pool size, the messages waiting, the time they waited, the time they took and the messages refused.
+ * <p>
+ * In the virtual threads mode of the inbound channel, the messages run on virtual threads, at most
+ * {@code max-concurrency} at once: a {@code @MessageMapping} method blocked on the database then no longer holds one of
+ * the few platform threads the other sessions are waiting for. Virtual threads require Java 21; the code being compiled
+ * for Java 8, they are created through reflection, and the platform threads are kept on older runtimes.
+ */
+public class WebsocketChannelExecutors {
+
+    public static final String METER_PREFIX = "chat.websocket.channel";
+
+    public static final String INBOUND = "inbound";
+
+    public static final String OUTBOUND = "outbound";
+
+    private final Logger log = LoggerFactory.getLogger(WebsocketChannelExecutors.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public WebsocketChannelExecutors(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param inbound the properties of the inbound channel.
+     * @return the executor of the inbound channel, initialized as a bean.
+     */
+    public ThreadPoolTaskExecutor inbound(ApplicationProperties.Websocket.Channels.Inbound inbound) {
+        ThreadPoolTaskExecutor executor = create(INBOUND, inbound);
+        ApplicationProperties.Websocket.Channels.Inbound.VirtualThreads virtualThreads = inbound.getVirtualThreads();
+        if (virtualThreads.isEnabled()) {
+            ThreadFactory threadFactory = virtualThreadFactory("clientInboundChannel-virtual-");
+            if (threadFactory != null) {
+                log.info("Running the inbound STOMP messages on virtual threads, at most {} at once", virtualThreads.getMaxConcurrency());
+                // virtual threads are cheap to create: they end as soon as they are idle instead of being pooled
+                executor.setCorePoolSize(virtualThreads.getMaxConcurrency());
+                executor.setMaxPoolSize(virtualThreads.getMaxConcurrency());
+                executor.setKeepAliveSeconds(1);
+                executor.setAllowCoreThreadTimeOut(true);
+                executor.setThreadFactory(threadFactory);
+            } else {
+                log.warn("Virtual threads are not supported by Java {}, the inbound STOMP messages run on platform threads", System.getProperty("java.version"));
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * @param outbound the properties of the outbound channel.
+     * @return the executor of the outbound channel, initialized as a bean.
+     */
+    public ThreadPoolTaskExecutor outbound(ApplicationProperties.Websocket.Channels.Channel outbound) {
+        return create(OUTBOUND, outbound);
+    }
+
+    private ThreadPoolTaskExecutor create(String channel, ApplicationProperties.Websocket.Channels.Channel properties) {
+        Tags tags = Tags.of("channel", channel);
+        AtomicInteger queued = new AtomicInteger();
+        Timer waitTimer = Timer.builder(METER_PREFIX + ".wait").tags(tags).register(meterRegistry);
+        Timer executionTimer = Timer.builder(METER_PREFIX + ".execution").tags(tags).register(meterRegistry);
+        Counter rejectedCounter = Counter.builder(METER_PREFIX + ".rejected").tags(tags).baseUnit("messages").register(meterRegistry);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(properties.getMaxPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setKeepAliveSeconds(properties.getKeepAliveSeconds());
+        executor.setTaskDecorator(task -> {
+            long submitted = System.nanoTime();
+            queued.incrementAndGet();
+            return () -> {
+                long started = System.nanoTime();
+                queued.decrementAndGet();
+                waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    executionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            };
+        });
+        executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("The " + channel + " channel is full, message refused");
+        });
+
+        Gauge.builder(METER_PREFIX + ".active", executor, ThreadPoolTaskExecutor::getActiveCount).tags(tags).register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".pool-size", executor, ThreadPoolTaskExecutor::getPoolSize).tags(tags).register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".queued", queued, AtomicInteger::get).tags(tags).baseUnit("messages").register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * @param namePrefix the prefix of the names of the threads.
+     * @return a factory of virtual threads, or null if the runtime does not support them.
+     */
+    static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            // Thread.ofVirtual().name(namePrefix, 0).factory(), through the public interface of the builder
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
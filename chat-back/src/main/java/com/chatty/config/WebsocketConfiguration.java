@@ -1,25 +1,33 @@
 package com.chatty.config;
 
-import com.chatty.security.AuthoritiesConstants;
+import com.chatty.web.websocket.SlowConsumerPolicy;
+import com.chatty.web.websocket.cluster.PresenceTopicInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.security.authentication.AnonymousAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.HandshakeInterceptor;
-import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
 import tech.jhipster.config.JHipsterProperties;
 
-import java.security.Principal;
-import java.util.ArrayList;
-import java.util.Collection;
+import javax.annotation.PreDestroy;
+
 import java.util.Map;
 import java.util.Optional;
 
@@ -29,15 +37,115 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
 
     public static final String IP_ADDRESS = "IP_ADDRESS";
 
+    public static final String USER_DESTINATION_BROADCAST = "/topic/cluster.unresolved-user-destination";
+
+    public static final String USER_REGISTRY_BROADCAST = "/topic/cluster.user-registry";
+
+    private final Logger log = LoggerFactory.getLogger(WebsocketConfiguration.class);
+
     private final JHipsterProperties jHipsterProperties;
 
-    public WebsocketConfiguration(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final WebsocketChannelExecutors channelExecutors;
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    private LoopResources relayLoopResources;
+
+    private ConnectionProvider relayConnectionProvider;
+
+    public WebsocketConfiguration(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry,
+        SlowConsumerPolicy slowConsumerPolicy
+    ) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.channelExecutors = new WebsocketChannelExecutors(meterRegistry);
+        this.slowConsumerPolicy = slowConsumerPolicy;
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/user", "/topic", "/queue");
+        ApplicationProperties.Websocket.Broker broker = applicationProperties.getWebsocket().getBroker();
+        if (broker.getMode() == ApplicationProperties.Websocket.Broker.BrokerMode.RELAY) {
+            ApplicationProperties.Websocket.Broker.Relay relay = broker.getRelay();
+            log.info("Relaying STOMP messages to the broker at {}:{}", relay.getHost(), relay.getPort());
+            config
+                .enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relay.getHost())
+                .setRelayPort(relay.getPort())
+                .setVirtualHost(relay.getVirtualHost())
+                .setClientLogin(relay.getClientLogin())
+                .setClientPasscode(relay.getClientPasscode())
+                .setSystemLogin(relay.getSystemLogin())
+                .setSystemPasscode(relay.getSystemPasscode())
+                .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatSendIntervalMs())
+                .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatReceiveIntervalMs())
+                .setTcpClient(relayTcpClient(relay))
+                // the sessions of the other nodes are known through the broker, and the messages to users not
+                // connected to this node are passed on to the other nodes
+                .setUserDestinationBroadcast(USER_DESTINATION_BROADCAST)
+                .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutors.inbound(applicationProperties.getWebsocket().getChannels().getInbound()));
+        if (applicationProperties.getWebsocket().getCluster().isEnabled()) {
+            registration.interceptors(new PresenceTopicInterceptor(applicationProperties));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutors.outbound(applicationProperties.getWebsocket().getChannels().getOutbound()));
+        registration.interceptors(slowConsumerPolicy);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        ApplicationProperties.Websocket.Transport transport = applicationProperties.getWebsocket().getTransport();
+        registration
+            .setSendTimeLimit(transport.getSendTimeLimitMs())
+            .setSendBufferSizeLimit(transport.getSendBufferSizeLimit())
+            .setMessageSizeLimit(transport.getMessageSizeLimit())
+            .addDecoratorFactory(slowConsumerPolicy);
+    }
+
+    /**
+     * TCP client of the broker relay, with its own IO threads and connection pool so that they can be sized: the
+     * relay holds one connection per websocket session.
+     */
+    private ReactorNettyTcpClient<byte[]> relayTcpClient(ApplicationProperties.Websocket.Broker.Relay relay) {
+        relayLoopResources = LoopResources.create("stomp-relay", relay.getIoThreads(), true);
+        relayConnectionProvider = ConnectionProvider.create("stomp-relay", relay.getMaxConnections());
+        TcpClient tcpClient = TcpClient
+            .create(relayConnectionProvider)
+            .host(relay.getHost())
+            .port(relay.getPort())
+            .runOn(relayLoopResources, false)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, relay.getConnectTimeoutMs());
+        return new ReactorNettyTcpClient<>(tcpClient, new StompReactorNettyCodec());
+    }
+
+    /**
+     * The relay TCP client does not release the resources it was given: they are disposed of once the relay is
+     * stopped.
+     */
+    @PreDestroy
+    public void disposeRelayResources() {
+        if (relayConnectionProvider != null) {
+            relayConnectionProvider.dispose();
+        }
+        if (relayLoopResources != null) {
+            relayLoopResources.dispose();
+        }
     }
 
     @Override
@@ -46,9 +154,9 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
             .ofNullable(jHipsterProperties.getCors().getAllowedOrigins())
             .map(origins -> origins.toArray(new String[0]))
             .orElse(new String[0]);
+        // no user until the CONNECT frame is authenticated, see WebsocketAuthenticationConfiguration
         registry
             .addEndpoint("/websocket")
-            .setHandshakeHandler(defaultHandshakeHandler())
             .setAllowedOrigins(allowedOrigins)
             .withSockJS()
             .setInterceptors(httpSessionHandshakeInterceptor());
@@ -81,19 +189,4 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
             }
         };
     }
-
-    private DefaultHandshakeHandler defaultHandshakeHandler() {
-        return new DefaultHandshakeHandler() {
-            @Override
-            protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler, Map<String, Object> attributes) {
-                Principal principal = request.getPrincipal();
-                if (principal == null) {
-                    Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
-                    authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
-                    principal = new AnonymousAuthenticationToken("WebsocketConfiguration", "anonymous", authorities);
-                }
-                return principal;
-            }
-        };
-    }
 }
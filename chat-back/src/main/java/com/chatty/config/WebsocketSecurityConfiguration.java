@@ -1,6 +1,7 @@
 package com.chatty.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.security.config.annotation.web.messaging.MessageSecurityMetadataSourceRegistry;
 import org.springframework.security.config.annotation.web.socket.AbstractSecurityWebSocketMessageBrokerConfigurer;
 
@@ -10,8 +11,19 @@ public class WebsocketSecurityConfiguration extends AbstractSecurityWebSocketMes
     @Override
     protected void configureInbound(MessageSecurityMetadataSourceRegistry messages) {
         messages
+            // sent when a session ends, including the sessions refused on their CONNECT frame
+            .simpTypeMatchers(SimpMessageType.DISCONNECT)
+            .permitAll()
             .nullDestMatcher()
             .authenticated()
+            // room topics: only the members of the room may subscribe, and messages are published by the server only
+            .simpSubscribeDestMatchers("/topic/room.{roomId:\\d+}")
+            .access("isAuthenticated() and @roomService.isMember(T(java.lang.Long).valueOf(#roomId), authentication.name)")
+            .simpDestMatchers("/topic/room.*")
+            .denyAll()
+            // topics between the nodes of a cluster, and presence topics of the nodes, subscribed through /topic/public
+            .simpDestMatchers("/topic/cluster.*", "/topic/public.*")
+            .denyAll()
             .simpDestMatchers("/topic/**")
             .authenticated()
             .simpDestMatchers("/user/**")
@@ -0,0 +1,237 @@
+package com.chatty.config.liquibase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the {@code conversation} table from one row per room member to one row per room message.
+ * <p>
+ * A message used to be saved once per receiver, with its own {@code conversation_state}. The copies of a message are
+ * the rows of the same room and sender, with the same content, distinct receivers, and created within
+ * {@link #COPY_WINDOW_MILLIS} of the first copy: the first copy is kept and the others are deleted. The states become
+ * a read watermark per room member in {@code room_read_state}: just before the first message the member had not seen,
+ * or the last message of the room when the member had seen them all.
+ * <p>
+ * Rows are streamed in {@code (room_id, sender_id, id)} order, so that only the copies of the current message are kept
+ * in memory besides the watermarks, and deletes and inserts are sent in JDBC batches.
+ */
+public class ConversationPerRoomMigration implements CustomTaskChange {
+
+    private static final long COPY_WINDOW_MILLIS = 5000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SEEN = "SEEN";
+
+    private final Logger log = LoggerFactory.getLogger(ConversationPerRoomMigration.class);
+
+    private int deletedRows;
+
+    private int readStates;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            Map<Long, Long> lastConversationIdByRoom = new HashMap<>();
+            Map<RoomMember, Long> firstUnreadIdByMember = new HashMap<>();
+            deleteCopies(connection, lastConversationIdByRoom, firstUnreadIdByMember);
+            insertReadStates(connection, lastConversationIdByRoom, firstUnreadIdByMember);
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not convert conversations to one row per room message", e);
+        }
+    }
+
+    private void deleteCopies(Connection connection, Map<Long, Long> lastConversationIdByRoom, Map<RoomMember, Long> firstUnreadIdByMember)
+        throws SQLException {
+        try (
+            Statement select = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            PreparedStatement delete = connection.prepareStatement("delete from conversation where id = ?")
+        ) {
+            select.setFetchSize(BATCH_SIZE);
+            ResultSet rows = select.executeQuery(
+                "select id, content, room_id, sender_id, receiver_id, conversation_state, created_date " +
+                "from conversation order by room_id, sender_id, id"
+            );
+            Message current = null;
+            int pendingDeletes = 0;
+            while (rows.next()) {
+                long id = rows.getLong("id");
+                String content = rows.getString("content");
+                Long roomId = getLong(rows, "room_id");
+                Long senderId = getLong(rows, "sender_id");
+                Long receiverId = getLong(rows, "receiver_id");
+                String state = rows.getString("conversation_state");
+                Timestamp createdDate = rows.getTimestamp("created_date");
+
+                if (current != null && current.isCopy(content, roomId, senderId, receiverId, createdDate)) {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                    deletedRows++;
+                    if (++pendingDeletes == BATCH_SIZE) {
+                        delete.executeBatch();
+                        pendingDeletes = 0;
+                    }
+                } else {
+                    current = new Message(id, content, roomId, senderId, createdDate);
+                    if (roomId != null) {
+                        lastConversationIdByRoom.merge(roomId, id, Math::max);
+                    }
+                }
+                current.receiverIds.add(receiverId);
+                if (roomId != null && receiverId != null && !SEEN.equals(state)) {
+                    firstUnreadIdByMember.merge(new RoomMember(roomId, receiverId), current.id, Math::min);
+                }
+            }
+            if (pendingDeletes > 0) {
+                delete.executeBatch();
+            }
+        }
+    }
+
+    private void insertReadStates(Connection connection, Map<Long, Long> lastConversationIdByRoom, Map<RoomMember, Long> firstUnreadIdByMember)
+        throws SQLException {
+        List<RoomMember> members = new ArrayList<>();
+        try (Statement select = connection.createStatement()) {
+            ResultSet rows = select.executeQuery("select room_id, user_id from rel_room__user");
+            while (rows.next()) {
+                members.add(new RoomMember(rows.getLong("room_id"), rows.getLong("user_id")));
+            }
+        }
+        try (
+            PreparedStatement insert = connection.prepareStatement(
+                "insert into room_read_state (room_id, user_id, last_read_conversation_id, last_read_date) values (?, ?, ?, ?)"
+            )
+        ) {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            int pendingInserts = 0;
+            for (RoomMember member : members) {
+                Long lastConversationId = lastConversationIdByRoom.get(member.roomId);
+                if (lastConversationId == null) {
+                    // nothing to read in this room yet, no watermark is read as "nothing read"
+                    continue;
+                }
+                Long firstUnreadId = firstUnreadIdByMember.get(member);
+                insert.setLong(1, member.roomId);
+                insert.setLong(2, member.userId);
+                insert.setLong(3, firstUnreadId != null ? firstUnreadId - 1 : lastConversationId);
+                insert.setTimestamp(4, now);
+                insert.addBatch();
+                readStates++;
+                if (++pendingInserts == BATCH_SIZE) {
+                    insert.executeBatch();
+                    pendingInserts = 0;
+                }
+            }
+            if (pendingInserts > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static Long getLong(ResultSet rows, String column) throws SQLException {
+        long value = rows.getLong(column);
+        return rows.wasNull() ? null : value;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Deleted " + deletedRows + " per-receiver conversation copies and created " + readStates + " room read states";
+    }
+
+    @Override
+    public void setUp() {
+        log.debug("Converting conversations to one row per room message");
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // no resource needed
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+
+    /**
+     * The kept row of a message, and the receivers of its copies seen so far.
+     */
+    private static final class Message {
+
+        private final long id;
+        private final String content;
+        private final Long roomId;
+        private final Long senderId;
+        private final Timestamp createdDate;
+        private final Set<Long> receiverIds = new HashSet<>();
+
+        private Message(long id, String content, Long roomId, Long senderId, Timestamp createdDate) {
+            this.id = id;
+            this.content = content;
+            this.roomId = roomId;
+            this.senderId = senderId;
+            this.createdDate = createdDate;
+        }
+
+        private boolean isCopy(String content, Long roomId, Long senderId, Long receiverId, Timestamp createdDate) {
+            return (
+                Objects.equals(this.roomId, roomId) &&
+                Objects.equals(this.senderId, senderId) &&
+                Objects.equals(this.content, content) &&
+                receiverId != null &&
+                !receiverIds.contains(receiverId) &&
+                this.createdDate != null &&
+                createdDate != null &&
+                Math.abs(createdDate.getTime() - this.createdDate.getTime()) <= COPY_WINDOW_MILLIS
+            );
+        }
+    }
+
+    private static final class RoomMember {
+
+        private final long roomId;
+        private final long userId;
+
+        private RoomMember(long roomId, long userId) {
+            this.roomId = roomId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RoomMember)) {
+                return false;
+            }
+            RoomMember other = (RoomMember) o;
+            return roomId == other.roomId && userId == other.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomId, userId);
+        }
+    }
+}
@@ -1,42 +1,56 @@
 package com.chatty.domain;
 
-import com.chatty.domain.enumeration.ConversationState;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
 import javax.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /**
- * A Conversation.
+ * A Conversation: one message posted in a room, stored once whatever the number of room members.
+ * Who has read it is tracked by {@link RoomReadState}.
+ * <p>
+ * Its room and sender are loaded on demand; {@value #GRAPH_SENDER} loads the sender with it, for a conversation shown
+ * with the login of its sender.
  */
 @Entity
 @Table(name = "conversation")
+@NamedEntityGraph(name = Conversation.GRAPH_SENDER, attributeNodes = @NamedAttributeNode("sender"))
 public class Conversation extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final String GRAPH_SENDER = "Conversation.sender";
+
+    /**
+     * Taken from a sequence of its own, by the transaction saving the conversation once it has locked the room (see
+     * {@link ConversationIdGenerator}): the ids of the conversations of a room then follow the order in which they are
+     * committed, whatever the node, which the read watermarks, the unread counts and the history cursors rely on.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(generator = "conversationSequenceGenerator")
+    @GenericGenerator(
+        name = "conversationSequenceGenerator",
+        strategy = "com.chatty.domain.ConversationIdGenerator",
+        parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "conversation_sequence"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")
+        }
+    )
     @Column(name = "id")
     private Long id;
 
     @Column(name = "content")
     private String content;
 
-    @Enumerated(EnumType.STRING)
-    @Column(name = "conversation_state")
-    private ConversationState conversationState;
-
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "users", "group" }, allowSetters = true)
     private Room room;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User sender;
 
-    @ManyToOne
-    private User receiver;
-
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -65,19 +79,6 @@ public class Conversation extends AbstractAuditingEntity implements Serializable
         this.content = content;
     }
 
-    public ConversationState getConversationState() {
-        return this.conversationState;
-    }
-
-    public Conversation conversationState(ConversationState conversationState) {
-        this.setConversationState(conversationState);
-        return this;
-    }
-
-    public void setConversationState(ConversationState conversationState) {
-        this.conversationState = conversationState;
-    }
-
     public Room getRoom() {
         return this.room;
     }
@@ -104,21 +105,21 @@ public class Conversation extends AbstractAuditingEntity implements Serializable
         return this;
     }
 
-    public User getReceiver() {
-        return this.receiver;
-    }
-
-    public void setReceiver(User user) {
-        this.receiver = user;
-    }
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
-    public Conversation receiver(User user) {
-        this.setReceiver(user);
-        return this;
+    /**
+     * A conversation is created by its sender, whichever thread saves it: the write-behind queue saves the messages
+     * with no user authenticated. Runs after the {@link org.springframework.data.jpa.domain.support.AuditingEntityListener},
+     * entity listeners being called before the callbacks of the entity.
+     */
+    @PrePersist
+    private void auditSender() {
+        if (sender != null) {
+            setCreatedBy(sender.getLogin());
+            setLastModifiedBy(sender.getLogin());
+        }
     }
 
-    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
-
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -142,7 +143,6 @@ public class Conversation extends AbstractAuditingEntity implements Serializable
         return "Conversation{" +
             "id=" + getId() +
             ", content='" + getContent() + "'" +
-            ", conversationState='" + getConversationState() + "'" +
             "}";
     }
 }
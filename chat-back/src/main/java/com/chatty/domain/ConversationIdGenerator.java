@@ -0,0 +1,54 @@
+package com.chatty.domain;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Generates the ids of the {@link Conversation}s from a sequence incremented by blocks, like the pooled optimizer, except
+ * that a block is only used by the session which took it, that is by a single transaction: the ids left in a block
+ * when its transaction ends are not used.
+ * <p>
+ * The conversations of a room are saved with the room locked (see {@code ConversationService}), and the first id of a
+ * transaction is taken once its rooms are locked: its block starts after those of the transactions committed before in
+ * these rooms, whichever node they ran on, so the ids of the conversations of a room follow the order in which they are
+ * committed. A block still spares a round trip to the database per conversation of a batch.
+ */
+public class ConversationIdGenerator extends SequenceStyleGenerator {
+
+    private final Map<SharedSessionContractImplementor, Block> blocks = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Block block = blocks.get(session);
+        if (block == null || block.isExhausted()) {
+            long first = getDatabaseStructure().buildCallback(session).getNextValue().makeValue().longValue();
+            block = new Block(first, getOptimizer().getIncrementSize());
+            blocks.put(session, block);
+        }
+        return block.next();
+    }
+
+    private static final class Block {
+
+        private long next;
+
+        private final long end;
+
+        private Block(long first, int size) {
+            this.next = first;
+            this.end = first + size;
+        }
+
+        private boolean isExhausted() {
+            return next >= end;
+        }
+
+        private Long next() {
+            return next++;
+        }
+    }
+}
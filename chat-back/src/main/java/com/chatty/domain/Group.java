@@ -4,16 +4,25 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * A Group.
+ * <p>
+ * Its members are loaded on demand; {@value #GRAPH_USERS} loads them with it, for a group shown with the logins of its
+ * members.
  */
 @Entity
 @Table(name = "jhi_group")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name = Group.GRAPH_USERS, attributeNodes = @NamedAttributeNode("users"))
 public class Group extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final String GRAPH_USERS = "Group.users";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
     @SequenceGenerator(name = "sequenceGenerator")
@@ -32,6 +41,7 @@ public class Group extends AbstractAuditingEntity implements Serializable {
         joinColumns = @JoinColumn(name = "jhi_group_id"),
         inverseJoinColumns = @JoinColumn(name = "users_id")
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<User> users = new HashSet<>();
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
@@ -0,0 +1,83 @@
+package com.chatty.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The refresh tokens of a user issued before {@code issuedBefore} are revoked, such as when the password of the user
+ * changes. It can be deleted once the last of these tokens has expired.
+ */
+@Entity
+@Table(name = "refresh_token_cutoff")
+public class RefreshTokenCutoff implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "login", length = 50)
+    private String login;
+
+    @Column(name = "issued_before", nullable = false)
+    private Instant issuedBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public RefreshTokenCutoff() {}
+
+    public RefreshTokenCutoff(String login, Instant issuedBefore, Instant expiresAt) {
+        this.login = login;
+        this.issuedBefore = issuedBefore;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public Instant getIssuedBefore() {
+        return issuedBefore;
+    }
+
+    public void setIssuedBefore(Instant issuedBefore) {
+        this.issuedBefore = issuedBefore;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RefreshTokenCutoff)) {
+            return false;
+        }
+        return login != null && login.equals(((RefreshTokenCutoff) o).login);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(login);
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshTokenCutoff{" + "login='" + getLogin() + "'" + ", issuedBefore='" + getIssuedBefore() + "'" + ", expiresAt='" + getExpiresAt() + "'" + "}";
+    }
+}
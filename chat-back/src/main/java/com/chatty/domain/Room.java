@@ -5,16 +5,25 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * A Room.
+ * <p>
+ * Its members and group are loaded on demand; {@value #GRAPH_USERS} loads the members with it, for a room shown with
+ * the logins of its members.
  */
 @Entity
 @Table(name = "room")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name = Room.GRAPH_USERS, attributeNodes = @NamedAttributeNode("users"))
 public class Room extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final String GRAPH_USERS = "Room.users";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
     @SequenceGenerator(name = "sequenceGenerator")
@@ -38,9 +47,10 @@ public class Room extends AbstractAuditingEntity implements Serializable {
 
     @ManyToMany
     @JoinTable(name = "rel_room__user", joinColumns = @JoinColumn(name = "room_id"), inverseJoinColumns = @JoinColumn(name = "user_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<User> users = new HashSet<>();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "users" }, allowSetters = true)
     private Group group;
 
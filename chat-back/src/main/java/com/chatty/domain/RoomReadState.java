@@ -0,0 +1,157 @@
+package com.chatty.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+/**
+ * The read watermark of a user in a room: every {@link Conversation} of the room with an id lower than or equal to
+ * {@code lastReadConversationId} has been seen by the user.
+ * <p>
+ * {@code unreadCount} materializes the number of conversations of the others after the watermark: it is incremented
+ * when conversations are delivered to the room, and decremented by those the watermark moves past. Both updates are
+ * relative, and made with the row locked.
+ */
+@Entity
+@Table(name = "room_read_state")
+@IdClass(RoomReadState.RoomReadStateId.class)
+public class RoomReadState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "room_id")
+    private Long roomId;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "last_read_conversation_id", nullable = false)
+    private Long lastReadConversationId;
+
+    @Column(name = "last_read_date")
+    private Instant lastReadDate;
+
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+
+    public RoomReadState() {}
+
+    public RoomReadState(Long roomId, Long userId, Long lastReadConversationId) {
+        this.roomId = roomId;
+        this.userId = userId;
+        this.lastReadConversationId = lastReadConversationId;
+        this.lastReadDate = Instant.now();
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(Long roomId) {
+        this.roomId = roomId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getLastReadConversationId() {
+        return lastReadConversationId;
+    }
+
+    public void setLastReadConversationId(Long lastReadConversationId) {
+        this.lastReadConversationId = lastReadConversationId;
+    }
+
+    public Instant getLastReadDate() {
+        return lastReadDate;
+    }
+
+    public void setLastReadDate(Instant lastReadDate) {
+        this.lastReadDate = lastReadDate;
+    }
+
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RoomReadState)) {
+            return false;
+        }
+        RoomReadState other = (RoomReadState) o;
+        return roomId != null && userId != null && roomId.equals(other.roomId) && userId.equals(other.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(roomId, userId);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RoomReadState{" +
+            "roomId=" + getRoomId() +
+            ", userId=" + getUserId() +
+            ", lastReadConversationId=" + getLastReadConversationId() +
+            ", lastReadDate='" + getLastReadDate() + "'" +
+            ", unreadCount=" + getUnreadCount() +
+            "}";
+    }
+
+    /**
+     * Composite identifier of a {@link RoomReadState}.
+     */
+    public static class RoomReadStateId implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Long roomId;
+
+        private Long userId;
+
+        public RoomReadStateId() {}
+
+        public RoomReadStateId(Long roomId, Long userId) {
+            this.roomId = roomId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RoomReadStateId)) {
+                return false;
+            }
+            RoomReadStateId other = (RoomReadStateId) o;
+            return Objects.equals(roomId, other.roomId) && Objects.equals(userId, other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomId, userId);
+        }
+    }
+}
@@ -1,9 +0,0 @@
-package com.chatty.domain.enumeration;
-
-/**
- * The ConversationState enumeration.
- */
-public enum ConversationState {
-    DELIVERED,
-    SEEN,
-}
@@ -4,5 +4,5 @@ package com.chatty.domain.enumeration;
  * The NotificationType enumeration.
  */
 public enum NotificationType {
-    USER_STATE, ONLINE_USERS, INCOMING_MESSAGE, INCOMING_CALL, REJECTED_CALL, CANCELLED_CALL, ACCEPTED_CALL
+    USER_STATE, ONLINE_USERS, INCOMING_MESSAGE, INCOMING_CALL, REJECTED_CALL, CANCELLED_CALL, ACCEPTED_CALL, ROOM_JOINED, ROOM_LEFT, SEEN, MESSAGE_REJECTED
 }
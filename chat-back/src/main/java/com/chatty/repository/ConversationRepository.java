@@ -1,33 +1,67 @@
 package com.chatty.repository;
 
 import com.chatty.domain.Conversation;
-import com.chatty.domain.User;
-import com.chatty.domain.enumeration.ConversationState;
+import com.chatty.service.dto.ConversationDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Spring Data SQL repository for the Conversation entity.
+ * <p>
+ * The history of a room is read into {@link ConversationDTO}s, with the ids of the room and the sender and the login
+ * of the sender, rather than into entities whose room and sender would be loaded one by one.
+ * <p>
+ * A conversation is unread by a room member when it was sent by someone else and its id is greater than the member's
+ * {@link com.chatty.domain.RoomReadState} watermark in the room, no watermark meaning nothing read yet. The unread
+ * counts themselves are kept by the {@link RoomReadStateRepository}.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
-    @Query("select c from Conversation c where c.room.id =:id ORDER BY c.createdDate desc ")
-    Page<Conversation> findAllByRoomId(Pageable pageable, @Param("id") Long roomId);
-    @Query("select c.sender.id as sender, COUNT(c) as count FROM Conversation c where c.conversationState =:state and c.receiver.id =:recId and c.room.group is null GROUP BY c.sender.id")
-    List<?> getConversationsCountByReceiverAndStateGroupedBySender(@Param("state") ConversationState state, @Param("recId") Long recId);
-    @Query("select c.room.id as room, COUNT(c) as count FROM Conversation c where c.conversationState =:state and c.receiver.id =:recId GROUP BY c.room.id")
-    List<?> getConversationsCountByReceiverAndStateGroupedByRoom(@Param("state") ConversationState state, @Param("recId") Long recId);
-    @Query("select COUNT(c) as count FROM Conversation c where c.conversationState =:state and c.receiver.id =:recId and c.room.id =:roomId")
-    int getConversationCountByRoomAndReceiverAndState(@Param("state") ConversationState state, @Param("recId") Long recId, @Param("roomId") Long roomId );
-    @Modifying
-    @Query("update Conversation c set c.conversationState =:state where c.room.id = :roomId and c.receiver.id =:recId")
-    void updateConversationStateByRoom(@Param(value = "state") ConversationState state, @Param(value = "roomId") Long roomId, @Param(value = "recId") Long recId);
+    @Override
+    @EntityGraph(Conversation.GRAPH_SENDER)
+    List<Conversation> findAll();
+
+    @Override
+    @EntityGraph(Conversation.GRAPH_SENDER)
+    Optional<Conversation> findById(Long id);
+
+    @Query(
+        value = "select new com.chatty.service.dto.ConversationDTO(c.id, c.content, c.createdDate, c.room.id, s.id, s.login) " +
+        "from Conversation c left join c.sender s where c.room.id =:id ORDER BY c.createdDate desc",
+        countQuery = "select count(c) from Conversation c where c.room.id =:id"
+    )
+    Page<ConversationDTO> findAllByRoomId(Pageable pageable, @Param("id") Long roomId);
+
+    /**
+     * Get the conversations of a room before a conversation, newest first: a seek on the (room_id, id) index whatever
+     * the depth, and no count query. The conversations of a room are committed in the order of their ids (see
+     * {@link com.chatty.service.ConversationService}), so none is committed later before a cursor already read.
+     */
+    @Query(
+        "select new com.chatty.service.dto.ConversationDTO(c.id, c.content, c.createdDate, c.room.id, s.id, s.login) " +
+        "from Conversation c left join c.sender s where c.room.id =:roomId and c.id < :beforeId ORDER BY c.id desc"
+    )
+    Slice<ConversationDTO> findAllByRoomIdAndIdLessThan(@Param("roomId") Long roomId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("select c.room.id, max(c.id) FROM Conversation c where c.room.id in :roomIds GROUP BY c.room.id")
+    List<Object[]> findLastConversationIdsByRoomIds(@Param("roomIds") Collection<Long> roomIds);
+
+    @Query("select distinct c.sender.login FROM Conversation c where c.room.id =:roomId and c.id > :afterId and c.id <= :lastId and c.sender.login <> :reader")
+    List<String> findSenderLoginsByRoomIdAndIdBetween(
+        @Param("roomId") Long roomId,
+        @Param("afterId") Long afterId,
+        @Param("lastId") Long lastId,
+        @Param("reader") String reader
+    );
 }
@@ -28,5 +28,6 @@ public interface GroupRepository extends JpaRepository<Group, Long> {
     @Query("select jhiGroup from Group jhiGroup left join fetch jhiGroup.users where jhiGroup.id =:id")
     Optional<Group> findOneWithEagerRelationships(@Param("id") Long id);
 
+    @EntityGraph(Group.GRAPH_USERS)
     List<Group> findAllByUsersIsContaining(User user);
 }
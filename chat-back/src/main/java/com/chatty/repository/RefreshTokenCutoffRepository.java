@@ -0,0 +1,24 @@
+package com.chatty.repository;
+
+import com.chatty.domain.RefreshTokenCutoff;
+import java.time.Instant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the RefreshTokenCutoff entity.
+ */
+@Repository
+public interface RefreshTokenCutoffRepository extends JpaRepository<RefreshTokenCutoff, String> {
+    /**
+     * Delete the cutoffs whose tokens have all expired: they are refused anyway.
+     *
+     * @return the number of deleted rows.
+     */
+    @Modifying
+    @Query("delete from RefreshTokenCutoff cutoff where cutoff.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,30 @@
+package com.chatty.repository;
+
+import com.chatty.domain.RevokedToken;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the RevokedToken entity.
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+    /**
+     * @return the tokens revoked at or after {@code since} which have not expired yet.
+     */
+    List<RevokedToken> findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter(Instant since, Instant now);
+
+    /**
+     * Delete the tokens which have expired: they are refused anyway.
+     *
+     * @return the number of deleted rows.
+     */
+    @Modifying
+    @Query("delete from RevokedToken revokedToken where revokedToken.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
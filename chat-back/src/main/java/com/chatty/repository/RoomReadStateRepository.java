@@ -0,0 +1,111 @@
+package com.chatty.repository;
+
+import com.chatty.domain.RoomReadState;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the RoomReadState entity.
+ * <p>
+ * The unread counts are read from the states of the user, one row per room, instead of being counted over the
+ * conversations. The watermarks are conversation ids, which follow the order in which the conversations of a room are
+ * committed (see {@link com.chatty.service.ConversationService}).
+ */
+@Repository
+public interface RoomReadStateRepository extends JpaRepository<RoomReadState, RoomReadState.RoomReadStateId> {
+    /**
+     * Lock the read state of a user in a room until the end of the transaction. The deliveries update the state under
+     * the same lock: once it is acquired, the conversations delivered concurrently are committed, and counted by the
+     * statements run next.
+     *
+     * @return the read state, empty if the user has none in the room yet.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from RoomReadState s where s.roomId =:roomId and s.userId =:userId")
+    Optional<RoomReadState> findOneForUpdate(@Param("roomId") Long roomId, @Param("userId") Long userId);
+
+    /**
+     * Move the read watermark of a user forward; a watermark is never moved backward, whatever the order in which
+     * concurrent requests are applied. The conversations of the others between the previous and the new watermark are
+     * no longer counted as unread; those delivered after it still are. Run it with the state locked by
+     * {@link #findOneForUpdate(Long, Long)}.
+     *
+     * @return the number of updated rows: {@code 0} when the user has no watermark in the room yet, or when it is
+     * already at or after {@code lastReadConversationId}.
+     */
+    @Modifying
+    @Query(
+        "update RoomReadState s set s.lastReadConversationId =:lastReadConversationId, s.lastReadDate =:lastReadDate, " +
+        "s.unreadCount = s.unreadCount - (select count(c) from Conversation c where c.room.id =:roomId and c.sender.id <> :userId " +
+        "and c.id > s.lastReadConversationId and c.id <= :lastReadConversationId) " +
+        "where s.roomId =:roomId and s.userId =:userId and s.lastReadConversationId < :lastReadConversationId"
+    )
+    int advanceWatermark(
+        @Param("roomId") Long roomId,
+        @Param("userId") Long userId,
+        @Param("lastReadConversationId") Long lastReadConversationId,
+        @Param("lastReadDate") Instant lastReadDate
+    );
+
+    /**
+     * Count conversations delivered to a room as unread by the members other than their senders, who have not read
+     * them yet: a watermark already moved past a conversation, such as by a read of another node, does not count it.
+     *
+     * @param conversationIds the ids of the conversations of the room, flushed.
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query(
+        "update RoomReadState s set s.unreadCount = s.unreadCount + (select count(c) from Conversation c " +
+        "where c.id in :conversationIds and c.sender.id <> s.userId and c.id > s.lastReadConversationId) " +
+        "where s.roomId =:roomId"
+    )
+    int incrementUnreadCount(@Param("roomId") Long roomId, @Param("conversationIds") Collection<Long> conversationIds);
+
+    /**
+     * Stop counting a deleted conversation as unread by the members who had not seen it.
+     *
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query(
+        "update RoomReadState s set s.unreadCount = s.unreadCount - 1 " +
+        "where s.roomId =:roomId and s.userId <> :senderId and s.lastReadConversationId < :conversationId and s.unreadCount > 0"
+    )
+    int decrementUnreadCount(@Param("roomId") Long roomId, @Param("senderId") Long senderId, @Param("conversationId") Long conversationId);
+
+    /**
+     * @return the room id and user id of the members of the rooms without a state yet, such as those who joined them
+     * since the last conversation.
+     */
+    @Query(
+        "select r.id, u.id from Room r join r.users u where r.id in :roomIds " +
+        "and not exists (select s from RoomReadState s where s.roomId = r.id and s.userId = u.id)"
+    )
+    List<Object[]> findMembersWithoutStateByRoomIds(@Param("roomIds") Collection<Long> roomIds);
+
+    @Query("select s.roomId, s.unreadCount from RoomReadState s where s.userId =:userId and s.unreadCount > 0")
+    List<Object[]> findUnreadCountsByUserIdGroupedByRoom(@Param("userId") Long userId);
+
+    /**
+     * @return the sender id and unread count of the private rooms of the user: their unread conversations are those of
+     * the other member.
+     */
+    @Query(
+        "select u.id, sum(s.unreadCount) from RoomReadState s, Room r join r.users u " +
+        "where r.id = s.roomId and s.userId =:userId and u.id <> :userId and r.group is null and s.unreadCount > 0 GROUP BY u.id"
+    )
+    List<Object[]> findUnreadCountsByUserIdGroupedBySender(@Param("userId") Long userId);
+
+    @Query("select s.unreadCount from RoomReadState s where s.roomId =:roomId and s.userId =:userId")
+    Optional<Integer> findUnreadCountByRoomIdAndUserId(@Param("roomId") Long roomId, @Param("userId") Long userId);
+}
@@ -5,17 +5,24 @@ import com.chatty.domain.Room;
 import com.chatty.domain.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 /**
  * Spring Data SQL repository for the Room entity.
+ * <p>
+ * The rooms mapped to {@link com.chatty.service.dto.RoomDTO}s, which list the logins of their members, are loaded with
+ * the {@link Room#GRAPH_USERS} graph, instead of one select of the members per room.
  */
 @Repository
 public interface RoomRepository extends JpaRepository<Room, Long> {
@@ -31,13 +38,29 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
     @Query("select room from Room room left join fetch room.users where room.id =:id")
     Optional<Room> findOneWithEagerRelationships(@Param("id") Long id);
 
+    @Query("select roomUser.login from Room room join room.users roomUser where room.id =:id")
+    List<String> findUserLoginsByRoomId(@Param("id") Long id);
+
+    @EntityGraph(Room.GRAPH_USERS)
     List<Room> findAllByGroup(Group group);
 
+    @EntityGraph(Room.GRAPH_USERS)
     List<Room> findAllByUsersIsContaining(User user);
 
+    @EntityGraph(Room.GRAPH_USERS)
     List<Room> findAllByUsersIsContainingAndGroupNotNull(User user);
 
+    @EntityGraph(Room.GRAPH_USERS)
     List<Room> findAllByUsersIsContainingAndGroup(User user, Group group);
 
+    /**
+     * Lock rooms until the end of the transaction, in the order of their ids so that two transactions locking common
+     * rooms do not deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select room from Room room where room.id in :ids order by room.id")
+    List<Room> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // limited to the first room: a fetch of its members would be applied in memory, to all the matching rooms
     Optional<Room> findFirstByUsersInAndGroupIsNull(Set<User> user);
 }
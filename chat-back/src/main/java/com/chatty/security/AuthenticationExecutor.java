@@ -0,0 +1,153 @@
+package com.chatty.security;
+
+import com.chatty.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the password authentications on a dedicated pool, sized by {@code application.authentication}.
+ * <p>
+ * Checking a password hash is CPU-bound, and the lookup of the user holds a database connection: running them on the
+ * request threads lets a burst of logins, such as all the clients logging in again after an outage, take over the CPU
+ * and the connection pool. Here at most {@code pool-size} authentications run at once, the next ones wait in a bounded
+ * queue, and an authentication refused by a full queue, or waiting longer than {@code queue-timeout-ms}, fails fast with
+ * an {@link AuthenticationSaturatedException}.
+ * <p>
+ * The result is asynchronous: the caller, such as a request thread answering with a {@link CompletableFuture}, does not
+ * wait for the authentication. An authentication which waited too long in the queue is failed when it is taken from it,
+ * without checking the password, its client having likely given up.
+ * <p>
+ * The executor reports the authentications waiting, the time they waited, the time they took, tagged with their
+ * result, and the authentications refused, tagged with their cause.
+ */
+@Component
+public class AuthenticationExecutor implements DisposableBean {
+
+    public static final String METER_PREFIX = "security.authentication.executor";
+
+    private final Logger log = LoggerFactory.getLogger(AuthenticationExecutor.class);
+
+    private final long queueTimeoutMs;
+
+    private final long queueTimeoutNanos;
+
+    private final int retryAfterSeconds;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer waitTimer;
+
+    private final Timer successTimer;
+
+    private final Timer failureTimer;
+
+    private final Counter queueFullCounter;
+
+    private final Counter queueTimeoutCounter;
+
+    public AuthenticationExecutor(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Authentication properties = applicationProperties.getAuthentication();
+        this.queueTimeoutMs = properties.getQueueTimeoutMs();
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.retryAfterSeconds = properties.getRetryAfterSeconds();
+        this.waitTimer = Timer.builder(METER_PREFIX + ".wait").register(meterRegistry);
+        this.successTimer = Timer.builder(METER_PREFIX + ".execution").tag("result", "success").register(meterRegistry);
+        this.failureTimer = Timer.builder(METER_PREFIX + ".execution").tag("result", "failure").register(meterRegistry);
+        this.queueFullCounter = rejectedCounter(meterRegistry, "queue-full");
+        this.queueTimeoutCounter = rejectedCounter(meterRegistry, "queue-timeout");
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("authentication-");
+        executor.setCorePoolSize(properties.getPoolSize());
+        executor.setMaxPoolSize(properties.getPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setTaskDecorator(task -> {
+            long submitted = System.nanoTime();
+            queued.incrementAndGet();
+            return () -> {
+                queued.decrementAndGet();
+                waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                task.run();
+            };
+        });
+        executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> {
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("The authentication queue is full");
+        });
+        executor.initialize();
+
+        Gauge.builder(METER_PREFIX + ".active", executor, ThreadPoolTaskExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".queued", queued, AtomicInteger::get).baseUnit("authentications").register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder(METER_PREFIX + ".rejected").tag("cause", cause).baseUnit("authentications").register(meterRegistry);
+    }
+
+    /**
+     * Run an authentication on the pool.
+     *
+     * @param authentication the authentication, which throws an {@link org.springframework.security.core.AuthenticationException}
+     * when it fails.
+     * @return the result of the authentication, completed on the pool, or failed with an
+     * {@link AuthenticationSaturatedException} if the authentication was refused by a full queue, or waited too long.
+     */
+    public CompletableFuture<Authentication> authenticate(Supplier<Authentication> authentication) {
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(
+                () -> {
+                    if (System.nanoTime() - submitted > queueTimeoutNanos) {
+                        queueTimeoutCounter.increment();
+                        log.debug("Authentication abandoned after waiting more than {} ms", queueTimeoutMs);
+                        throw new AuthenticationSaturatedException("Too many authentications in progress", retryAfterSeconds);
+                    }
+                    return timed(authentication);
+                },
+                executor
+            );
+        } catch (RejectedExecutionException e) {
+            queueFullCounter.increment();
+            log.debug("Authentication refused, the queue is full");
+            CompletableFuture<Authentication> refused = new CompletableFuture<>();
+            refused.completeExceptionally(new AuthenticationSaturatedException("Too many authentications in progress", retryAfterSeconds, e));
+            return refused;
+        }
+    }
+
+    private Authentication timed(Supplier<Authentication> authentication) {
+        long started = System.nanoTime();
+        Timer timer = failureTimer;
+        try {
+            Authentication result = authentication.get();
+            timer = successTimer;
+            return result;
+        } finally {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,28 @@
+package com.chatty.security;
+
+/**
+ * This exception is thrown when an authentication is refused because too many authentications are in progress.
+ */
+public class AuthenticationSaturatedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public AuthenticationSaturatedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public AuthenticationSaturatedException(String message, int retryAfterSeconds, Throwable t) {
+        super(message, t);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return the delay after which the client should try again, in seconds.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
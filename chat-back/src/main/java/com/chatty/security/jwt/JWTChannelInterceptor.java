@@ -0,0 +1,117 @@
+package com.chatty.security.jwt;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.StringUtils;
+
+/**
+ * Authenticates the STOMP sessions with the token of their CONNECT frame, the counterpart of {@link JWTFilter} for the
+ * websocket.
+ * <p>
+ * The token is read from the {@code Authorization} header of the frame, so that it is not part of the URLs of the
+ * SockJS transport. The principal it carries becomes the user of the session, which Spring keeps for the lifetime of
+ * the session. Once the token expires, the frames of the session are refused unless one of them carries a new token of
+ * the same user, and the client is told with an ERROR frame to reconnect.
+ * <p>
+ * The token is removed from the frames once read: the broker would otherwise copy it into the messages sent to the
+ * subscribers.
+ */
+public class JWTChannelInterceptor implements ChannelInterceptor {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * Session attribute holding the expiration of the token of the session.
+     */
+    static final String EXPIRES_AT_ATTRIBUTE = JWTChannelInterceptor.class.getName() + ".EXPIRES_AT";
+
+    private final Logger log = LoggerFactory.getLogger(JWTChannelInterceptor.class);
+
+    private final TokenProvider tokenProvider;
+
+    public JWTChannelInterceptor(TokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String token = resolveToken(accessor);
+            Authentication authentication = tokenProvider
+                .authenticate(token)
+                .orElseThrow(() -> new BadCredentialsException("Invalid JWT token on the CONNECT frame"));
+            // the accessor of the CONNECT frame is mutable: the user set here becomes the user of the session
+            accessor.setUser(authentication);
+            accessor.removeNativeHeader(JWTFilter.AUTHORIZATION_HEADER);
+            expiresAt(token).ifPresent(expiresAt -> sessionAttributes(accessor).put(EXPIRES_AT_ATTRIBUTE, expiresAt));
+        } else if (accessor.getMessageType() == SimpMessageType.MESSAGE || accessor.getMessageType() == SimpMessageType.SUBSCRIBE) {
+            revalidate(accessor);
+            if (accessor.getFirstNativeHeader(JWTFilter.AUTHORIZATION_HEADER) != null) {
+                return withoutToken(message);
+            }
+        }
+        return message;
+    }
+
+    private static Message<?> withoutToken(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        accessor.removeNativeHeader(JWTFilter.AUTHORIZATION_HEADER);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private void revalidate(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Instant expiresAt = attributes != null ? (Instant) attributes.get(EXPIRES_AT_ATTRIBUTE) : null;
+        if (expiresAt == null || Instant.now().isBefore(expiresAt)) {
+            return;
+        }
+        String token = resolveToken(accessor);
+        Principal user = accessor.getUser();
+        boolean renewed =
+            user != null && tokenProvider.authenticate(token).map(Authentication::getName).filter(user.getName()::equals).isPresent();
+        if (!renewed) {
+            log.debug("The token of the STOMP session {} has expired", accessor.getSessionId());
+            throw new CredentialsExpiredException("The JWT token of the session has expired");
+        }
+        expiresAt(token).ifPresent(renewedExpiresAt -> attributes.put(EXPIRES_AT_ATTRIBUTE, renewedExpiresAt));
+    }
+
+    private Optional<Instant> expiresAt(String token) {
+        return token != null ? tokenProvider.getExpiration(token) : Optional.empty();
+    }
+
+    private static Map<String, Object> sessionAttributes(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            throw new IllegalStateException("No session attributes on the CONNECT frame of session " + accessor.getSessionId());
+        }
+        return attributes;
+    }
+
+    private static String resolveToken(StompHeaderAccessor accessor) {
+        String bearerToken = accessor.getFirstNativeHeader(JWTFilter.AUTHORIZATION_HEADER);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(BEARER_PREFIX)) {
+            return bearerToken.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+}
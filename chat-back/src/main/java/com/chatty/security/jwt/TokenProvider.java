@@ -1,5 +1,6 @@
 package com.chatty.security.jwt;
 
+import com.chatty.config.ApplicationProperties;
 import com.chatty.management.SecurityMetersService;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
@@ -7,6 +8,8 @@ import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -27,17 +30,32 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String TOKEN_TYPE_KEY = "token_type";
+
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    // the standard issue date is in seconds
+    private static final String ISSUED_AT_MILLIS_KEY = "iat_ms";
+
     private final Key key;
 
     private final JwtParser jwtParser;
 
     private final long tokenValidityInMilliseconds;
 
-    private final long tokenValidityInMillisecondsForRememberMe;
+    private final long refreshTokenValidityInMilliseconds;
+
+    private final long refreshTokenValidityInMillisecondsForRememberMe;
 
     private final SecurityMetersService securityMetersService;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties, SecurityMetersService securityMetersService) {
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    public TokenProvider(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        SecurityMetersService securityMetersService
+    ) {
         byte[] keyBytes;
         String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret();
         if (!ObjectUtils.isEmpty(secret)) {
@@ -54,35 +72,169 @@ public class TokenProvider {
         key = Keys.hmacShaKeyFor(keyBytes);
         jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
         this.tokenValidityInMilliseconds = 1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
-        this.tokenValidityInMillisecondsForRememberMe =
+        this.refreshTokenValidityInMilliseconds = 1000 * applicationProperties.getAuthentication().getRefreshToken().getValidityInSeconds();
+        this.refreshTokenValidityInMillisecondsForRememberMe =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
 
         this.securityMetersService = securityMetersService;
+        this.verifiedTokenCache = new VerifiedTokenCache(applicationProperties.getCache().getVerifiedTokens().getMaxEntries());
     }
 
-    public String createToken(Authentication authentication, boolean rememberMe) {
+    /**
+     * Create a short-lived access token, renewed with a refresh token once it expires.
+     *
+     * @param authentication the authentication of the user.
+     * @return the JWT.
+     */
+    public String createToken(Authentication authentication) {
         String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(","));
 
+        long now = (new Date()).getTime();
+        Date validity = new Date(now + this.tokenValidityInMilliseconds);
+
+        return Jwts
+            .builder()
+            .setSubject(authentication.getName())
+            .claim(AUTHORITIES_KEY, authorities)
+            .signWith(key, SignatureAlgorithm.HS512)
+            .setExpiration(validity)
+            .compact();
+    }
+
+    /**
+     * Create a refresh token, which only carries the login of the user, its issue date, to the millisecond, and an id to
+     * revoke it by: it is not accepted as an access token.
+     *
+     * @param login the login of the user.
+     * @param rememberMe whether the refresh token should last as long as a remember-me login.
+     * @return the JWT.
+     */
+    public String createRefreshToken(String login, boolean rememberMe) {
         long now = (new Date()).getTime();
         Date validity;
         if (rememberMe) {
-            validity = new Date(now + this.tokenValidityInMillisecondsForRememberMe);
+            validity = new Date(now + this.refreshTokenValidityInMillisecondsForRememberMe);
         } else {
-            validity = new Date(now + this.tokenValidityInMilliseconds);
+            validity = new Date(now + this.refreshTokenValidityInMilliseconds);
+        }
+        return createRefreshToken(login, validity);
+    }
+
+    /**
+     * Create the refresh token replacing a refresh token which was used: it expires with it, so that rotating the
+     * refresh tokens does not extend a login.
+     *
+     * @param claims the claims of the refresh token used, as returned by {@link #verifyRefreshToken(String)}.
+     * @return the JWT.
+     */
+    public String rotateRefreshToken(Claims claims) {
+        return createRefreshToken(claims.getSubject(), claims.getExpiration());
+    }
+
+    /**
+     * @return the longest validity of a refresh token, that of a remember-me login.
+     */
+    public Duration getRefreshTokenMaxValidity() {
+        return Duration.ofMillis(Math.max(refreshTokenValidityInMilliseconds, refreshTokenValidityInMillisecondsForRememberMe));
+    }
+
+    /**
+     * @param claims the claims of a refresh token, as returned by {@link #verifyRefreshToken(String)}.
+     * @return the issue date of the refresh token, to the millisecond, or to the second for the tokens issued without
+     * it, empty if the token has none.
+     */
+    public Optional<Instant> getIssuedAt(Claims claims) {
+        Long issuedAt = claims.get(ISSUED_AT_MILLIS_KEY, Long.class);
+        if (issuedAt != null) {
+            return Optional.of(Instant.ofEpochMilli(issuedAt));
         }
+        return Optional.ofNullable(claims.getIssuedAt()).map(Date::toInstant);
+    }
 
+    private String createRefreshToken(String login, Date validity) {
+        Date now = new Date();
         return Jwts
             .builder()
-            .setSubject(authentication.getName())
-            .claim(AUTHORITIES_KEY, authorities)
+            .setId(UUID.randomUUID().toString())
+            .setSubject(login)
+            .claim(TOKEN_TYPE_KEY, REFRESH_TOKEN_TYPE)
+            .claim(ISSUED_AT_MILLIS_KEY, now.getTime())
             .signWith(key, SignatureAlgorithm.HS512)
+            .setIssuedAt(now)
             .setExpiration(validity)
             .compact();
     }
 
+    /**
+     * Verify the signature and the expiration of a refresh token, without looking at its revocation.
+     *
+     * @param refreshToken the JWT.
+     * @return the claims of the refresh token, with the login of the user as subject and the id of the token, empty if
+     * the token is not a valid refresh token.
+     */
+    public Optional<Claims> verifyRefreshToken(String refreshToken) {
+        if (ObjectUtils.isEmpty(refreshToken)) {
+            return Optional.empty();
+        }
+        return parseClaims(refreshToken).filter(TokenProvider::isRefreshToken).filter(claims -> claims.getId() != null);
+    }
+
+    /**
+     * Verify a token and read the authentication it carries, in a single parse. The tokens verified before are read from
+     * the cache until they expire.
+     *
+     * @param token the JWT.
+     * @return the authentication, empty if the token is not valid.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        if (ObjectUtils.isEmpty(token)) {
+            return Optional.empty();
+        }
+        Authentication authentication = verifiedTokenCache.get(token);
+        if (authentication != null) {
+            return Optional.of(authentication);
+        }
+        return parseClaims(token).filter(claims -> !isRefreshToken(claims)).map(claims -> toAuthentication(token, claims));
+    }
+
+    /**
+     * @param token a JWT verified by {@link #validateToken(String)}.
+     * @return the authentication carried by the token.
+     * @throws JwtException if the token is not valid.
+     */
     public Authentication getAuthentication(String token) {
+        Authentication authentication = verifiedTokenCache.get(token);
+        if (authentication != null) {
+            return authentication;
+        }
         Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        if (isRefreshToken(claims)) {
+            throw new UnsupportedJwtException("A refresh token is not an access token");
+        }
+        return toAuthentication(token, claims);
+    }
 
+    /**
+     * @param token a JWT verified by {@link #authenticate(String)}.
+     * @return the expiration of the token, empty if the token is not valid or does not expire.
+     */
+    public Optional<Instant> getExpiration(String token) {
+        Long expiresAt = verifiedTokenCache.getExpiresAt(token);
+        if (expiresAt != null) {
+            return Optional.of(Instant.ofEpochMilli(expiresAt));
+        }
+        return parseClaims(token).map(Claims::getExpiration).map(Date::toInstant);
+    }
+
+    public boolean validateToken(String authToken) {
+        return authenticate(authToken).isPresent();
+    }
+
+    private static boolean isRefreshToken(Claims claims) {
+        return REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_KEY));
+    }
+
+    private Authentication toAuthentication(String token, Claims claims) {
         Collection<? extends GrantedAuthority> authorities = Arrays
             .stream(claims.get(AUTHORITIES_KEY).toString().split(","))
             .filter(auth -> !auth.trim().isEmpty())
@@ -91,14 +243,15 @@ public class TokenProvider {
 
         User principal = new User(claims.getSubject(), "", authorities);
 
+        if (claims.getExpiration() != null) {
+            verifiedTokenCache.put(token, principal, authorities, claims.getExpiration().getTime());
+        }
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
 
-    public boolean validateToken(String authToken) {
+    private Optional<Claims> parseClaims(String authToken) {
         try {
-            jwtParser.parseClaimsJws(authToken);
-
-            return true;
+            return Optional.of(jwtParser.parseClaimsJws(authToken).getBody());
         } catch (ExpiredJwtException e) {
             this.securityMetersService.trackTokenExpired();
 
@@ -119,6 +272,6 @@ public class TokenProvider {
             log.error("Token validation error {}", e.getMessage());
         }
 
-        return false;
+        return Optional.empty();
     }
 }
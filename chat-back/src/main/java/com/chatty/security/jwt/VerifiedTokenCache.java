@@ -0,0 +1,122 @@
+package com.chatty.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * In-memory index of the tokens whose signature was verified, to the principal read from their claims.
+ * <p>
+ * Tokens are keyed by their SHA-256 digest, so that the cache does not hold the tokens themselves. Entries are bounded
+ * by {@code application.cache.verified-tokens.max-entries} (least recently used entries are dropped first) and expire
+ * with their token.
+ */
+class VerifiedTokenCache {
+
+    private final int maxEntries;
+
+    private final Map<String, VerifiedToken> entries;
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries =
+            new LinkedHashMap<String, VerifiedToken>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                    return size() > VerifiedTokenCache.this.maxEntries;
+                }
+            };
+    }
+
+    /**
+     * Get the authentication of a token verified before.
+     *
+     * @param token the JWT.
+     * @return a new authentication of the principal of the token, null if the token was not verified or has expired.
+     */
+    Authentication get(String token) {
+        VerifiedToken verified = lookup(token);
+        // a new authentication per request, as an authentication is mutable
+        return verified != null ? new UsernamePasswordAuthenticationToken(verified.principal, token, verified.authorities) : null;
+    }
+
+    /**
+     * @param token the JWT.
+     * @return the expiration of a token verified before, in milliseconds since the epoch, null if the token was not
+     * verified or has expired.
+     */
+    Long getExpiresAt(String token) {
+        VerifiedToken verified = lookup(token);
+        return verified != null ? verified.expiresAt : null;
+    }
+
+    /**
+     * Keep the principal of a verified token until the token expires.
+     *
+     * @param token the JWT.
+     * @param principal the principal read from its claims.
+     * @param authorities the authorities read from its claims.
+     * @param expiresAt the expiration of the token, in milliseconds since the epoch.
+     */
+    void put(String token, User principal, Collection<? extends GrantedAuthority> authorities, long expiresAt) {
+        String digest = digest(token);
+        synchronized (this) {
+            entries.put(digest, new VerifiedToken(principal, authorities, expiresAt));
+        }
+    }
+
+    private VerifiedToken lookup(String token) {
+        if (token == null) {
+            return null;
+        }
+        String digest = digest(token);
+        synchronized (this) {
+            VerifiedToken verified = entries.get(digest);
+            if (verified != null && verified.isExpired()) {
+                entries.remove(digest);
+                return null;
+            }
+            return verified;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+
+        private final User principal;
+
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        private final long expiresAt;
+
+        private VerifiedToken(User principal, Collection<? extends GrantedAuthority> authorities, long expiresAt) {
+            this.principal = principal;
+            this.authorities = authorities;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
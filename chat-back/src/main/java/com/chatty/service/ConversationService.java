@@ -2,28 +2,44 @@ package com.chatty.service;
 
 import com.chatty.domain.Conversation;
 import com.chatty.domain.Room;
+import com.chatty.domain.RoomReadState;
 import com.chatty.domain.User;
-import com.chatty.domain.enumeration.ConversationState;
 import com.chatty.repository.ConversationRepository;
+import com.chatty.repository.RoomReadStateRepository;
 import com.chatty.service.dto.ConversationDTO;
-import com.chatty.service.dto.RoomDTO;
-import com.chatty.service.dto.UserDTO;
+import com.chatty.service.dto.PendingConversationDTO;
+import com.chatty.service.dto.ReadReceiptDTO;
 import com.chatty.service.mapper.ConversationMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link Conversation}.
+ * <p>
+ * The conversations are saved with their rooms locked, before their ids are taken: the saves of the conversations of a
+ * room are serialized, whichever node or writer they come from, and a conversation not committed yet always gets a
+ * greater id than those already committed in its room. The read watermarks, the unread counts and the history cursors,
+ * which compare conversation ids, rely on it.
  */
 @Service
 @Transactional
@@ -39,11 +55,14 @@ public class ConversationService {
 
     private final RoomService roomService;
 
-    public ConversationService(ConversationRepository conversationRepository, ConversationMapper conversationMapper, UserService userService, RoomService roomService) {
+    private final RoomReadStateRepository roomReadStateRepository;
+
+    public ConversationService(ConversationRepository conversationRepository, ConversationMapper conversationMapper, UserService userService, RoomService roomService, RoomReadStateRepository roomReadStateRepository) {
         this.conversationRepository = conversationRepository;
         this.conversationMapper = conversationMapper;
         this.userService = userService;
         this.roomService = roomService;
+        this.roomReadStateRepository = roomReadStateRepository;
     }
 
     /**
@@ -56,35 +75,92 @@ public class ConversationService {
         log.debug("Request to save Conversation : {}", conversationDTO);
         Conversation conversation = conversationMapper.toEntity(conversationDTO);
         String sender = conversationDTO.getSender().getLogin();
-        String receiver = conversationDTO.getSender().getLogin();
         userService.findUserByLogin(sender).ifPresent(conversation::sender);
-        userService.findUserByLogin(receiver).ifPresent(conversation::receiver);
+        boolean delivered = conversation.getId() == null;
+        if (delivered && conversation.getRoom() != null) {
+            Set<Long> roomIds = Collections.singleton(conversation.getRoom().getId());
+            roomService.findAllByIdForUpdate(roomIds);
+            createMissingReadStates(roomIds);
+        }
         conversation = conversationRepository.save(conversation);
+        if (delivered) {
+            countAsUnread(Collections.singletonList(conversation));
+        }
         return conversationMapper.toDto(conversation);
     }
 
     /**
-     * Save the conversation.
+     * Save a batch of pending conversations in a single transaction.
+     * <p>
+     * Senders and rooms are resolved with one query each, the rooms being locked, and the inserts are grouped into JDBC
+     * batches by Hibernate ({@code hibernate.jdbc.batch_size}). Each conversation is audited as created by its sender
+     * (see {@link Conversation}), and counted as unread by the other members of its room.
      *
-     * @param message  the message of the entity.
-     * @param roomId   the id of the room entity.
-     * @param sender the login of the sender user entity.
-     * @param receiver the login of the receiver user entity.
+     * @param pendingConversations the conversations to save.
      */
-    public void save(String message, Long roomId, String sender, String receiver) {
-        Conversation conversation = new Conversation();
-        conversation.setContent(message);
-        Optional<Room> optionalRoom = roomService.findById(roomId);
-        userService.findUserByLogin(sender).ifPresent(conversation::sender);
-        userService.findUserByLogin(receiver).ifPresent(conversation::receiver);
-        if (optionalRoom.isPresent()) {
-            Room room = optionalRoom.get();
-            conversation.setRoom(room);
-            conversation.setConversationState(ConversationState.DELIVERED);
-            conversationRepository.save(conversation);
+    public void saveAll(List<PendingConversationDTO> pendingConversations) {
+        log.debug("Request to save {} Conversations", pendingConversations.size());
+        Set<String> logins = pendingConversations.stream().map(PendingConversationDTO::getSender).collect(Collectors.toSet());
+        Set<Long> roomIds = pendingConversations.stream().map(PendingConversationDTO::getRoomId).collect(Collectors.toSet());
+        Map<String, User> users = userService
+            .findUsersByLogins(logins)
+            .stream()
+            .collect(Collectors.toMap(User::getLogin, Function.identity()));
+        Map<Long, Room> rooms = roomService.findAllByIdForUpdate(roomIds).stream().collect(Collectors.toMap(Room::getId, Function.identity()));
+        createMissingReadStates(rooms.keySet());
+
+        List<Conversation> conversations = new ArrayList<>(pendingConversations.size());
+        for (PendingConversationDTO pending : pendingConversations) {
+            Room room = rooms.get(pending.getRoomId());
+            if (room == null) {
+                log.warn("Dropping Conversation of unknown Room : {}", pending);
+                continue;
+            }
+            Conversation conversation = new Conversation()
+                .content(pending.getContent())
+                .room(room)
+                .sender(users.get(pending.getSender()));
+            conversation = conversationRepository.save(conversation);
+            pending.setId(conversation.getId());
+            conversations.add(conversation);
+        }
+        countAsUnread(conversations);
+    }
+
+    /**
+     * Create the read states of the members of rooms who have none, such as those who joined a room since its last
+     * conversation, so that the conversations delivered next are counted for them: the history of the room before they
+     * joined is not unread, their watermark starts at its last conversation.
+     * <p>
+     * Run it with the rooms locked: the states of a room are only created under its lock, once.
+     */
+    private void createMissingReadStates(Collection<Long> roomIds) {
+        List<Object[]> members = roomReadStateRepository.findMembersWithoutStateByRoomIds(roomIds);
+        if (members.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> lastConversationIds = findLastConversationIds(roomIds);
+        for (Object[] member : members) {
+            Long roomId = (Long) member[0];
+            Long userId = (Long) member[1];
+            roomReadStateRepository.save(new RoomReadState(roomId, userId, lastConversationIds.getOrDefault(roomId, 0L)));
         }
     }
 
+    /**
+     * Increment the unread counts of the members of the rooms of delivered conversations, with one update per room.
+     */
+    private void countAsUnread(List<Conversation> conversations) {
+        Map<Long, List<Long>> conversationIdsByRoom = new HashMap<>();
+        for (Conversation conversation : conversations) {
+            if (conversation.getRoom() == null || conversation.getSender() == null) {
+                continue;
+            }
+            conversationIdsByRoom.computeIfAbsent(conversation.getRoom().getId(), roomId -> new ArrayList<>()).add(conversation.getId());
+        }
+        conversationIdsByRoom.forEach(roomReadStateRepository::incrementUnreadCount);
+    }
+
     /**
      * Partially update a conversation.
      *
@@ -117,56 +193,108 @@ public class ConversationService {
 
 
     /**
-     * Get Current User Conversations Count By State grouped by Room
+     * Get Current User unread Conversations Count grouped by Room, read from the unread counters of the user.
      **/
     @Transactional(readOnly = true)
-    public List<?> getCurrentUserConversationsCountByStateGroupedByRoom(ConversationState conversationState) {
-        log.debug("Request to get current user conversations count by state grouped by room");
+    public List<?> getCurrentUserUnreadConversationsCountGroupedByRoom() {
+        log.debug("Request to get current user unread conversations count grouped by room");
         Optional<User> optionalUser = userService.getUserWithAuthorities();
         if (optionalUser.isPresent()) {
             User user = optionalUser.get();
-            return conversationRepository.getConversationsCountByReceiverAndStateGroupedByRoom(conversationState, user.getId());
+            return roomReadStateRepository.findUnreadCountsByUserIdGroupedByRoom(user.getId());
         }
         return new ArrayList<>();
     }
 
     /**
-     * Get Current User Conversations Count By State grouped by Sender
+     * Get Current User unread Conversations Count grouped by Sender, read from the unread counters of the private rooms
+     * of the user.
      **/
     @Transactional(readOnly = true)
-    public List<?> getCurrentUserConversationsCountByStateGroupedBySender(ConversationState conversationState) {
-        log.debug("Request to get current user conversations count by state grouped by sender");
+    public List<?> getCurrentUserUnreadConversationsCountGroupedBySender() {
+        log.debug("Request to get current user unread conversations count grouped by sender");
         Optional<User> optionalUser = userService.getUserWithAuthorities();
         if (optionalUser.isPresent()) {
             User user = optionalUser.get();
-            return conversationRepository.getConversationsCountByReceiverAndStateGroupedBySender(conversationState, user.getId());
+            return roomReadStateRepository.findUnreadCountsByUserIdGroupedBySender(user.getId());
         }
         return new ArrayList<>();
     }
 
     /**
-     * Get Current User Conversations Count By State and Room
+     * Get Current User unread Conversations Count in Room, read from the unread counter of the user in the room.
      **/
     @Transactional(readOnly = true)
-    public int getConversationCountByRoomAndReceiverAndState(ConversationState conversationState, Long roomId) {
-        log.debug("Request to get current user conversations count by state and Room");
+    public int getCurrentUserUnreadConversationCountByRoom(Long roomId) {
+        log.debug("Request to get current user unread conversations count in Room");
         Optional<User> optionalUser = userService.getUserWithAuthorities();
         if (optionalUser.isPresent()) {
             User user = optionalUser.get();
-            return conversationRepository.getConversationCountByRoomAndReceiverAndState(conversationState, user.getId(), roomId);
+            return roomReadStateRepository.findUnreadCountByRoomIdAndUserId(roomId, user.getId()).orElse(0);
         }
         return 0;
     }
 
     /**
-     * Update Current User Conversation State By Room
+     * Get the ids of the last conversations saved in rooms, with a single query.
+     *
+     * @param roomIds the ids of the rooms.
+     * @return the id of the last conversation, by room id, without the rooms which have none.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> findLastConversationIds(Collection<Long> roomIds) {
+        return conversationRepository
+            .findLastConversationIdsByRoomIds(roomIds)
+            .stream()
+            .collect(Collectors.toMap(row -> (Long) row[0], row -> (Long) row[1]));
+    }
+
+    /**
+     * Mark the conversations of rooms as read by their readers, by moving their read watermarks to the last conversation
+     * each reader saw, which stops counting the conversations in between as unread. The watermarks are those of the reads, not the last
+     * conversations of the rooms when they are applied: the conversations saved since are still unread. Relies on
+     * the conversations of a room being committed in the order of their ids, which the locks of the rooms ensure.
+     * <p>
+     * Nothing is written for a reader who already saw the conversation, or who is not a member of the room.
+     * <p>
+     * The rooms are locked first, in the order of their ids, then the read states: the same order as the deliveries,
+     * which lock their rooms before updating the states of every member, so that a read and a delivery covering the
+     * same rooms cannot deadlock.
+     *
+     * @param watermarksByRoom the id of the last conversation seen, by reader login, by room id.
+     * @return the watermarks moved, with the senders of the conversations they marked as seen.
      **/
-    public void updateConversationStateByRoom(ConversationState conversationState, Long roomId) {
-        Optional<User> optionalUser = userService.getUserWithAuthorities();
-        if (optionalUser.isPresent()) {
-            User user = optionalUser.get();
-            this.conversationRepository.updateConversationStateByRoom(conversationState, roomId, user.getId());
-        }
+    public List<ReadReceiptDTO> markRoomsAsRead(Map<Long, Map<String, Long>> watermarksByRoom) {
+        log.debug("Request to mark {} Rooms as read", watermarksByRoom.size());
+        Set<String> logins = watermarksByRoom.values().stream().flatMap(watermarks -> watermarks.keySet().stream()).collect(Collectors.toSet());
+        Map<String, Long> userIds = userService
+            .findUsersByLogins(logins)
+            .stream()
+            .collect(Collectors.toMap(User::getLogin, User::getId));
+        // once locked, the conversations delivered concurrently are committed, and counted, before the watermarks move
+        roomService.findAllByIdForUpdate(watermarksByRoom.keySet());
+        // first reads, possibly concurrent with other ones or with the delivery of a conversation
+        createMissingReadStates(watermarksByRoom.keySet());
+        Instant now = Instant.now();
+        List<ReadReceiptDTO> readReceipts = new ArrayList<>();
+        watermarksByRoom.forEach((roomId, watermarks) ->
+            watermarks.forEach((reader, lastSeenId) -> {
+                Long userId = userIds.get(reader);
+                if (userId == null || !roomService.isMember(roomId, reader)) {
+                    return;
+                }
+                // also locked against the deletions, which update the states without locking the room
+                Optional<RoomReadState> state = roomReadStateRepository.findOneForUpdate(roomId, userId);
+                Long watermark = state.map(RoomReadState::getLastReadConversationId).orElse(0L);
+                if (watermark >= lastSeenId || roomReadStateRepository.advanceWatermark(roomId, userId, lastSeenId, now) == 0) {
+                    // already seen
+                    return;
+                }
+                List<String> senders = conversationRepository.findSenderLoginsByRoomIdAndIdBetween(roomId, watermark, lastSeenId, reader);
+                readReceipts.add(new ReadReceiptDTO(roomId, reader, lastSeenId, new HashSet<>(senders)));
+            })
+        );
+        return readReceipts;
     }
 
     /**
@@ -176,7 +304,21 @@ public class ConversationService {
      */
     @Transactional(readOnly = true)
     public Page<ConversationDTO> findAllByRoom(Pageable pageable, long roomId) {
-        return conversationRepository.findAllByRoomId(pageable, roomId).map(conversationMapper::toDto);
+        return conversationRepository.findAllByRoomId(pageable, roomId);
+    }
+
+    /**
+     * Get a page of the history of a Room, newest first, from a cursor.
+     *
+     * @param roomId the id of the room.
+     * @param beforeId the id of the oldest conversation already loaded, or {@code null} for the last conversations.
+     * @param size the number of conversations.
+     * @return the conversations older than {@code beforeId}, with whether there are more.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ConversationDTO> findAllByRoomBefore(Long roomId, Long beforeId, int size) {
+        log.debug("Request to get {} Conversations of Room {} before {}", size, roomId, beforeId);
+        return conversationRepository.findAllByRoomIdAndIdLessThan(roomId, beforeId != null ? beforeId : Long.MAX_VALUE, PageRequest.of(0, size));
     }
 
     /**
@@ -198,6 +340,12 @@ public class ConversationService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Conversation : {}", id);
+        conversationRepository
+            .findById(id)
+            .filter(conversation -> conversation.getRoom() != null && conversation.getSender() != null)
+            .ifPresent(conversation ->
+                roomReadStateRepository.decrementUnreadCount(conversation.getRoom().getId(), conversation.getSender().getId(), id)
+            );
         conversationRepository.deleteById(id);
     }
 }
@@ -0,0 +1,229 @@
+package com.chatty.service;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.service.dto.PendingConversationDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind queue persisting chat messages off the STOMP inbound threads.
+ * <p>
+ * Messages are buffered in a bounded queue and flushed by a single writer thread through
+ * {@link ConversationService#saveAll(List)}, either when {@code batch-size} messages are waiting or when
+ * {@code flush-interval-ms} has elapsed since the first one. The writer is the only one saving the queued messages, so
+ * that their ids follow the order they were sent in to this node. The
+ * producers never wait for the database: a message is rejected when the queue is full or not running, for its sender
+ * to be told and send it again. The queue is drained by the writer when the application stops.
+ * <p>
+ * The last message queued in each room is kept until it is flushed, for the reads of the room to cover the messages
+ * seen by the user but not saved yet.
+ */
+@Component
+public class ConversationWriteBehindQueue implements SmartLifecycle {
+
+    public static final String METER_PREFIX = "chat.conversation.write-behind";
+
+    /**
+     * Wakes the writer up on shutdown, instead of waiting for the end of the flush interval.
+     */
+    private static final PendingConversationDTO STOP = new PendingConversationDTO(null, null, null);
+
+    private final Logger log = LoggerFactory.getLogger(ConversationWriteBehindQueue.class);
+
+    private final ConversationService conversationService;
+
+    private final BlockingQueue<PendingConversationDTO> queue;
+
+    private final ConcurrentMap<Long, PendingConversationDTO> lastQueuedByRoom = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final Counter flushedCounter;
+
+    private final Counter fullCounter;
+
+    private final Counter failedCounter;
+
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public ConversationWriteBehindQueue(
+        ConversationService conversationService,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Conversation.WriteBehind properties = applicationProperties.getConversation().getWriteBehind();
+        this.conversationService = conversationService;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        Gauge.builder(METER_PREFIX + ".queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.flushedCounter = Counter.builder(METER_PREFIX + ".flushed").baseUnit("messages").register(meterRegistry);
+        this.fullCounter = Counter.builder(METER_PREFIX + ".full").baseUnit("messages").register(meterRegistry);
+        this.failedCounter = Counter.builder(METER_PREFIX + ".failed").baseUnit("messages").register(meterRegistry);
+        this.flushTimer = Timer.builder(METER_PREFIX + ".flush").register(meterRegistry);
+    }
+
+    /**
+     * Queue a message to be persisted, without waiting: the message is rejected when the queue is full, or when it is
+     * not running.
+     *
+     * @param pendingConversation the message.
+     * @return whether the message was queued.
+     */
+    public boolean enqueue(PendingConversationDTO pendingConversation) {
+        if (!running) {
+            log.warn("Write-behind queue stopped, Conversation rejected : {}", pendingConversation);
+            return false;
+        }
+        if (!queue.offer(pendingConversation)) {
+            fullCounter.increment();
+            log.warn("Write-behind queue full, Conversation rejected : {}", pendingConversation);
+            return false;
+        }
+        if (!running && queue.remove(pendingConversation)) {
+            // stopped in between, after the queue was drained
+            log.warn("Write-behind queue stopped, Conversation rejected : {}", pendingConversation);
+            return false;
+        }
+        lastQueuedByRoom.put(pendingConversation.getRoomId(), pendingConversation);
+        if (pendingConversation.isFlushed()) {
+            // flushed before it was registered
+            lastQueuedByRoom.remove(pendingConversation.getRoomId(), pendingConversation);
+        }
+        return true;
+    }
+
+    /**
+     * @param roomId the id of the room.
+     * @return the last message queued in the room, if it was not flushed yet: the messages queued before it in the room
+     * are saved with lower ids.
+     */
+    public Optional<PendingConversationDTO> findLastQueued(Long roomId) {
+        return Optional.ofNullable(lastQueuedByRoom.get(roomId));
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "chatty-conversation-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop queuing messages, and wait for the writer to save those queued, however long the batch it is writing takes:
+     * the writer drains the queue itself, so that it stays the only one saving the queued messages.
+     */
+    @Override
+    public void stop() {
+        Thread stoppedWriter;
+        synchronized (this) {
+            running = false;
+            stoppedWriter = writer;
+            writer = null;
+        }
+        if (stoppedWriter == null) {
+            return;
+        }
+        // when the queue is full, the writer sees it is stopped at the end of its batch instead
+        queue.offer(STOP);
+        try {
+            stoppedWriter.join();
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the write-behind queue to be drained");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void writeLoop() {
+        List<PendingConversationDTO> batch = new ArrayList<>(batchSize);
+        boolean stopRequested = false;
+        while (running && !stopRequested) {
+            try {
+                PendingConversationDTO first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize && !batch.contains(STOP)) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingConversationDTO next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // the interrupt status is not restored: this thread is ours, and the batch must still be saved
+                stopRequested = true;
+            }
+            stopRequested |= batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        // no message is queued once stopped, but those queued until then
+        List<PendingConversationDTO> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.remove(STOP);
+        log.debug("Draining {} queued Conversations", remaining.size());
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            flush(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+        }
+    }
+
+    private void flush(List<PendingConversationDTO> batch) {
+        try {
+            flushTimer.record(() -> conversationService.saveAll(batch));
+            flushedCounter.increment(batch.size());
+            batch.forEach(pending -> flushed(pending, true));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                failedCounter.increment();
+                log.error("Could not save Conversation : {}", batch.get(0), e);
+                flushed(batch.get(0), false);
+                return;
+            }
+            // retry one by one, so that a single bad message does not lose the whole batch
+            log.warn("Could not save a batch of {} Conversations, retrying one by one", batch.size(), e);
+            batch.forEach(pending -> flush(Collections.singletonList(pending)));
+        }
+    }
+
+    private void flushed(PendingConversationDTO pending, boolean saved) {
+        pending.flushed(saved);
+        lastQueuedByRoom.remove(pending.getRoomId(), pending);
+    }
+}
@@ -0,0 +1,288 @@
+package com.chatty.service;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.config.DedicatedScheduler;
+import com.chatty.security.SecurityUtils;
+import com.chatty.service.dto.PendingConversationDTO;
+import com.chatty.service.dto.ReadReceiptDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records the reads of the rooms, coalescing the repeated reads of a room by a user.
+ * <p>
+ * Clients mark a room as read when it is opened and on each message received while it is open. A read covers the
+ * conversations saved in the room, and the messages still waiting in the {@link ConversationWriteBehindQueue} when it
+ * was made, which get their ids once flushed.
+ * <p>
+ * The first read of a room by a user is saved right away, up to the conversations saved when it is made, so that the
+ * unread counts fetched next reflect it, and opens a window of
+ * {@code application.conversation.read-receipt.coalesce-interval-ms}: the reads made during the window are saved
+ * together once it ends, along with those of the other users and rooms, without querying the database on each read.
+ * They cover the conversations saved when they are flushed, the last one being read once per room, which are at most a
+ * window later than the last read. A read covering queued messages is saved up to the saved conversations meanwhile,
+ * and completed once the messages are flushed. The watermarks moved are
+ * published as one {@link ReadReceiptsEvent}, to tell the senders their messages were seen. The windows are flushed by
+ * a {@link DedicatedScheduler}, for the jobs of the shared scheduling pool not to delay the receipts; the reads of a
+ * flush which fails, such as on a deadlock, are saved by the next one.
+ * <p>
+ * The messages still queued on the other nodes of a cluster are not covered: they are read on the next read.
+ */
+@Service
+public class ReadReceiptService {
+
+    public static final String METER_PREFIX = "chat.read-receipt";
+
+    private final Logger log = LoggerFactory.getLogger(ReadReceiptService.class);
+
+    private final ConversationService conversationService;
+
+    private final ConversationWriteBehindQueue conversationWriteBehindQueue;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final long coalesceIntervalNanos;
+
+    private final DedicatedScheduler scheduler = new DedicatedScheduler("read-receipt");
+
+    private final ConcurrentMap<RoomReader, Window> windows = new ConcurrentHashMap<>();
+
+    private final Queue<ReadReceiptDTO> readReceipts = new ConcurrentLinkedQueue<>();
+
+    private final Counter readsCounter;
+
+    private final Counter coalescedCounter;
+
+    private final Counter advancedCounter;
+
+    public ReadReceiptService(
+        ConversationService conversationService,
+        ConversationWriteBehindQueue conversationWriteBehindQueue,
+        ApplicationEventPublisher applicationEventPublisher,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.conversationService = conversationService;
+        this.conversationWriteBehindQueue = conversationWriteBehindQueue;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.coalesceIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(applicationProperties.getConversation().getReadReceipt().getCoalesceIntervalMs());
+        this.readsCounter = Counter.builder(METER_PREFIX + ".reads").register(meterRegistry);
+        this.coalescedCounter = Counter.builder(METER_PREFIX + ".coalesced").register(meterRegistry);
+        this.advancedCounter = Counter.builder(METER_PREFIX + ".advanced").register(meterRegistry);
+    }
+
+    /**
+     * Mark the conversations of a room as read by the current user.
+     *
+     * @param roomId the id of the room.
+     */
+    public void markRoomAsRead(Long roomId) {
+        SecurityUtils.getCurrentUserLogin().ifPresent(login -> markRoomAsRead(roomId, login));
+    }
+
+    /**
+     * Mark the conversations of a room as read by a user: right away if the user did not read the room during the last
+     * interval, at the end of the current window otherwise.
+     *
+     * @param roomId the id of the room.
+     * @param login the login of the user.
+     */
+    public void markRoomAsRead(Long roomId, String login) {
+        readsCounter.increment();
+        Seen seen = new Seen(conversationWriteBehindQueue.findLastQueued(roomId).orElse(null));
+        RoomReader roomReader = new RoomReader(roomId, login);
+        long now = System.nanoTime();
+        boolean[] opened = new boolean[1];
+        windows.compute(
+            roomReader,
+            (key, window) -> {
+                if (window == null || now - window.openedAt >= coalesceIntervalNanos) {
+                    opened[0] = true;
+                    Window opening = new Window(now);
+                    if (!seen.isFlushed()) {
+                        opening.pending = seen;
+                    }
+                    return opening;
+                }
+                // a later read covers the earlier ones
+                window.pending = seen;
+                return window;
+            }
+        );
+        if (opened[0]) {
+            // after the queue: a message flushed in between is then among the saved conversations
+            Long watermark = seen.getWatermark(conversationService.findLastConversationIds(Collections.singleton(roomId)).get(roomId));
+            if (watermark != null) {
+                Map<Long, Map<String, Long>> watermarksByRoom = Collections.singletonMap(roomId, Collections.singletonMap(login, watermark));
+                received(conversationService.markRoomsAsRead(watermarksByRoom));
+            }
+        } else {
+            coalescedCounter.increment();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.start(this::flush, TimeUnit.NANOSECONDS.toMillis(coalesceIntervalNanos));
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.stop();
+    }
+
+    public void flush() {
+        long now = System.nanoTime();
+        Map<RoomReader, Window> flushed = new HashMap<>();
+        for (RoomReader roomReader : windows.keySet()) {
+            Window window = windows.get(roomReader);
+            if (window == null || now - window.openedAt < coalesceIntervalNanos || !windows.remove(roomReader, window)) {
+                continue;
+            }
+            flushed.put(roomReader, window);
+        }
+        Map<Long, Map<String, Long>> watermarksByRoom = new HashMap<>();
+        Set<Long> roomIds = flushed
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue().pending != null)
+            .map(entry -> entry.getKey().roomId)
+            .collect(Collectors.toSet());
+        if (!roomIds.isEmpty()) {
+            Map<Long, Long> lastSavedIds = conversationService.findLastConversationIds(roomIds);
+            flushed.forEach((roomReader, window) -> {
+                Seen seen = window.pending;
+                if (seen == null) {
+                    return;
+                }
+                if (!seen.isFlushed()) {
+                    // completed at a next flush, unless a new read replaced the window meanwhile: it covers this one
+                    windows.putIfAbsent(roomReader, window);
+                }
+                Long watermark = seen.getWatermark(lastSavedIds.get(roomReader.roomId));
+                if (watermark != null) {
+                    watermarksByRoom.computeIfAbsent(roomReader.roomId, roomId -> new HashMap<>()).put(roomReader.login, watermark);
+                }
+            });
+        }
+        if (!watermarksByRoom.isEmpty()) {
+            try {
+                received(conversationService.markRoomsAsRead(watermarksByRoom));
+            } catch (RuntimeException e) {
+                // saved at the next flush, unless new reads replaced the windows meanwhile: they cover them
+                log.warn("Could not save the reads of {} Rooms, retrying at the next flush: {}", watermarksByRoom.size(), e.getMessage());
+                flushed.forEach(windows::putIfAbsent);
+            }
+        }
+
+        List<ReadReceiptDTO> published = new ArrayList<>();
+        ReadReceiptDTO readReceipt;
+        while ((readReceipt = readReceipts.poll()) != null) {
+            published.add(readReceipt);
+        }
+        if (!published.isEmpty()) {
+            log.debug("Publishing {} read receipts", published.size());
+            applicationEventPublisher.publishEvent(new ReadReceiptsEvent(published));
+        }
+    }
+
+    private void received(List<ReadReceiptDTO> advanced) {
+        readReceipts.addAll(advanced);
+        advancedCounter.increment(advanced.size());
+    }
+
+    private static final class RoomReader {
+
+        private final Long roomId;
+
+        private final String login;
+
+        private RoomReader(Long roomId, String login) {
+            this.roomId = roomId;
+            this.login = login;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RoomReader)) {
+                return false;
+            }
+            RoomReader other = (RoomReader) o;
+            return Objects.equals(roomId, other.roomId) && Objects.equals(login, other.login);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomId, login);
+        }
+    }
+
+    /**
+     * What a user saw of a room when reading it, besides the conversations saved.
+     */
+    private static final class Seen {
+
+        private final PendingConversationDTO lastQueued;
+
+        private Seen(PendingConversationDTO lastQueued) {
+            this.lastQueued = lastQueued;
+        }
+
+        /**
+         * @return whether the messages seen are all saved, or given up.
+         */
+        private boolean isFlushed() {
+            return lastQueued == null || lastQueued.isFlushed();
+        }
+
+        /**
+         * @param lastSavedId the id of the last conversation saved in the room, {@code null} if there is none.
+         * @return the id of the last conversation seen and saved, {@code null} if there is none yet.
+         */
+        private Long getWatermark(Long lastSavedId) {
+            Long lastQueuedId = lastQueued != null ? lastQueued.getId() : null;
+            if (lastQueuedId == null) {
+                return lastSavedId;
+            }
+            return lastSavedId == null ? lastQueuedId : Math.max(lastQueuedId, lastSavedId);
+        }
+    }
+
+    private static final class Window {
+
+        private final long openedAt;
+
+        /**
+         * What the user saw when last reading the room during the window, {@code null} if it is saved.
+         */
+        private volatile Seen pending;
+
+        private Window(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.chatty.service;
+
+import com.chatty.service.dto.ReadReceiptDTO;
+import java.util.List;
+
+/**
+ * Published by {@link ReadReceiptService} once per interval with the read watermarks moved meanwhile, so that the
+ * senders can be told their messages were seen.
+ */
+public class ReadReceiptsEvent {
+
+    private final List<ReadReceiptDTO> readReceipts;
+
+    public ReadReceiptsEvent(List<ReadReceiptDTO> readReceipts) {
+        this.readReceipts = readReceipts;
+    }
+
+    public List<ReadReceiptDTO> getReadReceipts() {
+        return readReceipts;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadReceiptsEvent{" + "readReceipts=" + readReceipts + "}";
+    }
+}
@@ -0,0 +1,312 @@
+package com.chatty.service;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.domain.RefreshTokenCutoff;
+import com.chatty.domain.RevokedToken;
+import com.chatty.repository.RefreshTokenCutoffRepository;
+import com.chatty.repository.RevokedTokenRepository;
+import com.chatty.repository.UserRepository;
+import com.chatty.security.jwt.TokenProvider;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Issues the refresh tokens, and exchanges them for new access tokens.
+ * <p>
+ * A refresh is checked against the signature of the refresh token and the revocation lists, both in memory, and the
+ * user is read through the caches of {@link com.chatty.repository.UserRepository}: unlike a login, it does not check a
+ * password hash. Users deleted or deactivated since are refused, and the new access token carries their current
+ * authorities. The refresh tokens are rotated: a refresh revokes the token used and returns a new one, so that a
+ * replayed refresh token is refused.
+ * <p>
+ * Tokens are revoked one by one, such as on logout, and all together for a user whose password changes. The revoked
+ * tokens are persisted: the revocations of this node are added to the list in memory once committed, those of the other
+ * nodes are read every {@code application.authentication.refresh-token.revocation-sync-interval-ms}, a refresh with a
+ * token they revoked being refused in the meantime by its revocation in the database. The revocations of all the tokens
+ * of a user are read from the database by each refresh, with the user locked: a refresh is either refused or issues a
+ * token which the password change revokes, whatever the node.
+ */
+@Service
+public class RefreshTokenService {
+
+    public static final String METER_PREFIX = "security.authentication.refresh-token";
+
+    private final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final TokenProvider tokenProvider;
+
+    private final UserDetailsService userDetailsService;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final RefreshTokenCutoffRepository refreshTokenCutoffRepository;
+
+    private final UserRepository userRepository;
+
+    private final long revocationSyncIntervalMs;
+
+    // expiration of the revoked tokens, by id
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+
+    private volatile Instant lastSync;
+
+    private final Counter refreshedCounter;
+
+    private final Counter refusedCounter;
+
+    private final Counter replayedCounter;
+
+    public RefreshTokenService(
+        TokenProvider tokenProvider,
+        UserDetailsService userDetailsService,
+        RevokedTokenRepository revokedTokenRepository,
+        RefreshTokenCutoffRepository refreshTokenCutoffRepository,
+        UserRepository userRepository,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.tokenProvider = tokenProvider;
+        this.userDetailsService = userDetailsService;
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.refreshTokenCutoffRepository = refreshTokenCutoffRepository;
+        this.userRepository = userRepository;
+        this.revocationSyncIntervalMs = applicationProperties.getAuthentication().getRefreshToken().getRevocationSyncIntervalMs();
+        this.refreshedCounter = Counter.builder(METER_PREFIX + ".refreshes").tag("result", "success").register(meterRegistry);
+        this.refusedCounter = Counter.builder(METER_PREFIX + ".refreshes").tag("result", "refused").register(meterRegistry);
+        this.replayedCounter = Counter.builder(METER_PREFIX + ".refreshes").tag("result", "replayed").register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".revoked", revokedTokens, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * @param login the login of the authenticated user.
+     * @param rememberMe whether the refresh token should last as long as a remember-me login.
+     * @return a new refresh token.
+     */
+    public String createRefreshToken(String login, boolean rememberMe) {
+        return tokenProvider.createRefreshToken(login, rememberMe);
+    }
+
+    /**
+     * Exchange a refresh token for a new access token and a new refresh token, expiring with the one used, which is
+     * revoked.
+     *
+     * @param refreshToken the refresh token.
+     * @return the new tokens, empty if the refresh token is not valid, is revoked, such as by a previous refresh or a
+     * password change, or if its user can no longer log in.
+     */
+    @Transactional
+    public Optional<RefreshedTokens> refresh(String refreshToken) {
+        Optional<RefreshedTokens> refreshed = tokenProvider
+            .verifyRefreshToken(refreshToken)
+            .filter(this::isValid)
+            .filter(this::isIssuedAfterCutoff)
+            .flatMap(claims -> loadUser(claims.getSubject()).filter(user -> revokeUsed(claims)).map(user -> rotate(claims, user)));
+        (refreshed.isPresent() ? refreshedCounter : refusedCounter).increment();
+        return refreshed;
+    }
+
+    /**
+     * Revoke a refresh token, such as on logout: it is refused from now on by this node, and by the others once they
+     * have read the revocation list.
+     *
+     * @param refreshToken the refresh token, ignored if it is not valid.
+     */
+    @Transactional
+    public void revoke(String refreshToken) {
+        tokenProvider
+            .verifyRefreshToken(refreshToken)
+            .ifPresent(claims -> {
+                log.debug("Revoking the refresh token {} of {}", claims.getId(), claims.getSubject());
+                userRepository.findOneForUpdateByLogin(claims.getSubject());
+                revoke(claims);
+            });
+    }
+
+    /**
+     * Revoke all the refresh tokens of a user, such as when the password changes: the tokens issued before, possibly
+     * stolen, are refused from now on, as are those issued during the same millisecond.
+     * <p>
+     * The user is locked until the end of the transaction, such as that of the password change: the refreshes in progress
+     * either commit before, their new tokens being revoked, or read the revocation once it is committed.
+     *
+     * @param login the login of the user.
+     */
+    @Transactional
+    public void revokeAll(String login) {
+        log.debug("Revoking the refresh tokens of {}", login);
+        userRepository.findOneForUpdateByLogin(login);
+        Instant now = Instant.now();
+        RefreshTokenCutoff cutoff = new RefreshTokenCutoff(
+            login,
+            now.truncatedTo(ChronoUnit.MILLIS).plusMillis(1),
+            now.plus(tokenProvider.getRefreshTokenMaxValidity())
+        );
+        refreshTokenCutoffRepository.save(cutoff);
+    }
+
+    /**
+     * Read the tokens revoked one by one by the other nodes, and forget the expired tokens.
+     * <p>
+     * The tokens revoked during the previous interval are read again, for the revocations committed late and the clocks
+     * of the nodes not quite in sync.
+     */
+    @Scheduled(fixedDelayString = "${application.authentication.refresh-token.revocation-sync-interval-ms:60000}")
+    public void syncRevokedTokens() {
+        Instant now = Instant.now();
+        Instant since = lastSync != null ? lastSync.minusMillis(revocationSyncIntervalMs) : Instant.EPOCH;
+        try {
+            for (RevokedToken revokedToken : revokedTokenRepository.findAllByRevokedAtGreaterThanEqualAndExpiresAtAfter(since, now)) {
+                revokedTokens.putIfAbsent(revokedToken.getId(), revokedToken.getExpiresAt());
+            }
+            lastSync = now;
+        } catch (DataAccessException e) {
+            log.warn("Could not read the revoked refresh tokens: {}", e.getMessage());
+        }
+        revokedTokens.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+    }
+
+    /**
+     * Expired tokens are refused anyway, they are removed from the revocation lists.
+     * <p>
+     * This is scheduled to get fired everyday, at 02:00 (am).
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    @Transactional
+    public void removeExpiredRevokedTokens() {
+        Instant now = Instant.now();
+        int removed = revokedTokenRepository.deleteExpired(now);
+        int removedCutoffs = refreshTokenCutoffRepository.deleteExpired(now);
+        log.debug("Removed {} expired revoked refresh tokens, and {} cutoffs", removed, removedCutoffs);
+    }
+
+    private boolean isValid(Claims claims) {
+        if (lastSync == null) {
+            // the revocation lists were not read yet
+            syncRevokedTokens();
+        }
+        if (revokedTokens.containsKey(claims.getId())) {
+            replayed(claims);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lock the user of a refresh token, then check that the token was not revoked by a change of its password, such as
+     * on another node: the refresh and the token it issues are serialized with the password changes.
+     */
+    private boolean isIssuedAfterCutoff(Claims claims) {
+        userRepository.findOneForUpdateByLogin(claims.getSubject());
+        Optional<Instant> issuedAt = tokenProvider.getIssuedAt(claims);
+        return refreshTokenCutoffRepository
+            .findById(claims.getSubject())
+            .map(cutoff -> issuedAt.isPresent() && !issuedAt.get().isBefore(cutoff.getIssuedBefore()))
+            .orElse(true);
+    }
+
+    /**
+     * Revoke the refresh token used by a refresh: of concurrent refreshes with the same token, serialized by the lock of
+     * their user, only one succeeds.
+     */
+    private boolean revokeUsed(Claims claims) {
+        if (!revoke(claims)) {
+            replayed(claims);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Revoke a token, with its user locked, unless it is revoked already.
+     */
+    private boolean revoke(Claims claims) {
+        String id = claims.getId();
+        Instant expiresAt = claims.getExpiration().toInstant();
+        if (revokedTokenRepository.existsById(id)) {
+            return false;
+        }
+        revokedTokenRepository.save(new RevokedToken(id, expiresAt));
+        afterCommit(() -> revokedTokens.putIfAbsent(id, expiresAt));
+        return true;
+    }
+
+    private void replayed(Claims claims) {
+        replayedCounter.increment();
+        log.warn("Refused the revoked refresh token {} of {}, used again", claims.getId(), claims.getSubject());
+    }
+
+    private RefreshedTokens rotate(Claims claims, UserDetails user) {
+        String accessToken = tokenProvider.createToken(new UsernamePasswordAuthenticationToken(user.getUsername(), null, user.getAuthorities()));
+        return new RefreshedTokens(accessToken, tokenProvider.rotateRefreshToken(claims));
+    }
+
+    private Optional<UserDetails> loadUser(String login) {
+        try {
+            return Optional.of(userDetailsService.loadUserByUsername(login));
+        } catch (AuthenticationException e) {
+            log.debug("Refresh refused for {}: {}", login, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Update the revocation lists in memory once the revocation is committed, so that a rollback does not leave them
+     * revoking tokens which the database does not.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                }
+            );
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The tokens returned by a refresh.
+     */
+    public static final class RefreshedTokens {
+
+        private final String accessToken;
+
+        private final String refreshToken;
+
+        private RefreshedTokens(String accessToken, String refreshToken) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+        }
+
+        public String getAccessToken() {
+            return accessToken;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
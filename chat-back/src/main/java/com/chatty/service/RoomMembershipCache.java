@@ -0,0 +1,128 @@
+package com.chatty.service;
+
+import com.chatty.config.ApplicationProperties;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory index of room id to the logins of its members.
+ * <p>
+ * Entries are bounded by {@code application.cache.room-membership.max-entries} (least recently used entries are
+ * dropped first) and expire after {@code application.cache.room-membership.time-to-live-seconds}.
+ * Every write that changes the membership of a room must call {@link #evict(Long)}.
+ */
+@Component
+public class RoomMembershipCache {
+
+    private final Logger log = LoggerFactory.getLogger(RoomMembershipCache.class);
+
+    private final int maxEntries;
+
+    private final long timeToLiveMillis;
+
+    private final Map<Long, CachedMembers> entries;
+
+    /**
+     * Bumped on every eviction, so that a load started before an eviction does not repopulate the cache with stale
+     * members.
+     */
+    private long generation;
+
+    public RoomMembershipCache(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Cache.RoomMembership properties = applicationProperties.getCache().getRoomMembership();
+        this.maxEntries = properties.getMaxEntries();
+        this.timeToLiveMillis = properties.getTimeToLiveSeconds() * 1000;
+        this.entries =
+            new LinkedHashMap<Long, CachedMembers>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, CachedMembers> eldest) {
+                    return size() > RoomMembershipCache.this.maxEntries;
+                }
+            };
+    }
+
+    /**
+     * Get the member logins of a room, loading them on a miss.
+     *
+     * @param roomId the id of the room.
+     * @param loader loads the member logins from the database, called outside of the cache lock.
+     * @return the unmodifiable set of member logins.
+     */
+    public Set<String> get(Long roomId, Function<Long, Set<String>> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            CachedMembers entry = entries.get(roomId);
+            if (entry != null && !entry.isExpired(timeToLiveMillis)) {
+                return entry.logins;
+            }
+            loadGeneration = generation;
+        }
+        log.debug("Loading members of Room : {}", roomId);
+        Set<String> logins = Collections.unmodifiableSet(loader.apply(roomId));
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                entries.put(roomId, new CachedMembers(logins));
+            }
+        }
+        return logins;
+    }
+
+    /**
+     * Evict the members of a room. When called inside a transaction, the entry is evicted again after commit so that
+     * a concurrent load cannot cache the members as they were before the commit.
+     *
+     * @param roomId the id of the room.
+     */
+    public void evict(Long roomId) {
+        if (roomId == null) {
+            return;
+        }
+        doEvict(roomId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        doEvict(roomId);
+                    }
+                }
+            );
+        }
+    }
+
+    /**
+     * Evict all rooms, for changes that may affect the members of any room (e.g. a login change).
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    private synchronized void doEvict(Long roomId) {
+        generation++;
+        entries.remove(roomId);
+    }
+
+    private static final class CachedMembers {
+
+        private final Set<String> logins;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        private CachedMembers(Set<String> logins) {
+            this.logins = logins;
+        }
+
+        private boolean isExpired(long timeToLiveMillis) {
+            return System.currentTimeMillis() - loadedAt > timeToLiveMillis;
+        }
+    }
+}
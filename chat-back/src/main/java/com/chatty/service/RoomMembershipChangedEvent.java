@@ -0,0 +1,35 @@
+package com.chatty.service;
+
+import java.util.Set;
+
+/**
+ * Published by {@link RoomService} when a room is created or its members may have changed, so that the members can
+ * subscribe to the topic of the room, and when it is deleted, without any member.
+ */
+public class RoomMembershipChangedEvent {
+
+    private final Long roomId;
+
+    private final Set<String> memberLogins;
+
+    public RoomMembershipChangedEvent(Long roomId, Set<String> memberLogins) {
+        this.roomId = roomId;
+        this.memberLogins = memberLogins;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * @return the logins of the members of the room, as of the change.
+     */
+    public Set<String> getMemberLogins() {
+        return memberLogins;
+    }
+
+    @Override
+    public String toString() {
+        return "RoomMembershipChangedEvent{" + "roomId=" + roomId + ", memberLogins=" + memberLogins + "}";
+    }
+}
@@ -10,9 +10,11 @@ import com.chatty.service.dto.RoomDTO;
 import com.chatty.service.mapper.RoomMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
@@ -35,11 +37,24 @@ public class RoomService {
 
     private final UserService userService;
 
-    public RoomService(RoomRepository roomRepository, GroupRepository groupRepository, RoomMapper roomMapper, UserService userService) {
+    private final RoomMembershipCache roomMembershipCache;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public RoomService(
+        RoomRepository roomRepository,
+        GroupRepository groupRepository,
+        RoomMapper roomMapper,
+        UserService userService,
+        RoomMembershipCache roomMembershipCache,
+        ApplicationEventPublisher applicationEventPublisher
+    ) {
         this.roomRepository = roomRepository;
         this.groupRepository = groupRepository;
         this.roomMapper = roomMapper;
         this.userService = userService;
+        this.roomMembershipCache = roomMembershipCache;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     /**
@@ -52,6 +67,7 @@ public class RoomService {
         log.debug("Request to save Room : {}", roomDTO);
         Room room = roomMapper.toEntity(roomDTO);
         room = roomRepository.save(room);
+        membershipChanged(room.getId());
         return roomMapper.toDto(room);
     }
 
@@ -72,6 +88,10 @@ public class RoomService {
                 return existingRoom;
             })
             .map(roomRepository::save)
+            .map(room -> {
+                membershipChanged(room.getId());
+                return room;
+            })
             .map(roomMapper::toDto);
     }
 
@@ -147,6 +167,31 @@ public class RoomService {
         return roomRepository.findOneWithEagerRelationships(id).map(roomMapper::toDto);
     }
 
+    /**
+     * Get the logins of the members of a room, served from the {@link RoomMembershipCache}.
+     * <p>
+     * No transaction is started on a cache hit.
+     *
+     * @param id the id of the room.
+     * @return the logins of the room members, empty if the room does not exist.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Set<String> findMemberLogins(Long id) {
+        return roomMembershipCache.get(id, roomId -> new HashSet<>(roomRepository.findUserLoginsByRoomId(roomId)));
+    }
+
+    /**
+     * Check whether a user is a member of a room, used to authorize the subscriptions to the topic of the room.
+     *
+     * @param roomId the id of the room.
+     * @param login the login of the user.
+     * @return true if the user is a member of the room.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public boolean isMember(Long roomId, String login) {
+        return roomId != null && login != null && findMemberLogins(roomId).contains(login);
+    }
+
     /**
      * Get one room by id.
      *
@@ -159,6 +204,16 @@ public class RoomService {
         return roomRepository.findById(id);
     }
 
+    /**
+     * Get the rooms matching the given ids, in a single query, locked until the end of the current transaction.
+     *
+     * @param ids the ids of the entities.
+     * @return the entities found.
+     */
+    public List<Room> findAllByIdForUpdate(Collection<Long> ids) {
+        return roomRepository.findAllByIdForUpdate(ids);
+    }
+
     /**
      * Get all Rooms joined by Logged User.
      *
@@ -222,6 +277,7 @@ public class RoomService {
                 room.setIsActivated(true);
                 room.setUsers(users);
                 room = roomRepository.save(room);
+                membershipChanged(room.getId());
             }
             return roomMapper.toDto(room);
         }
@@ -229,13 +285,14 @@ public class RoomService {
     }
 
     /**
-     * Delete the room by id.
+     * Delete the room by id, which removes all its members.
      *
      * @param id the id of the entity.
      */
     public void delete(Long id) {
         log.debug("Request to delete Room : {}", id);
         roomRepository.deleteById(id);
+        membershipChanged(id);
     }
 
     /**
@@ -256,6 +313,18 @@ public class RoomService {
             room.setIsActivated(true);
             room.setGroup(group);
             room = roomRepository.save(room);
+            membershipChanged(room.getId());
         }
     }
+
+    /**
+     * Evict the cached members of a room and publish its members, as flushed by the current transaction.
+     *
+     * @param roomId the id of the room.
+     */
+    private void membershipChanged(Long roomId) {
+        roomMembershipCache.evict(roomId);
+        Set<String> memberLogins = new HashSet<>(roomRepository.findUserLoginsByRoomId(roomId));
+        applicationEventPublisher.publishEvent(new RoomMembershipChangedEvent(roomId, memberLogins));
+    }
 }
@@ -17,6 +17,8 @@ import java.util.stream.Collectors;
 import com.chatty.service.mapper.UserMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -42,11 +44,28 @@ public class UserService {
 
     private final UserMapper userMapper;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository, UserMapper userMapper) {
+    private final RoomMembershipCache roomMembershipCache;
+
+    private final CacheManager cacheManager;
+
+    private final RefreshTokenService refreshTokenService;
+
+    public UserService(
+        UserRepository userRepository,
+        PasswordEncoder passwordEncoder,
+        AuthorityRepository authorityRepository,
+        UserMapper userMapper,
+        RoomMembershipCache roomMembershipCache,
+        CacheManager cacheManager,
+        RefreshTokenService refreshTokenService
+    ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
         this.userMapper = userMapper;
+        this.roomMembershipCache = roomMembershipCache;
+        this.cacheManager = cacheManager;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -57,6 +76,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
+                this.clearUserCaches(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -71,6 +91,9 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
+                this.clearUserCaches(user);
+                // the refresh tokens issued with the previous password, possibly stolen, are refused
+                refreshTokenService.revokeAll(user.getLogin());
                 return user;
             });
     }
@@ -82,6 +105,7 @@ public class UserService {
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
+                this.clearUserCaches(user);
                 return user;
             });
     }
@@ -123,6 +147,7 @@ public class UserService {
         authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
+        this.clearUserCaches(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -133,6 +158,7 @@ public class UserService {
         }
         userRepository.delete(existingUser);
         userRepository.flush();
+        this.clearUserCaches(existingUser);
         return true;
     }
 
@@ -166,6 +192,7 @@ public class UserService {
             user.setAuthorities(authorities);
         }
         userRepository.save(user);
+        this.clearUserCaches(user);
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -182,6 +209,11 @@ public class UserService {
             .filter(Optional::isPresent)
             .map(Optional::get)
             .map(user -> {
+                this.clearUserCaches(user);
+                if (!user.getLogin().equals(userDTO.getLogin().toLowerCase())) {
+                    // room members are cached by login
+                    roomMembershipCache.clear();
+                }
                 user.setLogin(userDTO.getLogin().toLowerCase());
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
@@ -200,6 +232,8 @@ public class UserService {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .forEach(managedAuthorities::add);
+                // the new login may have been cached as unknown
+                this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -211,18 +245,30 @@ public class UserService {
             .findOneByLogin(login)
             .ifPresent(user -> {
                 userRepository.delete(user);
+                roomMembershipCache.clear();
+                this.clearUserCaches(user);
                 log.debug("Deleted User: {}", user);
             });
     }
 
     /**
-     * Update all information for a specific user by login.
+     * Get a user by login, served from the cache of the users by login.
      *
      * @param login user entity login.
      * @return user.
      */
     public Optional<User> findUserByLogin(String login) {
-        return userRepository.findOneByLogin(login);
+        return userRepository.findOneWithAuthoritiesByLogin(login);
+    }
+
+    /**
+     * Get the users matching the given logins, in a single query.
+     *
+     * @param logins users entity logins.
+     * @return the users found.
+     */
+    public List<User> findUsersByLogins(Collection<String> logins) {
+        return userRepository.findAllByLoginIn(logins);
     }
 
     /**
@@ -249,6 +295,8 @@ public class UserService {
             .getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .ifPresent(user -> {
+                // before the email changes, as users are also cached by email
+                this.clearUserCaches(user);
                 user.setFirstName(firstName);
                 user.setLastName(lastName);
                 if (email != null) {
@@ -272,6 +320,9 @@ public class UserService {
                 }
                 String encryptedPassword = passwordEncoder.encode(newPassword);
                 user.setPassword(encryptedPassword);
+                this.clearUserCaches(user);
+                // the refresh tokens issued with the previous password, possibly stolen, are refused
+                refreshTokenService.revokeAll(user.getLogin());
                 log.debug("Changed password for User: {}", user);
             });
     }
@@ -308,6 +359,7 @@ public class UserService {
             .forEach(user -> {
                 log.debug("Deleting not activated user {}", user.getLogin());
                 userRepository.delete(user);
+                this.clearUserCaches(user);
             });
     }
 
@@ -319,4 +371,24 @@ public class UserService {
     public List<String> getAuthorities() {
         return authorityRepository.findAll().stream().map(Authority::getName).collect(Collectors.toList());
     }
+
+    /**
+     * Evict a user from the caches of the users by login and by email, right away for the rest of the transaction and
+     * again once it commits, in case a concurrent read cached the user as it was before.
+     *
+     * @param user the user, with its current login and email.
+     */
+    private void clearUserCaches(User user) {
+        evict(UserRepository.USERS_BY_LOGIN_CACHE, user.getLogin());
+        evict(UserRepository.USERS_BY_EMAIL_CACHE, user.getEmail());
+    }
+
+    private void evict(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            // evictIfPresent is immediate, evict is deferred until the transaction commits
+            cache.evictIfPresent(key);
+            cache.evict(key);
+        }
+    }
 }
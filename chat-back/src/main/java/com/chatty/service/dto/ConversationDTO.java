@@ -1,6 +1,5 @@
 package com.chatty.service.dto;
 
-import com.chatty.domain.enumeration.ConversationState;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.Objects;
@@ -14,16 +13,31 @@ public class ConversationDTO implements Serializable {
 
     private String content;
 
-    private ConversationState conversationState;
-
     private RoomDTO room;
 
     private UserDTO sender;
 
-    private UserDTO receiver;
-
     private Instant createdDate;
 
+    public ConversationDTO() {}
+
+    /**
+     * Constructor of the history queries, which select the columns of the DTO instead of the entities and their
+     * associations.
+     */
+    public ConversationDTO(Long id, String content, Instant createdDate, Long roomId, Long senderId, String senderLogin) {
+        this.id = id;
+        this.content = content;
+        this.createdDate = createdDate;
+        if (roomId != null) {
+            this.room = new RoomDTO();
+            this.room.setId(roomId);
+        }
+        if (senderId != null) {
+            this.sender = new UserDTO(senderId, senderLogin);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -40,14 +54,6 @@ public class ConversationDTO implements Serializable {
         this.content = content;
     }
 
-    public ConversationState getConversationState() {
-        return conversationState;
-    }
-
-    public void setConversationState(ConversationState conversationState) {
-        this.conversationState = conversationState;
-    }
-
     public RoomDTO getRoom() {
         return room;
     }
@@ -64,14 +70,6 @@ public class ConversationDTO implements Serializable {
         this.sender = sender;
     }
 
-    public UserDTO getReceiver() {
-        return receiver;
-    }
-
-    public void setReceiver(UserDTO receiver) {
-        this.receiver = receiver;
-    }
-
     public Instant getCreatedDate() {
         return createdDate;
     }
@@ -107,10 +105,8 @@ public class ConversationDTO implements Serializable {
         return "ConversationDTO{" +
             "id=" + getId() +
             ", content='" + getContent() + "'" +
-            ", conversationState='" + getConversationState() + "'" +
             ", room=" + getRoom() +
             ", user=" + getSender() +
-            ", receiver=" + getReceiver() +
             "}";
     }
 }
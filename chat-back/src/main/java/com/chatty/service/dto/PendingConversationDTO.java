@@ -0,0 +1,71 @@
+package com.chatty.service.dto;
+
+/**
+ * A DTO representing a chat message waiting in the write-behind queue to be persisted as a
+ * {@link com.chatty.domain.Conversation}.
+ * <p>
+ * It gets the id of the conversation once saved: the reads of its room made while it was queued are applied up to it.
+ */
+public class PendingConversationDTO {
+
+    private final String content;
+    private final Long roomId;
+    private final String sender;
+    private volatile Long id;
+    private volatile boolean flushed;
+
+    public PendingConversationDTO(String content, Long roomId, String sender) {
+        this.content = content;
+        this.roomId = roomId;
+        this.sender = sender;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * @return the id of the saved conversation, {@code null} until it is flushed, or if it could not be saved.
+     */
+    public Long getId() {
+        return flushed ? id : null;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return whether the write-behind queue is done with the message: saved, or given up.
+     */
+    public boolean isFlushed() {
+        return flushed;
+    }
+
+    /**
+     * @param saved whether the message was saved; its id is forgotten otherwise, the transaction having rolled back.
+     */
+    public void flushed(boolean saved) {
+        if (!saved) {
+            id = null;
+        }
+        flushed = true;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "PendingConversationDTO{" +
+            "roomId=" + getRoomId() +
+            ", sender='" + getSender() + "'" +
+            "}";
+    }
+}
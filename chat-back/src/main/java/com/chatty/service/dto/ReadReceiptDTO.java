@@ -0,0 +1,52 @@
+package com.chatty.service.dto;
+
+import java.util.Set;
+
+/**
+ * A DTO representing the move of the read watermark of a user in a room, with the senders of the messages it marked as
+ * seen.
+ */
+public class ReadReceiptDTO {
+
+    private final Long roomId;
+    private final String reader;
+    private final Long lastReadConversationId;
+    private final Set<String> senders;
+
+    public ReadReceiptDTO(Long roomId, String reader, Long lastReadConversationId, Set<String> senders) {
+        this.roomId = roomId;
+        this.reader = reader;
+        this.lastReadConversationId = lastReadConversationId;
+        this.senders = senders;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public String getReader() {
+        return reader;
+    }
+
+    public Long getLastReadConversationId() {
+        return lastReadConversationId;
+    }
+
+    /**
+     * @return the logins of the senders of the newly seen messages, the reader excluded.
+     */
+    public Set<String> getSenders() {
+        return senders;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ReadReceiptDTO{" +
+            "roomId=" + getRoomId() +
+            ", reader='" + getReader() + "'" +
+            ", lastReadConversationId=" + getLastReadConversationId() +
+            ", senders=" + getSenders() +
+            "}";
+    }
+}
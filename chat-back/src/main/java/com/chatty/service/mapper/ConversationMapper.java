@@ -11,7 +11,6 @@ import org.mapstruct.*;
 public interface ConversationMapper extends EntityMapper<ConversationDTO, Conversation> {
     @Mapping(target = "room", source = "room", qualifiedByName = "id")
     @Mapping(target = "sender", source = "sender", qualifiedByName = "login")
-    @Mapping(target = "receiver", source = "receiver", qualifiedByName = "login")
     ConversationDTO toDto(Conversation s);
 
     @Named("id")
@@ -1,8 +1,8 @@
 package com.chatty.web.rest;
 
-import com.chatty.domain.enumeration.ConversationState;
 import com.chatty.repository.ConversationRepository;
 import com.chatty.service.ConversationService;
+import com.chatty.service.ReadReceiptService;
 import com.chatty.service.dto.ConversationDTO;
 import com.chatty.web.rest.errors.BadRequestAlertException;
 import org.slf4j.Logger;
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tech.jhipster.web.util.HeaderUtil;
@@ -29,15 +30,18 @@ import java.util.Optional;
 public class ConversationResource {
 
     private static final String ENTITY_NAME = "conversation";
+    private static final int MAX_HISTORY_SIZE = 100;
     private final Logger log = LoggerFactory.getLogger(ConversationResource.class);
     private final ConversationService conversationService;
     private final ConversationRepository conversationRepository;
+    private final ReadReceiptService readReceiptService;
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
-    public ConversationResource(ConversationService conversationService, ConversationRepository conversationRepository) {
+    public ConversationResource(ConversationService conversationService, ConversationRepository conversationRepository, ReadReceiptService readReceiptService) {
         this.conversationService = conversationService;
         this.conversationRepository = conversationRepository;
+        this.readReceiptService = readReceiptService;
     }
 
     /**
@@ -56,9 +60,6 @@ public class ConversationResource {
         if (Objects.isNull(conversationDTO.getSender())) {
             throw new BadRequestAlertException("Invalid association value provided", ENTITY_NAME, "null");
         }
-        if (Objects.isNull(conversationDTO.getReceiver())) {
-            throw new BadRequestAlertException("Invalid association value provided", ENTITY_NAME, "null");
-        }
         ConversationDTO result = conversationService.save(conversationDTO);
         return ResponseEntity
             .created(new URI("/api/conversations/" + result.getId()))
@@ -148,50 +149,53 @@ public class ConversationResource {
     }
 
     /**
-     * {@code GET  /conversations/logged/delivered/by-room/count} : Get current User Conversations Count By State grouped by Room
+     * {@code GET  /conversations/logged/delivered/by-room/count} : Get current User unread Conversations Count grouped by Room
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and count.
      */
     @GetMapping("/conversations/logged/delivered/by-room/count")
-    public List<?> getCurrentUserConversationsCountByStateGroupedByRoom() {
-        log.debug("REST request to get current user conversations count by state grouped by room");
-        return conversationService.getCurrentUserConversationsCountByStateGroupedByRoom(ConversationState.DELIVERED);
+    public List<?> getCurrentUserUnreadConversationsCountGroupedByRoom() {
+        log.debug("REST request to get current user unread conversations count grouped by room");
+        return conversationService.getCurrentUserUnreadConversationsCountGroupedByRoom();
     }
 
     /**
-     * {@code GET  /conversations/logged/delivered/by-sender/count} : Get current User Conversations Count By State grouped by Sender
+     * {@code GET  /conversations/logged/delivered/by-sender/count} : Get current User unread Conversations Count grouped by Sender
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and count.
      */
     @GetMapping("/conversations/logged/delivered/by-sender/count")
-    public List<?> getCurrentUserConversationsCountByStateGroupedBySender() {
-        log.debug("REST request to get current user conversations count by state grouped by sender");
-        return conversationService.getCurrentUserConversationsCountByStateGroupedBySender(ConversationState.DELIVERED);
+    public List<?> getCurrentUserUnreadConversationsCountGroupedBySender() {
+        log.debug("REST request to get current user unread conversations count grouped by sender");
+        return conversationService.getCurrentUserUnreadConversationsCountGroupedBySender();
     }
 
     /**
-     * {@code GET  /conversations/logged/room/{id} : Update current user conversation state by room
-     *
+     * {@code PUT  /conversations/logged/room/{id} : Mark the conversations of the room as read by the current user.
+     * Repeated calls are coalesced, see {@link ReadReceiptService}.
      */
     @PutMapping("/conversations/logged/room/{id}")
-    public void updateConversationStateByRoom(@PathVariable Long id) {
-        log.debug("REST request to update conversation state by room");
-        conversationService.updateConversationStateByRoom(ConversationState.SEEN, id);
+    public void markRoomAsRead(@PathVariable Long id) {
+        log.debug("REST request to mark Room {} as read", id);
+        readReceiptService.markRoomAsRead(id);
     }
 
     /**
-     * {@code GET  /conversations/logged/delivered/room/{id}/count} : Get current User Conversation Count By State and Room
+     * {@code GET  /conversations/logged/delivered/room/{id}/count} : Get current User unread Conversation Count in Room
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and count.
      */
     @GetMapping("/conversations/logged/delivered/room/{id}/count")
-    public int getCurrentUserConversationCountByRoomAndState(@PathVariable Long id) {
-        log.debug("REST request to get current user conversation count by room and state");
-        return conversationService.getConversationCountByRoomAndReceiverAndState(ConversationState.DELIVERED, id);
+    public int getCurrentUserUnreadConversationCountByRoom(@PathVariable Long id) {
+        log.debug("REST request to get current user unread conversation count by room");
+        return conversationService.getCurrentUserUnreadConversationCountByRoom(id);
     }
 
     /**
      * {@code GET  /conversations/:roomId} : get all the conversations of Room.
+     * <p>
+     * Each page counts the conversations of the room and skips those of the previous pages: scrolling through the
+     * history should use {@link #getConversationHistoryByRoom(Long, Long, int)} instead.
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of conversations in body.
      */
@@ -201,6 +205,29 @@ public class ConversationResource {
         return conversationService.findAllByRoom(pageable, roomId);
     }
 
+    /**
+     * {@code GET  /conversations/room/:roomId/history?before=:id&size=:size} : get the conversations of Room older than
+     * a conversation, newest first. The next page is requested with the id of the last conversation of this one, while
+     * the slice is not the {@code last}.
+     *
+     * @param roomId the id of the room.
+     * @param before the id of the oldest conversation already loaded, none for the last conversations.
+     * @param size the number of conversations, at most {@value #MAX_HISTORY_SIZE}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the slice of conversations in body.
+     */
+    @GetMapping("/conversations/room/{roomId}/history")
+    public Slice<ConversationDTO> getConversationHistoryByRoom(
+        @PathVariable Long roomId,
+        @RequestParam(required = false) Long before,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        log.debug("REST request to get {} Conversations of Room {} before {}", size, roomId, before);
+        if (size < 1 || size > MAX_HISTORY_SIZE) {
+            throw new BadRequestAlertException("The size must be between 1 and " + MAX_HISTORY_SIZE, ENTITY_NAME, "invalidsize");
+        }
+        return conversationService.findAllByRoomBefore(roomId, before, size);
+    }
+
     /**
      * {@code GET  /conversations/:id} : get the "id" conversation.
      *
@@ -1,17 +1,20 @@
 package com.chatty.web.rest;
 
+import com.chatty.security.AuthenticationExecutor;
 import com.chatty.security.jwt.JWTFilter;
 import com.chatty.security.jwt.TokenProvider;
+import com.chatty.service.RefreshTokenService;
 import com.chatty.web.rest.vm.LoginVM;
+import com.chatty.web.rest.vm.RefreshTokenVM;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.CompletableFuture;
 import javax.validation.Valid;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -25,24 +28,79 @@ public class UserJWTController {
 
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
-    public UserJWTController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder) {
+    private final AuthenticationExecutor authenticationExecutor;
+
+    private final RefreshTokenService refreshTokenService;
+
+    public UserJWTController(
+        TokenProvider tokenProvider,
+        AuthenticationManagerBuilder authenticationManagerBuilder,
+        AuthenticationExecutor authenticationExecutor,
+        RefreshTokenService refreshTokenService
+    ) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
+        this.authenticationExecutor = authenticationExecutor;
+        this.refreshTokenService = refreshTokenService;
     }
 
+    /**
+     * {@code POST  /authenticate} : authenticate a user with a password.
+     * <p>
+     * The password is checked on the {@link AuthenticationExecutor}, and the request thread is released meanwhile.
+     *
+     * @param loginVM the login and password.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the access and refresh tokens, with status
+     * {@code 401 (Unauthorized)} if the authentication fails, or with status {@code 503 (Service Unavailable)} if too
+     * many authentications are in progress.
+     */
     @PostMapping("/authenticate")
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public CompletableFuture<ResponseEntity<JWTToken>> authorize(@Valid @RequestBody LoginVM loginVM) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
             loginVM.getUsername(),
             loginVM.getPassword()
         );
 
-        Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.createToken(authentication, loginVM.isRememberMe());
+        return authenticationExecutor
+            .authenticate(() -> authenticationManagerBuilder.getObject().authenticate(authenticationToken))
+            .thenApply(authentication -> {
+                String jwt = tokenProvider.createToken(authentication);
+                String refreshToken = refreshTokenService.createRefreshToken(authentication.getName(), loginVM.isRememberMe());
+                return tokenResponse(jwt, refreshToken);
+            });
+    }
+
+    /**
+     * {@code POST  /authenticate/refresh} : get a new access token for a refresh token, without the password.
+     *
+     * @param refreshTokenVM the refresh token, revoked by the refresh.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the new access token and refresh token, or with
+     * status {@code 401 (Unauthorized)} if the refresh token is not valid or was revoked.
+     */
+    @PostMapping("/authenticate/refresh")
+    public ResponseEntity<JWTToken> refresh(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        RefreshTokenService.RefreshedTokens tokens = refreshTokenService
+            .refresh(refreshTokenVM.getRefreshToken())
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        return tokenResponse(tokens.getAccessToken(), tokens.getRefreshToken());
+    }
+
+    /**
+     * {@code POST  /authenticate/revoke} : revoke a refresh token, on logout.
+     *
+     * @param refreshTokenVM the refresh token.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}.
+     */
+    @PostMapping("/authenticate/revoke")
+    public ResponseEntity<Void> revoke(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        refreshTokenService.revoke(refreshTokenVM.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<JWTToken> tokenResponse(String jwt, String refreshToken) {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
-        return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
+        return new ResponseEntity<>(new JWTToken(jwt, refreshToken), httpHeaders, HttpStatus.OK);
     }
 
     /**
@@ -52,8 +110,11 @@ public class UserJWTController {
 
         private String idToken;
 
-        JWTToken(String idToken) {
+        private String refreshToken;
+
+        JWTToken(String idToken, String refreshToken) {
             this.idToken = idToken;
+            this.refreshToken = refreshToken;
         }
 
         @JsonProperty("id_token")
@@ -64,5 +125,14 @@ public class UserJWTController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 }
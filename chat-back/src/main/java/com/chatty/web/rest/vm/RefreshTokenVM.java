@@ -0,0 +1,26 @@
+package com.chatty.web.rest.vm;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * View Model object for storing the refresh token of a user.
+ */
+public class RefreshTokenVM {
+
+    @NotNull
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "RefreshTokenVM{}";
+    }
+}
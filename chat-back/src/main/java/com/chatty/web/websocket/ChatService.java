@@ -1,149 +1,150 @@
 package com.chatty.web.websocket;
 
-import com.chatty.domain.Notification;
 import com.chatty.domain.enumeration.NotificationType;
 import com.chatty.domain.enumeration.UserState;
-import com.chatty.service.ConversationService;
+import com.chatty.service.ConversationWriteBehindQueue;
 import com.chatty.service.RoomService;
-import com.chatty.service.dto.GroupDTO;
-import com.chatty.service.dto.RoomDTO;
-import com.chatty.service.dto.UserDTO;
+import com.chatty.service.dto.PendingConversationDTO;
+import com.chatty.web.websocket.cluster.ClusterPresenceService;
+import com.chatty.web.websocket.dto.MessageNotificationDTO;
+import com.chatty.web.websocket.dto.Notification;
 import com.chatty.web.websocket.dto.NotificationDTO;
-import com.chatty.web.websocket.dto.UserSocketDTO;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
-import org.hibernate.boot.Metadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
-import java.time.Instant;
-import java.util.*;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Handles the STOMP messages sent by the clients.
+ * <p>
+ * Room messages are published once on the topic of the room, {@code /topic/room.{id}}, which only the members of the
+ * room may subscribe to (see {@code WebsocketSecurityConfiguration}), so the broker fans them out. Calls are sent to
+ * the user queue of each other member of the room, {@code /user/{login}/queue/messages}. Both are dropped when their
+ * sender is not a member of the room. A room message the
+ * write-behind queue cannot take is not published, and sent back to its sender as
+ * {@link NotificationType#MESSAGE_REJECTED}.
+ * <p>
+ * The payloads sent to {@code /chat} are decoded in one pass by the broker message converter into the
+ * {@link NotificationDTO} subclass of their {@code type}.
+ */
 @Controller
 public class ChatService {
 
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room.";
+
+    public static final String USER_DESTINATION = "/queue/messages";
+
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
 
-    private final SimpMessageSendingOperations messagingTemplate;
     private final RoomService roomService;
-    private final ConversationService conversationService;
+    private final ConversationWriteBehindQueue conversationWriteBehindQueue;
     private final UserSocketService userSocketService;
+    private final OnlineUsersSnapshotService onlineUsersSnapshotService;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final MessageFanout messageFanout;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ClusterPresenceService clusterPresenceService;
 
-    public ChatService(SimpMessageSendingOperations messagingTemplate, RoomService roomService, ConversationService conversationService, UserSocketService userSocketService) {
-        this.messagingTemplate = messagingTemplate;
+    public ChatService(RoomService roomService, ConversationWriteBehindQueue conversationWriteBehindQueue, UserSocketService userSocketService, OnlineUsersSnapshotService onlineUsersSnapshotService, PresenceBroadcaster presenceBroadcaster, MessageFanout messageFanout, SimpMessageSendingOperations messagingTemplate, ClusterPresenceService clusterPresenceService) {
         this.roomService = roomService;
-        this.conversationService = conversationService;
+        this.conversationWriteBehindQueue = conversationWriteBehindQueue;
         this.userSocketService = userSocketService;
+        this.onlineUsersSnapshotService = onlineUsersSnapshotService;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.messageFanout = messageFanout;
+        this.messagingTemplate = messagingTemplate;
+        this.clusterPresenceService = clusterPresenceService;
     }
 
     @MessageMapping("/online-users")
-    public void getOnlineUsers(Principal principal) {
-        Notification notification = new Notification();
-        notification.setTime(Instant.now());
-        notification.setType(NotificationType.ONLINE_USERS);
-        List<UserSocketDTO> userSocketDTOS = userSocketService.getSubscribedSocketUsersByDestination("/topic/public");
-        userSocketDTOS.removeIf(userState -> userState.getUsername().equals(principal.getName()));
-        notification.addToMetadata("USERS", String.join(", ", new Gson().toJson(userSocketDTOS)));
-        messagingTemplate.convertAndSendToUser(principal.getName()
-            , "/queue/messages", notification);
+    public void getOnlineUsers(Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        onlineUsersSnapshotService.sendSnapshot(principal.getName(), headerAccessor.getSessionId());
     }
 
     @MessageMapping("/update-user-state")
     public void updateUserState(@Payload String state, Principal principal) {
         UserState userState = UserState.valueOf(state);
-        Notification notification = new Notification();
-        notification.setTime(Instant.now());
-        notification.setType(NotificationType.USER_STATE);
-        notification.addToMetadata("USER", principal.getName());
-        notification.addToMetadata("STATE", userState.name());
-        userSocketService.updateStatus(principal.getName(), userState);
-        sendToSubscribers("/topic/public", "/queue/messages", principal.getName(), notification);
+        long version = userSocketService.updateStatus(principal.getName(), userState);
+        if (version != UserSocketService.UNCHANGED) {
+            presenceBroadcaster.publish(principal.getName(), userState, version);
+            clusterPresenceService.localPresenceChanged(principal.getName());
+        }
     }
 
     @MessageMapping("/chat")
     public void processMessage(@Payload NotificationDTO notificationDTO, Principal principal) {
-        Notification notification = new Notification();
-        notification.setTime(Instant.now());
-        notification.setType(notificationDTO.getType());
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String, String> metadata = new HashMap<>();
-        String loggedUser = principal.getName();
-        try {
-            metadata = mapper.readValue(notificationDTO.getMetadata(), Map.class);
-            notification.addToMetadata("ROOM", metadata.get("ROOM"));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        String sender = principal.getName();
+        if (notificationDTO.getRoom() == null) {
+            log.warn("Notification {} of User {} without a room, dropped", notificationDTO.getType(), sender);
+            return;
         }
+        Notification notification = new Notification(notificationDTO.getType());
+        notification.setRoom(notificationDTO.getRoom());
+        notification.setUser(sender);
         switch (notificationDTO.getType()) {
             case INCOMING_CALL:
-                notification.setContent(principal.getName() + " is calling you!");
-                sendToUser(loggedUser, notification, false);
+                notification.setContent(sender + " is calling you!");
+                sendToOtherMembers(sender, notification);
                 break;
             case ACCEPTED_CALL:
-                notification.setContent(principal.getName() + " accepted your call!");
-                sendToUser(loggedUser, notification, false);
+                notification.setContent(sender + " accepted your call!");
+                sendToOtherMembers(sender, notification);
                 break;
             case CANCELLED_CALL:
-                notification.setContent(principal.getName() + " cancelled the call!");
-                sendToUser(loggedUser, notification, false);
+                notification.setContent(sender + " cancelled the call!");
+                sendToOtherMembers(sender, notification);
                 break;
             case REJECTED_CALL:
-                notification.setContent(principal.getName() + " rejected your call!");
-                sendToUser(loggedUser, notification, false);
+                notification.setContent(sender + " rejected your call!");
+                sendToOtherMembers(sender, notification);
                 break;
             case INCOMING_MESSAGE:
-                notification.setContent("New message from " + loggedUser);
-                String message = metadata.get("MESSAGE");
-                notification.addToMetadata("MESSAGE", message);
-                notification.addToMetadata("USER", loggedUser);
-                sendToUser(loggedUser, notification, true);
+                notification.setContent("New message from " + sender);
+                notification.setMessage(((MessageNotificationDTO) notificationDTO).getMessage());
+                sendToRoom(sender, notification);
                 break;
+            default:
+                log.warn("Unexpected notification {} from User {}, dropped", notificationDTO.getType(), sender);
         }
     }
 
-    private Set<UserDTO> getUsersInSameRoom(Long roomId) {
-        Optional<RoomDTO> optionalRoomDTO = roomService.findOne(roomId);
-        if (optionalRoomDTO.isPresent()) {
-            RoomDTO roomDTO = optionalRoomDTO.get();
-            return roomDTO.getUsers();
+    private void sendToOtherMembers(String sender, Notification notification) {
+        Long roomId = notification.getRoom();
+        if (!roomService.isMember(roomId, sender)) {
+            log.warn("User {} is not a member of Room : {}, call dropped", sender, roomId);
+            return;
         }
-        return new HashSet<>();
+        List<String> recipients = roomService.findMemberLogins(roomId)
+            .stream()
+            .filter(s -> !s.equals(sender))
+            .collect(Collectors.toList());
+        messageFanout.sendToUsers(recipients, USER_DESTINATION, notification);
     }
 
-    private void sendToUser(String sender, Notification notification, boolean saveMessage) {
-        Map<String, String > metadata = notification.getMetadata();
-        String roomIdStr = metadata.get("ROOM");
-        if (roomIdStr != null) {
-            Long roomIdLong = Long.parseLong(roomIdStr);
-            Set<UserDTO> userDTOS = getUsersInSameRoom(roomIdLong);
-            userDTOS.stream()
-                .map(UserDTO::getLogin)
-                .filter(s -> !s.equals(sender))
-                .forEach(user -> {
-                    notification.addToMetadata("USER", new Gson().toJson(
-                        new UserDTO(null, sender)
-                    ));
-                    messagingTemplate.convertAndSendToUser(user, "/queue/messages", notification);
-                    if (saveMessage) {
-                        String message = metadata.get("MESSAGE");
-                        this.conversationService.save(message, roomIdLong, sender, user);
-                    }
-                });
+    private void sendToRoom(String sender, Notification notification) {
+        Long roomId = notification.getRoom();
+        if (!roomService.isMember(roomId, sender)) {
+            log.warn("User {} is not a member of Room : {}, message dropped", sender, roomId);
+            return;
         }
-    }
-
-    private void sendToSubscribers(String subscribersDestination, String destination, String loggedUser, Object payload) {
-        userSocketService.getSubscribedSocketUsersByDestination(subscribersDestination)
-            .stream()
-            .map(UserSocketDTO::getUsername)
-            .filter(name -> !loggedUser.equals(name))
-            .forEach(subscriber -> messagingTemplate.convertAndSendToUser(subscriber, destination, payload));
+        if (!conversationWriteBehindQueue.enqueue(new PendingConversationDTO(notification.getMessage(), roomId, sender))) {
+            Notification rejected = new Notification(NotificationType.MESSAGE_REJECTED);
+            rejected.setRoom(roomId);
+            rejected.setUser(sender);
+            rejected.setMessage(notification.getMessage());
+            rejected.setContent("Your message could not be sent, please try again");
+            messagingTemplate.convertAndSendToUser(sender, USER_DESTINATION, rejected);
+            return;
+        }
+        // the sender gets the message back as well, as a subscriber of the room
+        messagingTemplate.convertAndSend(ROOM_TOPIC_PREFIX + roomId, notification);
     }
 
 }
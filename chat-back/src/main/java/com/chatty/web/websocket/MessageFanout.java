@@ -0,0 +1,104 @@
+package com.chatty.web.websocket;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Sends the same payload to many users while serializing it only once.
+ * <p>
+ * {@link SimpMessagingTemplate#convertAndSendToUser} converts its payload on each call. Here the payload is converted
+ * once with the broker message converter, the encoded message is kept immutable, and each send only copies its headers
+ * with the destination of the recipient, sharing the payload bytes.
+ */
+@Component
+public class MessageFanout {
+
+    public static final String METER_PREFIX = "chat.fanout";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final DistributionSummary recipientsSummary;
+
+    private final DistributionSummary serializationsSavedSummary;
+
+    public MessageFanout(SimpMessagingTemplate messagingTemplate, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.recipientsSummary = DistributionSummary.builder(METER_PREFIX + ".recipients").register(meterRegistry);
+        this.serializationsSavedSummary = DistributionSummary
+            .builder(METER_PREFIX + ".serializations-saved")
+            .description("Serializations saved per message sent to several users, compared to one per recipient")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Serialize a payload with the broker message converter.
+     *
+     * @param payload the payload.
+     * @return the encoded message, without headers, to be sent with {@link #sendToUser(String, String, Message)}.
+     */
+    public Message<?> serialize(Object payload) {
+        // no headers: the message stays immutable, and each send copies them with its own destination
+        return messagingTemplate.getMessageConverter().toMessage(payload, null);
+    }
+
+    /**
+     * Send a payload to users, serializing it once.
+     *
+     * @param usernames the logins of the recipients.
+     * @param destination the user destination, e.g. {@code /queue/messages}.
+     * @param payload the payload.
+     */
+    public void sendToUsers(Collection<String> usernames, String destination, Object payload) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Message<?> message = serialize(payload);
+        usernames.forEach(username -> sendToUser(username, destination, message));
+        recipientsSummary.record(usernames.size());
+        serializationsSavedSummary.record(usernames.size() - 1);
+    }
+
+    /**
+     * Send an already encoded message to a user.
+     *
+     * @param username the login of the recipient.
+     * @param destination the user destination, e.g. {@code /queue/messages}.
+     * @param message the message returned by {@link #serialize(Object)}.
+     */
+    public void sendToUser(String username, String destination, Message<?> message) {
+        messagingTemplate.send(userDestination(username, destination), message);
+    }
+
+    /**
+     * Send an already encoded message to one session of a user only, e.g. in reply to a request of this session.
+     *
+     * @param username the login of the recipient.
+     * @param sessionId the id of the websocket session of the recipient.
+     * @param destination the user destination, e.g. {@code /queue/messages}.
+     * @param message the message returned by {@link #serialize(Object)}.
+     */
+    public void sendToSession(String username, String sessionId, String destination, Message<?> message) {
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.copyHeadersIfAbsent(message.getHeaders());
+        // the session id restricts the resolution of the user destination to this session
+        headerAccessor.setSessionId(sessionId);
+        headerAccessor.setLeaveMutable(true);
+        messagingTemplate.send(
+            userDestination(username, destination),
+            MessageBuilder.createMessage(message.getPayload(), headerAccessor.getMessageHeaders())
+        );
+    }
+
+    private String userDestination(String username, String destination) {
+        return messagingTemplate.getUserDestinationPrefix() + StringUtils.replace(username, "/", "%2F") + destination;
+    }
+}
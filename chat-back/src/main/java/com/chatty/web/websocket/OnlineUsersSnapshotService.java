@@ -0,0 +1,154 @@
+package com.chatty.web.websocket;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.config.DedicatedScheduler;
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.web.websocket.dto.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Sends the list of online users to the sessions that just subscribed, or asked for it.
+ * <p>
+ * The list is a {@link UserSocketService#snapshot() snapshot} of the presence registry, serialized once per version
+ * and sent as is to every requester; the changes that follow are broadcast on {@code /topic/public} as
+ * {@link NotificationType#USER_STATE} notifications tagged with their version. When the cached snapshot is outdated,
+ * requests are answered by the next flush, every {@code application.presence.snapshot-interval-ms}: one serialization
+ * then serves every request made meanwhile, which keeps a reconnect storm linear in the number of users. The flushes
+ * run on a {@link DedicatedScheduler}, for the jobs of the shared scheduling pool not to delay them.
+ * <p>
+ * The snapshot is only sent to the requesting session, as the versions are those of the node of this session.
+ */
+@Service
+public class OnlineUsersSnapshotService {
+
+    public static final String METER_PREFIX = "chat.presence.snapshot";
+
+    private static final String DESTINATION = "/queue/messages";
+
+    private final Logger log = LoggerFactory.getLogger(OnlineUsersSnapshotService.class);
+
+    private final UserSocketService userSocketService;
+
+    private final MessageFanout messageFanout;
+
+    private final Queue<SnapshotRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    private final Counter serializationCounter;
+
+    private final Counter sentCounter;
+
+    private final long snapshotIntervalMs;
+
+    private final DedicatedScheduler scheduler = new DedicatedScheduler("presence-snapshot");
+
+    private volatile CachedSnapshot cachedSnapshot = new CachedSnapshot(-1, null);
+
+    public OnlineUsersSnapshotService(
+        UserSocketService userSocketService,
+        MessageFanout messageFanout,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.userSocketService = userSocketService;
+        this.messageFanout = messageFanout;
+        this.serializationCounter = Counter.builder(METER_PREFIX + ".serializations").register(meterRegistry);
+        this.sentCounter = Counter.builder(METER_PREFIX + ".sent").baseUnit("messages").register(meterRegistry);
+        this.snapshotIntervalMs = applicationProperties.getPresence().getSnapshotIntervalMs();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.start(this::flushPendingSnapshots, snapshotIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * Send the online users to a session, now if the cached snapshot is up to date, on the next flush otherwise.
+     *
+     * @param username the login of the user.
+     * @param sessionId the id of the websocket session of the user.
+     */
+    public void sendSnapshot(String username, String sessionId) {
+        SnapshotRequest request = new SnapshotRequest(username, sessionId);
+        CachedSnapshot snapshot = cachedSnapshot;
+        if (snapshot.version == userSocketService.getVersion()) {
+            send(request, snapshot.message);
+        } else {
+            pendingRequests.add(request);
+        }
+    }
+
+    public void flushPendingSnapshots() {
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+        CachedSnapshot snapshot = currentSnapshot();
+        List<SnapshotRequest> requests = new ArrayList<>();
+        SnapshotRequest request;
+        while ((request = pendingRequests.poll()) != null) {
+            requests.add(request);
+        }
+        log.debug("Sending online users snapshot version {} to {} sessions", snapshot.version, requests.size());
+        requests.forEach(pending -> send(pending, snapshot.message));
+    }
+
+    private CachedSnapshot currentSnapshot() {
+        CachedSnapshot snapshot = cachedSnapshot;
+        if (snapshot.version != userSocketService.getVersion()) {
+            UserSocketService.PresenceSnapshot presenceSnapshot = userSocketService.snapshot();
+            Notification notification = new Notification(NotificationType.ONLINE_USERS);
+            notification.setUsers(presenceSnapshot.getUsers());
+            notification.setVersion(presenceSnapshot.getVersion());
+            Message<?> message = messageFanout.serialize(notification);
+            snapshot = new CachedSnapshot(presenceSnapshot.getVersion(), message);
+            cachedSnapshot = snapshot;
+            serializationCounter.increment();
+        }
+        return snapshot;
+    }
+
+    private void send(SnapshotRequest request, Message<?> message) {
+        messageFanout.sendToSession(request.username, request.sessionId, DESTINATION, message);
+        sentCounter.increment();
+    }
+
+    private static final class SnapshotRequest {
+
+        private final String username;
+
+        private final String sessionId;
+
+        private SnapshotRequest(String username, String sessionId) {
+            this.username = username;
+            this.sessionId = sessionId;
+        }
+    }
+
+    private static final class CachedSnapshot {
+
+        private final long version;
+
+        private final Message<?> message;
+
+        private CachedSnapshot(long version, Message<?> message) {
+            this.version = version;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.chatty.web.websocket;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.config.DedicatedScheduler;
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.dto.Notification;
+import com.chatty.web.websocket.dto.UserStateChangeDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Broadcasts the changes of presence on {@code /topic/public}, batched per window.
+ * <p>
+ * Changes are collected for {@code application.presence.broadcast-interval-ms}, only the last change of each user is
+ * kept, and they are sent as a single {@link NotificationType#USER_STATE} notification listing them in version order.
+ * A flapping connection or a mass login thus costs at most one frame per window to every client. The windows are
+ * flushed by a {@link DedicatedScheduler}, for the jobs of the shared scheduling pool not to delay them.
+ * <p>
+ * The versions are those of the registry of this node. In a cluster, the changes are therefore broadcast on a topic of
+ * the node, {@code /topic/public.{nodeId}}, to which the subscriptions of its clients to {@code /topic/public} are
+ * redirected by the {@link com.chatty.web.websocket.cluster.PresenceTopicInterceptor}.
+ */
+@Service
+public class PresenceBroadcaster {
+
+    public static final String METER_PREFIX = "chat.presence.broadcast";
+
+    public static final String DESTINATION = "/topic/public";
+
+    private final Logger log = LoggerFactory.getLogger(PresenceBroadcaster.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    private final String destination;
+
+    private final ConcurrentMap<String, UserStateChangeDTO> pendingChanges = new ConcurrentHashMap<>();
+
+    private final Counter changesCounter;
+
+    private final Counter collapsedCounter;
+
+    private final Counter framesCounter;
+
+    private final long broadcastIntervalMs;
+
+    private final DedicatedScheduler scheduler = new DedicatedScheduler("presence-broadcast");
+
+    public PresenceBroadcaster(
+        SimpMessageSendingOperations messagingTemplate,
+        MeterRegistry meterRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.destination = destination(applicationProperties.getWebsocket().getCluster());
+        this.changesCounter = Counter.builder(METER_PREFIX + ".changes").register(meterRegistry);
+        this.collapsedCounter = Counter.builder(METER_PREFIX + ".collapsed").register(meterRegistry);
+        this.framesCounter = Counter.builder(METER_PREFIX + ".frames").baseUnit("messages").register(meterRegistry);
+        this.broadcastIntervalMs = applicationProperties.getPresence().getBroadcastIntervalMs();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.start(this::flush, broadcastIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * @param cluster the cluster properties.
+     * @return the destination of the changes of presence of this node.
+     */
+    public static String destination(ApplicationProperties.Websocket.Cluster cluster) {
+        return cluster.isEnabled() ? DESTINATION + "." + cluster.getNodeId() : DESTINATION;
+    }
+
+    /**
+     * Queue a change of presence for the next broadcast.
+     *
+     * @param username the login of the user.
+     * @param state the new state of the user.
+     * @param version the version of the change in the presence registry.
+     */
+    public void publish(String username, UserState state, long version) {
+        changesCounter.increment();
+        UserStateChangeDTO change = new UserStateChangeDTO(username, state, version);
+        boolean[] collapsed = new boolean[1];
+        pendingChanges.compute(
+            username,
+            (login, pending) -> {
+                if (pending == null) {
+                    return change;
+                }
+                collapsed[0] = true;
+                return change.getVersion() > pending.getVersion() ? change : pending;
+            }
+        );
+        if (collapsed[0]) {
+            collapsedCounter.increment();
+        }
+    }
+
+    public void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        List<UserStateChangeDTO> changes = new ArrayList<>(pendingChanges.size());
+        for (String username : pendingChanges.keySet()) {
+            UserStateChangeDTO change = pendingChanges.remove(username);
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        changes.sort(Comparator.comparingLong(UserStateChangeDTO::getVersion));
+        long version = changes.get(changes.size() - 1).getVersion();
+        log.debug("Broadcasting {} user state changes up to version {}", changes.size(), version);
+
+        Notification notification = new Notification(NotificationType.USER_STATE);
+        notification.setChanges(changes);
+        notification.setVersion(version);
+        messagingTemplate.convertAndSend(destination, notification);
+        framesCounter.increment();
+    }
+}
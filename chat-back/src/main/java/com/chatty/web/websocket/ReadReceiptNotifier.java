@@ -0,0 +1,47 @@
+package com.chatty.web.websocket;
+
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.service.ReadReceiptsEvent;
+import com.chatty.service.dto.ReadReceiptDTO;
+import com.chatty.web.websocket.dto.Notification;
+import com.chatty.web.websocket.dto.SeenDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells the senders that their messages were seen, with one {@link NotificationType#SEEN} notification per sender
+ * listing the read receipts of the interval.
+ */
+@Component
+public class ReadReceiptNotifier {
+
+    private final Logger log = LoggerFactory.getLogger(ReadReceiptNotifier.class);
+
+    private final MessageFanout messageFanout;
+
+    public ReadReceiptNotifier(MessageFanout messageFanout) {
+        this.messageFanout = messageFanout;
+    }
+
+    @EventListener
+    public void onReadReceipts(ReadReceiptsEvent event) {
+        Map<String, List<SeenDTO>> receiptsBySender = new HashMap<>();
+        for (ReadReceiptDTO readReceipt : event.getReadReceipts()) {
+            SeenDTO seen = new SeenDTO(readReceipt.getRoomId(), readReceipt.getReader(), readReceipt.getLastReadConversationId());
+            readReceipt.getSenders().forEach(sender -> receiptsBySender.computeIfAbsent(sender, login -> new ArrayList<>()).add(seen));
+        }
+        log.debug("Sending read receipts to {} senders", receiptsBySender.size());
+        receiptsBySender.forEach((sender, receipts) -> {
+            Notification notification = new Notification(NotificationType.SEEN);
+            notification.setReceipts(receipts);
+            messageFanout.sendToUser(sender, ChatService.USER_DESTINATION, messageFanout.serialize(notification));
+        });
+    }
+}
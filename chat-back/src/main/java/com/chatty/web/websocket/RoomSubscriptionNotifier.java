@@ -0,0 +1,53 @@
+package com.chatty.web.websocket;
+
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.service.RoomMembershipChangedEvent;
+import com.chatty.web.websocket.dto.Notification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+
+/**
+ * Tells the members of a room to subscribe to its topic, {@code /topic/room.{id}}, when the room is created or its
+ * members change, and unsubscribes the users removed from it, all of them when the room is deleted.
+ * <p>
+ * Clients subscribe to the topics of their rooms when they connect; this covers the rooms created or joined afterwards.
+ * The notification is sent once the change is committed, so that the subscription it triggers is authorized against
+ * the new members. The subscriptions of the users removed from the room are revoked by the
+ * {@link RoomTopicSubscriptions}, and the users told with {@link NotificationType#ROOM_LEFT}, for their clients to
+ * forget them. Only the sessions of this node are revoked: those of the other nodes of a cluster keep their
+ * subscriptions until they reconnect.
+ */
+@Component
+public class RoomSubscriptionNotifier {
+
+    private final Logger log = LoggerFactory.getLogger(RoomSubscriptionNotifier.class);
+
+    private final MessageFanout messageFanout;
+
+    private final RoomTopicSubscriptions roomTopicSubscriptions;
+
+    public RoomSubscriptionNotifier(MessageFanout messageFanout, RoomTopicSubscriptions roomTopicSubscriptions) {
+        this.messageFanout = messageFanout;
+        this.roomTopicSubscriptions = roomTopicSubscriptions;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomMembershipChanged(RoomMembershipChangedEvent event) {
+        log.debug("Notifying members of Room : {}", event.getRoomId());
+        Notification notification = new Notification(NotificationType.ROOM_JOINED);
+        notification.setRoom(event.getRoomId());
+        messageFanout.sendToUsers(event.getMemberLogins(), ChatService.USER_DESTINATION, notification);
+
+        Set<String> removedLogins = roomTopicSubscriptions.revoke(event.getRoomId(), event.getMemberLogins());
+        if (!removedLogins.isEmpty()) {
+            log.debug("Unsubscribed {} removed members from Room : {}", removedLogins.size(), event.getRoomId());
+            Notification left = new Notification(NotificationType.ROOM_LEFT);
+            left.setRoom(event.getRoomId());
+            messageFanout.sendToUsers(removedLogins, ChatService.USER_DESTINATION, left);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.chatty.web.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the subscriptions of the sessions of this node to the room topics, {@code /topic/room.{id}}, to revoke those
+ * of the users removed from a room.
+ * <p>
+ * The membership of a room is only checked when a session subscribes to its topic: a subscription outlives the removal
+ * of its user from the room. {@link #revoke(Long, Set)} unsubscribes it on behalf of the session, through the broker
+ * channel, so that the broker, simple or relayed, stops delivering the messages of the room to it right away.
+ * <p>
+ * The subscribe events are only published for the subscriptions allowed by {@code WebsocketSecurityConfiguration}.
+ * Membership changes being rare, the subscriptions are kept in a single map and scanned on each change.
+ */
+@Component
+public class RoomTopicSubscriptions {
+
+    private static final Pattern ROOM_TOPIC = Pattern.compile(Pattern.quote(ChatService.ROOM_TOPIC_PREFIX) + "(\\d+)");
+
+    private final Logger log = LoggerFactory.getLogger(RoomTopicSubscriptions.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final ConcurrentMap<SubscriptionKey, RoomSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    public RoomTopicSubscriptions(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || event.getUser() == null) {
+            return;
+        }
+        Matcher matcher = ROOM_TOPIC.matcher(destination);
+        if (matcher.matches()) {
+            subscriptions.put(
+                new SubscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId()),
+                new RoomSubscription(Long.valueOf(matcher.group(1)), event.getUser().getName())
+            );
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscriptions.remove(new SubscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId()));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        subscriptions.keySet().removeIf(key -> key.sessionId.equals(event.getSessionId()));
+    }
+
+    /**
+     * Unsubscribe the sessions of the users who are no longer members of a room from its topic.
+     *
+     * @param roomId the id of the room.
+     * @param memberLogins the logins of the members of the room.
+     * @return the logins of the users whose subscriptions were revoked.
+     */
+    public Set<String> revoke(Long roomId, Set<String> memberLogins) {
+        Set<String> revokedLogins = new HashSet<>();
+        for (Map.Entry<SubscriptionKey, RoomSubscription> entry : subscriptions.entrySet()) {
+            RoomSubscription subscription = entry.getValue();
+            if (
+                !subscription.roomId.equals(roomId) ||
+                memberLogins.contains(subscription.login) ||
+                !subscriptions.remove(entry.getKey(), subscription)
+            ) {
+                continue;
+            }
+            log.debug("User {} left Room : {}, unsubscribing session {}", subscription.login, roomId, entry.getKey().sessionId);
+            unsubscribe(entry.getKey());
+            revokedLogins.add(subscription.login);
+        }
+        return revokedLogins;
+    }
+
+    private void unsubscribe(SubscriptionKey key) {
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        headerAccessor.setSessionId(key.sessionId);
+        headerAccessor.setSubscriptionId(key.subscriptionId);
+        headerAccessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], headerAccessor.getMessageHeaders());
+        messagingTemplate.getMessageChannel().send(message);
+    }
+
+    private static final class SubscriptionKey {
+
+        private final String sessionId;
+
+        private final String subscriptionId;
+
+        private SubscriptionKey(String sessionId, String subscriptionId) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SubscriptionKey)) {
+                return false;
+            }
+            SubscriptionKey that = (SubscriptionKey) o;
+            return Objects.equals(sessionId, that.sessionId) && Objects.equals(subscriptionId, that.subscriptionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionId, subscriptionId);
+        }
+    }
+
+    private static final class RoomSubscription {
+
+        private final Long roomId;
+
+        private final String login;
+
+        private RoomSubscription(Long roomId, String login) {
+            this.roomId = roomId;
+            this.login = login;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.chatty.web.websocket;
+
+import com.chatty.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sheds the load of the sessions that cannot keep up with the frames sent to them.
+ * <p>
+ * Spring buffers the frames of a session while a write to the client is in progress, and disconnects the session once
+ * the write takes longer than {@code application.websocket.transport.send-time-limit-ms} or the buffer exceeds
+ * {@code send-buffer-size-limit}. Before that, a session whose write has been blocked for longer than
+ * {@code slow-consumer-threshold-ms} is slow: the changes of presence, {@code /topic/public}, are not sent to it any
+ * more, leaving its buffer to the room messages and calls. Once it has caught up, it is sent a new snapshot of the
+ * online users in place of the changes it missed.
+ * <p>
+ * The writes are timed by a decorator of the websocket sessions, below the buffer of Spring; the frames are dropped by
+ * an interceptor of the client outbound channel, before they are queued.
+ */
+@Component
+public class SlowConsumerPolicy implements WebSocketHandlerDecoratorFactory, ChannelInterceptor {
+
+    public static final String METER_PREFIX = "chat.websocket.session";
+
+    private final Logger log = LoggerFactory.getLogger(SlowConsumerPolicy.class);
+
+    private final ObjectProvider<OnlineUsersSnapshotService> onlineUsersSnapshotService;
+
+    private final long slowConsumerThresholdNanos;
+
+    private final ConcurrentMap<String, SessionStats> sessions = new ConcurrentHashMap<>();
+
+    private final Timer sendTimer;
+
+    private final Counter droppedCounter;
+
+    private final Counter evictedCounter;
+
+    private final DistributionSummary sessionDroppedSummary;
+
+    private final DistributionSummary sessionSentBytesSummary;
+
+    private final Timer sessionMaxSendTimer;
+
+    public SlowConsumerPolicy(
+        ObjectProvider<OnlineUsersSnapshotService> onlineUsersSnapshotService,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        // the snapshot service is resolved lazily: it sends through the broker, which is configured with this policy
+        this.onlineUsersSnapshotService = onlineUsersSnapshotService;
+        this.slowConsumerThresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(applicationProperties.getWebsocket().getTransport().getSlowConsumerThresholdMs());
+        this.sendTimer = Timer.builder(METER_PREFIX + ".send").description("Writes of frames to the clients").register(meterRegistry);
+        this.droppedCounter =
+            Counter.builder(METER_PREFIX + ".dropped").description("Frames not sent to slow sessions").baseUnit("messages").register(meterRegistry);
+        this.evictedCounter =
+            Counter.builder(METER_PREFIX + ".evicted").description("Sessions disconnected for exceeding their send limits").register(meterRegistry);
+        this.sessionDroppedSummary =
+            DistributionSummary.builder(METER_PREFIX + ".dropped-per-session").baseUnit("messages").register(meterRegistry);
+        this.sessionSentBytesSummary = DistributionSummary.builder(METER_PREFIX + ".sent-per-session").baseUnit("bytes").register(meterRegistry);
+        this.sessionMaxSendTimer = Timer.builder(METER_PREFIX + ".max-send-per-session").register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".slow", this, SlowConsumerPolicy::countSlowSessions).register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(register(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    unregister(session.getId());
+                }
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        SessionStats stats = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+        if (stats == null) {
+            return message;
+        }
+        if (isSlow(stats, System.nanoTime())) {
+            String destination = SimpMessageHeaderAccessor.getDestination(headers);
+            if (destination != null && destination.startsWith(PresenceBroadcaster.DESTINATION)) {
+                stats.dropped.incrementAndGet();
+                stats.resyncNeeded.set(true);
+                droppedCounter.increment();
+                return null;
+            }
+        } else if (stats.resyncNeeded.compareAndSet(true, false)) {
+            log.debug("Session {} of User {} caught up, resending the online users", stats.sessionId, stats.username);
+            onlineUsersSnapshotService.getObject().sendSnapshot(stats.username, stats.sessionId);
+        }
+        return message;
+    }
+
+    /**
+     * The user of a session is known once its CONNECT frame is authenticated, after the handshake.
+     */
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        SessionStats stats = sessions.get(SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders()));
+        if (stats != null && event.getUser() != null) {
+            stats.username = event.getUser().getName();
+        }
+    }
+
+    WebSocketSession register(WebSocketSession session) {
+        Principal principal = session.getPrincipal();
+        SessionStats stats = new SessionStats(session.getId(), principal != null ? principal.getName() : null);
+        sessions.put(session.getId(), stats);
+        return new TimedSessionDecorator(session, stats);
+    }
+
+    void unregister(String sessionId) {
+        SessionStats stats = sessions.remove(sessionId);
+        if (stats != null) {
+            sessionDroppedSummary.record(stats.dropped.get());
+            sessionSentBytesSummary.record(stats.sentBytes.get());
+            sessionMaxSendTimer.record(stats.maxSendNanos.get(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean isSlow(SessionStats stats, long now) {
+        long sendStarted = stats.sendStarted;
+        return sendStarted != 0 && now - sendStarted > slowConsumerThresholdNanos;
+    }
+
+    private double countSlowSessions() {
+        long now = System.nanoTime();
+        return sessions.values().stream().filter(stats -> isSlow(stats, now)).count();
+    }
+
+    private static final class SessionStats {
+
+        private final String sessionId;
+
+        private volatile String username;
+
+        /**
+         * Start of the write in progress, 0 if none.
+         */
+        private volatile long sendStarted;
+
+        private final AtomicLong maxSendNanos = new AtomicLong();
+
+        private final AtomicLong sentBytes = new AtomicLong();
+
+        private final AtomicLong dropped = new AtomicLong();
+
+        private final AtomicBoolean resyncNeeded = new AtomicBoolean();
+
+        private SessionStats(String sessionId, String username) {
+            this.sessionId = sessionId;
+            this.username = username;
+        }
+    }
+
+    /**
+     * Times the writes to the client. Spring writes the frames of a session one at a time, from the buffer of its own
+     * decorator which wraps this one.
+     */
+    private final class TimedSessionDecorator extends WebSocketSessionDecorator {
+
+        private final SessionStats stats;
+
+        private TimedSessionDecorator(WebSocketSession session, SessionStats stats) {
+            super(session);
+            this.stats = stats;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            long started = System.nanoTime();
+            stats.sendStarted = started;
+            try {
+                super.sendMessage(message);
+            } finally {
+                stats.sendStarted = 0;
+                long duration = System.nanoTime() - started;
+                sendTimer.record(duration, TimeUnit.NANOSECONDS);
+                stats.maxSendNanos.accumulateAndGet(duration, Math::max);
+                stats.sentBytes.addAndGet(message.getPayloadLength());
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            if (CloseStatus.SESSION_NOT_RELIABLE.equals(status) && sessions.containsKey(getId())) {
+                log.warn("Session {} of User {} exceeded its send limits, disconnecting it", getId(), stats.username);
+                evictedCounter.increment();
+            }
+            super.close(status);
+        }
+    }
+}
@@ -1,62 +1,320 @@
 package com.chatty.web.websocket;
 
-import com.chatty.domain.Notification;
 import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.dto.UserPresenceDTO;
 import com.chatty.web.websocket.dto.UserSocketDTO;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.user.SimpSession;
-import org.springframework.messaging.simp.user.SimpUser;
-import org.springframework.messaging.simp.user.SimpUserRegistry;
+import com.chatty.web.websocket.dto.UserStateChangeDTO;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Registry of the presence of the users connected to the websocket, keyed by login.
+ * <p>
+ * A user may be connected from several sessions (tabs, devices): they are online from the first connected session to
+ * the last disconnected one. Sessions and states are updated atomically per login, so the registry is safe to use
+ * from the STOMP inbound threads.
+ * <p>
+ * Every change of presence (a user coming online, going offline or changing state) gets the next version number, so
+ * that clients can apply the changes broadcast after a {@link #snapshot() snapshot} on top of it.
+ * <p>
+ * With several nodes, the registry also holds the users connected to the other nodes, as reported by them: a user is
+ * online while they have a session on any node, and the most recently set state wins. Versions stay local to the node.
+ */
 @Service
 public class UserSocketService {
 
-    private final Set<UserSocketDTO> userSocketDTOS = new HashSet<>();
+    /**
+     * Returned by the update methods when the presence did not change.
+     */
+    public static final long UNCHANGED = 0L;
 
-    @Autowired
-    SimpUserRegistry userRegistry;
+    private final ConcurrentMap<String, Presence> presences = new ConcurrentHashMap<>();
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Changes share the read lock, as they are already atomic per login; a snapshot takes the write lock, so that it
+     * contains exactly the changes up to its version.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * Register a new session of a user.
+     *
+     * @param username the login of the user.
+     * @param sessionId the id of the websocket session.
+     * @return the version of the change if it is the first session of the user, i.e. they just came online,
+     * {@link #UNCHANGED} otherwise.
+     */
+    public long connect(String username, String sessionId) {
+        long[] changeVersion = { UNCHANGED };
+        snapshotLock.readLock().lock();
+        try {
+            presences.compute(username, (login, presence) -> {
+                Presence updated = presence;
+                if (updated == null) {
+                    updated = new Presence(UserState.ONLINE, System.currentTimeMillis());
+                    changeVersion[0] = version.incrementAndGet();
+                }
+                updated.sessionIds.add(sessionId);
+                return updated;
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        return changeVersion[0];
+    }
+
+    /**
+     * Unregister a session of a user, and forget the user when it was their last session in the cluster.
+     *
+     * @param username the login of the user.
+     * @param sessionId the id of the websocket session.
+     * @return the version of the change if it was the last session of the user, i.e. they just went offline,
+     * {@link #UNCHANGED} otherwise.
+     */
+    public long disconnect(String username, String sessionId) {
+        long[] changeVersion = { UNCHANGED };
+        snapshotLock.readLock().lock();
+        try {
+            presences.computeIfPresent(username, (login, presence) -> {
+                if (!presence.sessionIds.remove(sessionId) || !presence.isEmpty()) {
+                    return presence;
+                }
+                changeVersion[0] = version.incrementAndGet();
+                return null;
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        return changeVersion[0];
+    }
 
     public UserSocketDTO findUserSocketByUsername(String username) {
-        return
-            userSocketDTOS.stream()
-                .filter(userState -> userState.getUsername().equals(username))
-                .findAny()
-                .orElse(null);
+        Presence presence = presences.get(username);
+        return presence != null ? new UserSocketDTO(username, presence.state) : null;
     }
 
-    public void updateStatus(String username, UserState userState) {
-        UserSocketDTO userSocketDTO = findUserSocketByUsername(username);
-        if (userSocketDTO != null) {
-            userSocketDTO.setState(userState);
-        } else {
-            userSocketDTOS.add(
-                new UserSocketDTO(username, userState)
-            );
+    /**
+     * @param username the login of the user.
+     * @return the state of the user, {@link UserState#OFFLINE} if they have no session.
+     */
+    public UserState getState(String username) {
+        Presence presence = presences.get(username);
+        return presence != null ? presence.state : UserState.OFFLINE;
+    }
+
+    /**
+     * Update the state of a connected user; ignored once their last session is closed, so that a late update cannot
+     * bring a disconnected user back.
+     *
+     * @param username the login of the user.
+     * @param userState the new state.
+     * @return the version of the change, {@link #UNCHANGED} if the user is not connected or already in this state.
+     */
+    public long updateStatus(String username, UserState userState) {
+        long[] changeVersion = { UNCHANGED };
+        snapshotLock.readLock().lock();
+        try {
+            presences.computeIfPresent(username, (login, presence) -> {
+                presence.stateTimestamp = System.currentTimeMillis();
+                if (presence.state != userState) {
+                    presence.state = userState;
+                    changeVersion[0] = version.incrementAndGet();
+                }
+                return presence;
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
         }
+        return changeVersion[0];
     }
 
-    public void removeByUsername(String username) {
-        userSocketDTOS.removeIf(userSocketDTO -> userSocketDTO.getUsername().equals(username));
+    /**
+     * @param username the login of the user.
+     * @return the presence of the user on this node, with a {@code null} state if they have no session on it.
+     */
+    public UserPresenceDTO getLocalPresence(String username) {
+        Presence presence = presences.get(username);
+        if (presence == null || presence.sessionIds.isEmpty()) {
+            return new UserPresenceDTO(username, null, 0L);
+        }
+        return new UserPresenceDTO(username, presence.state, presence.stateTimestamp);
     }
 
-    public List<UserSocketDTO> getSubscribedSocketUsersByDestination(String destination) {
-        return userRegistry.findSubscriptions(subscription -> subscription.getDestination().equals(destination))
-            .stream()
-            .map(simpSubscription -> {
-                SimpSession simpSession = simpSubscription.getSession();
-                SimpUser simpUser = simpSession.getUser();
-                UserSocketDTO userSocketDTO = findUserSocketByUsername(simpUser.getName());
-                if (userSocketDTO != null) {
-                    return userSocketDTO;
+    /**
+     * @return the presence of the users having a session on this node.
+     */
+    public List<UserPresenceDTO> getLocalPresences() {
+        List<UserPresenceDTO> localPresences = new ArrayList<>();
+        for (Map.Entry<String, Presence> entry : presences.entrySet()) {
+            Presence presence = entry.getValue();
+            if (!presence.sessionIds.isEmpty()) {
+                localPresences.add(new UserPresenceDTO(entry.getKey(), presence.state, presence.stateTimestamp));
+            }
+        }
+        return localPresences;
+    }
+
+    /**
+     * Apply the presence of a user on another node.
+     *
+     * @param nodeId the id of the node.
+     * @param remotePresence the presence of the user on that node.
+     * @return the change of presence, {@code null} if the presence of the user did not change.
+     */
+    public UserStateChangeDTO updateRemote(String nodeId, UserPresenceDTO remotePresence) {
+        UserState remoteState = remotePresence.getState();
+        UserStateChangeDTO[] change = { null };
+        snapshotLock.readLock().lock();
+        try {
+            presences.compute(remotePresence.getUsername(), (login, presence) -> {
+                if (remoteState == null) {
+                    if (presence == null || !presence.nodeIds.remove(nodeId) || !presence.isEmpty()) {
+                        return presence;
+                    }
+                    change[0] = new UserStateChangeDTO(login, UserState.OFFLINE, version.incrementAndGet());
+                    return null;
+                }
+                Presence updated = presence;
+                if (updated == null) {
+                    updated = new Presence(remoteState, remotePresence.getStateTimestamp());
+                    change[0] = new UserStateChangeDTO(login, remoteState, version.incrementAndGet());
+                } else if (remotePresence.getStateTimestamp() > updated.stateTimestamp) {
+                    updated.stateTimestamp = remotePresence.getStateTimestamp();
+                    if (updated.state != remoteState) {
+                        updated.state = remoteState;
+                        change[0] = new UserStateChangeDTO(login, remoteState, version.incrementAndGet());
+                    }
                 }
-                return new UserSocketDTO(simpUser.getName(), UserState.ONLINE);
-            })
-            .collect(Collectors.toList());
+                updated.nodeIds.add(nodeId);
+                return updated;
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        return change[0];
+    }
+
+    /**
+     * Replace the users reported by another node.
+     *
+     * @param nodeId the id of the node.
+     * @param remotePresences the presence of all the users having a session on that node.
+     * @return the changes of presence.
+     */
+    public List<UserStateChangeDTO> syncRemote(String nodeId, Collection<UserPresenceDTO> remotePresences) {
+        Set<String> reported = new HashSet<>();
+        List<UserStateChangeDTO> changes = new ArrayList<>();
+        for (UserPresenceDTO remotePresence : remotePresences) {
+            reported.add(remotePresence.getUsername());
+            addIfChanged(changes, updateRemote(nodeId, remotePresence));
+        }
+        for (Map.Entry<String, Presence> entry : presences.entrySet()) {
+            if (!reported.contains(entry.getKey()) && entry.getValue().nodeIds.contains(nodeId)) {
+                addIfChanged(changes, updateRemote(nodeId, new UserPresenceDTO(entry.getKey(), null, 0L)));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Forget the users of a node that left the cluster.
+     *
+     * @param nodeId the id of the node.
+     * @return the changes of presence.
+     */
+    public List<UserStateChangeDTO> removeRemote(String nodeId) {
+        return syncRemote(nodeId, new ArrayList<>());
+    }
+
+    private static void addIfChanged(List<UserStateChangeDTO> changes, UserStateChangeDTO change) {
+        if (change != null) {
+            changes.add(change);
+        }
+    }
+
+    /**
+     * @return the version of the last change of presence.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the connected users and their state, as of the returned version.
+     */
+    public PresenceSnapshot snapshot() {
+        snapshotLock.writeLock().lock();
+        try {
+            List<UserSocketDTO> userSocketDTOS = new ArrayList<>(presences.size());
+            for (Map.Entry<String, Presence> entry : presences.entrySet()) {
+                userSocketDTOS.add(new UserSocketDTO(entry.getKey(), entry.getValue().state));
+            }
+            return new PresenceSnapshot(version.get(), userSocketDTOS);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The connected users at a given version.
+     */
+    public static final class PresenceSnapshot {
+
+        private final long version;
+
+        private final List<UserSocketDTO> users;
+
+        public PresenceSnapshot(long version, List<UserSocketDTO> users) {
+            this.version = version;
+            this.users = users;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<UserSocketDTO> getUsers() {
+            return users;
+        }
+    }
+
+    /**
+     * The state, the open sessions and the other nodes of a user, only mutated inside the atomic compute operations of
+     * the map.
+     */
+    private static final class Presence {
+
+        private final Set<String> sessionIds = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The other nodes on which the user has a session.
+         */
+        private final Set<String> nodeIds = ConcurrentHashMap.newKeySet();
+
+        private volatile UserState state;
+
+        private volatile long stateTimestamp;
+
+        private Presence(UserState state, long stateTimestamp) {
+            this.state = state;
+            this.stateTimestamp = stateTimestamp;
+        }
+
+        private boolean isEmpty() {
+            return sessionIds.isEmpty() && nodeIds.isEmpty();
+        }
     }
 }
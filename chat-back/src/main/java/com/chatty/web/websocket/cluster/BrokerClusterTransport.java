@@ -0,0 +1,164 @@
+package com.chatty.web.websocket.cluster;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.web.websocket.dto.ClusterPresenceDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link ClusterTransport} over the STOMP broker of the relay, on the {@value #DESTINATION} topic.
+ * <p>
+ * The transport holds its own connection to the broker, with the system credentials of the relay, and reconnects
+ * every {@code application.websocket.cluster.heartbeat-interval-ms} while the broker is unavailable; messages sent
+ * meanwhile are dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "application.websocket.cluster.transport", havingValue = "broker")
+public class BrokerClusterTransport implements ClusterTransport {
+
+    public static final String DESTINATION = "/topic/cluster.presence";
+
+    private final Logger log = LoggerFactory.getLogger(BrokerClusterTransport.class);
+
+    private final ApplicationProperties.Websocket.Broker.Relay relay;
+
+    private final long reconnectDelayMs;
+
+    private final ReactorNettyTcpStompClient stompClient;
+
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    private final List<Consumer<ClusterPresenceDTO>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile StompSession session;
+
+    private volatile boolean running;
+
+    public BrokerClusterTransport(ApplicationProperties applicationProperties, ObjectMapper objectMapper) {
+        this.relay = applicationProperties.getWebsocket().getBroker().getRelay();
+        this.reconnectDelayMs = applicationProperties.getWebsocket().getCluster().getHeartbeatIntervalMs();
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadNamePrefix("cluster-transport-");
+        taskScheduler.initialize();
+        MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(objectMapper);
+        this.stompClient = new ReactorNettyTcpStompClient(relay.getHost(), relay.getPort());
+        stompClient.setMessageConverter(messageConverter);
+        stompClient.setTaskScheduler(taskScheduler);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        connect();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+        stompClient.shutdown();
+        taskScheduler.shutdown();
+    }
+
+    @Override
+    public void send(ClusterPresenceDTO message) {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            log.debug("Broker unavailable, dropping {}", message);
+            return;
+        }
+        current.send(DESTINATION, message);
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterPresenceDTO> listener) {
+        listeners.add(listener);
+    }
+
+    private void connect() {
+        if (!running) {
+            return;
+        }
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.setLogin(relay.getSystemLogin());
+        connectHeaders.setPasscode(relay.getSystemPasscode());
+        if (StringUtils.hasText(relay.getVirtualHost())) {
+            connectHeaders.setHost(relay.getVirtualHost());
+        }
+        stompClient
+            .connect(connectHeaders, new SessionHandler())
+            .addCallback(
+                connected -> log.info("Connected to the broker at {}:{}", relay.getHost(), relay.getPort()),
+                // the session handler is told of the failure as well, and reconnects
+                error -> log.warn("Could not connect to the broker at {}:{}: {}", relay.getHost(), relay.getPort(), error.getMessage())
+            );
+    }
+
+    private void scheduleReconnect() {
+        if (running) {
+            taskScheduler.schedule(this::connect, Instant.now().plusMillis(reconnectDelayMs));
+        }
+    }
+
+    private class SessionHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public void afterConnected(StompSession connectedSession, StompHeaders connectedHeaders) {
+            connectedSession.subscribe(DESTINATION, this);
+            session = connectedSession;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return ClusterPresenceDTO.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            ClusterPresenceDTO message = (ClusterPresenceDTO) payload;
+            listeners.forEach(listener -> listener.accept(message));
+        }
+
+        @Override
+        public void handleException(
+            StompSession failedSession,
+            StompCommand command,
+            StompHeaders headers,
+            byte[] payload,
+            Throwable exception
+        ) {
+            log.warn("Could not handle a cluster presence message: {}", exception.getMessage());
+        }
+
+        @Override
+        public void handleTransportError(StompSession failedSession, Throwable exception) {
+            if (!failedSession.isConnected()) {
+                log.debug("No connection to the broker: {}", exception.getMessage());
+                session = null;
+                scheduleReconnect();
+            }
+        }
+    }
+}
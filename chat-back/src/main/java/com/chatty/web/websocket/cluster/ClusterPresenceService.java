@@ -0,0 +1,142 @@
+package com.chatty.web.websocket.cluster;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.config.DedicatedScheduler;
+import com.chatty.web.websocket.PresenceBroadcaster;
+import com.chatty.web.websocket.UserSocketService;
+import com.chatty.web.websocket.dto.ClusterPresenceDTO;
+import com.chatty.web.websocket.dto.UserPresenceDTO;
+import com.chatty.web.websocket.dto.UserStateChangeDTO;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shares the presence of the users between the nodes of the cluster, over the {@link ClusterTransport} selected by
+ * {@code application.websocket.cluster.transport}.
+ * <p>
+ * Each node sends the changes of presence of its own users as they happen, and all its users every
+ * {@code application.websocket.cluster.heartbeat-interval-ms}, which repairs lost messages. The users of the other
+ * nodes are merged into the {@link UserSocketService} of this node, and the resulting changes are broadcast to the
+ * clients of this node. A node not heard from for {@code application.websocket.cluster.node-timeout-ms} is considered
+ * gone, with its users. The heartbeats are sent by a {@link DedicatedScheduler}, for the jobs of the shared scheduling
+ * pool not to delay them past the timeout of the other nodes.
+ * <p>
+ * Without a transport, the node is alone and this service does nothing.
+ */
+@Service
+public class ClusterPresenceService {
+
+    private final Logger log = LoggerFactory.getLogger(ClusterPresenceService.class);
+
+    private final UserSocketService userSocketService;
+
+    private final PresenceBroadcaster presenceBroadcaster;
+
+    private final ClusterTransport clusterTransport;
+
+    private final String nodeId;
+
+    private final long nodeTimeoutMs;
+
+    private final long heartbeatIntervalMs;
+
+    private final DedicatedScheduler scheduler = new DedicatedScheduler("cluster-heartbeat");
+
+    /**
+     * Last time each other node was heard from.
+     */
+    private final ConcurrentMap<String, Long> lastSeenNodes = new ConcurrentHashMap<>();
+
+    public ClusterPresenceService(
+        UserSocketService userSocketService,
+        PresenceBroadcaster presenceBroadcaster,
+        Optional<ClusterTransport> clusterTransport,
+        ApplicationProperties applicationProperties
+    ) {
+        this.userSocketService = userSocketService;
+        this.presenceBroadcaster = presenceBroadcaster;
+        this.clusterTransport = clusterTransport.orElse(null);
+        this.nodeId = applicationProperties.getWebsocket().getCluster().getNodeId();
+        this.nodeTimeoutMs = applicationProperties.getWebsocket().getCluster().getNodeTimeoutMs();
+        this.heartbeatIntervalMs = applicationProperties.getWebsocket().getCluster().getHeartbeatIntervalMs();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (clusterTransport != null) {
+            log.info("Sharing presence with the other nodes as node {}", nodeId);
+            clusterTransport.subscribe(this::onMessage);
+            scheduler.start(this::heartbeat, heartbeatIntervalMs);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * Tell the other nodes that the presence of a user changed on this node.
+     *
+     * @param username the login of the user.
+     */
+    public void localPresenceChanged(String username) {
+        if (clusterTransport != null) {
+            UserPresenceDTO localPresence = userSocketService.getLocalPresence(username);
+            clusterTransport.send(new ClusterPresenceDTO(nodeId, false, Collections.singletonList(localPresence)));
+        }
+    }
+
+    public void heartbeat() {
+        if (clusterTransport == null) {
+            return;
+        }
+        sendLocalPresences();
+        long expiredBefore = System.currentTimeMillis() - nodeTimeoutMs;
+        for (Map.Entry<String, Long> node : lastSeenNodes.entrySet()) {
+            if (node.getValue() < expiredBefore && lastSeenNodes.remove(node.getKey(), node.getValue())) {
+                log.info("Node {} left the cluster", node.getKey());
+                broadcast(userSocketService.removeRemote(node.getKey()));
+            }
+        }
+    }
+
+    void onMessage(ClusterPresenceDTO message) {
+        String remoteNodeId = message.getNodeId();
+        if (nodeId.equals(remoteNodeId)) {
+            return;
+        }
+        if (lastSeenNodes.put(remoteNodeId, System.currentTimeMillis()) == null) {
+            log.info("Node {} joined the cluster", remoteNodeId);
+            // let the new node know about our users without waiting for the next heartbeat
+            sendLocalPresences();
+        }
+        if (message.isFull()) {
+            broadcast(userSocketService.syncRemote(remoteNodeId, message.getUsers()));
+        } else {
+            for (UserPresenceDTO remotePresence : message.getUsers()) {
+                UserStateChangeDTO change = userSocketService.updateRemote(remoteNodeId, remotePresence);
+                if (change != null) {
+                    broadcast(Collections.singletonList(change));
+                }
+            }
+        }
+    }
+
+    private void sendLocalPresences() {
+        clusterTransport.send(new ClusterPresenceDTO(nodeId, true, userSocketService.getLocalPresences()));
+    }
+
+    private void broadcast(List<UserStateChangeDTO> changes) {
+        changes.forEach(change -> presenceBroadcaster.publish(change.getUsername(), change.getState(), change.getVersion()));
+    }
+}
@@ -0,0 +1,26 @@
+package com.chatty.web.websocket.cluster;
+
+import com.chatty.web.websocket.dto.ClusterPresenceDTO;
+import java.util.function.Consumer;
+
+/**
+ * Carries the presence of the users between the nodes of the cluster.
+ * <p>
+ * Delivery is best effort: a lost message is repaired by the next heartbeat of its node. A transport may deliver the
+ * messages of a node back to it, they are ignored by the receiver.
+ */
+public interface ClusterTransport {
+    /**
+     * Send a message to all the nodes.
+     *
+     * @param message the presence of users of this node.
+     */
+    void send(ClusterPresenceDTO message);
+
+    /**
+     * Register a listener of the messages of all the nodes.
+     *
+     * @param listener the listener, called from the threads of the transport.
+     */
+    void subscribe(Consumer<ClusterPresenceDTO> listener);
+}
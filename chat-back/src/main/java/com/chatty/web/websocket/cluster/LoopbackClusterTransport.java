@@ -0,0 +1,31 @@
+package com.chatty.web.websocket.cluster;
+
+import com.chatty.web.websocket.dto.ClusterPresenceDTO;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process {@link ClusterTransport}, delivering every message synchronously to all its listeners.
+ * <p>
+ * Sharing an instance between several {@link ClusterPresenceService} runs a cluster of nodes in the same JVM, for
+ * tests.
+ */
+@Component
+@ConditionalOnProperty(name = "application.websocket.cluster.transport", havingValue = "loopback")
+public class LoopbackClusterTransport implements ClusterTransport {
+
+    private final List<Consumer<ClusterPresenceDTO>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(ClusterPresenceDTO message) {
+        listeners.forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterPresenceDTO> listener) {
+        listeners.add(listener);
+    }
+}
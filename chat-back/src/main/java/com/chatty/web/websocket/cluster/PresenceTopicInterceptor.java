@@ -0,0 +1,41 @@
+package com.chatty.web.websocket.cluster;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.web.websocket.PresenceBroadcaster;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Redirects the subscriptions to {@code /topic/public} to the presence topic of this node, so that clients only get
+ * the changes of presence numbered by the node they are connected to.
+ * <p>
+ * Clients match the messages to their subscriptions by subscription id, so the redirection is transparent to them.
+ */
+public class PresenceTopicInterceptor implements ChannelInterceptor {
+
+    private final String nodeDestination;
+
+    public PresenceTopicInterceptor(ApplicationProperties applicationProperties) {
+        this.nodeDestination = PresenceBroadcaster.destination(applicationProperties.getWebsocket().getCluster());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (
+            SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.SUBSCRIBE ||
+            !PresenceBroadcaster.DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(headers))
+        ) {
+            return message;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        accessor.setDestination(nodeDestination);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+}
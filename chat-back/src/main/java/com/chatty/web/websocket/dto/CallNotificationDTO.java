@@ -0,0 +1,20 @@
+package com.chatty.web.websocket.dto;
+
+import com.chatty.domain.enumeration.NotificationType;
+
+/**
+ * A step of a call to the other members of a room: {@link NotificationType#INCOMING_CALL},
+ * {@link NotificationType#ACCEPTED_CALL}, {@link NotificationType#CANCELLED_CALL} or
+ * {@link NotificationType#REJECTED_CALL}.
+ */
+public class CallNotificationDTO extends NotificationDTO {
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CallNotificationDTO{" +
+            "type='" + getType() + "'" +
+            ", room=" + getRoom() +
+            "}";
+    }
+}
@@ -0,0 +1,63 @@
+package com.chatty.web.websocket.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The presence of the users of a node, sent to the other nodes of the cluster.
+ */
+public class ClusterPresenceDTO {
+
+    private String nodeId;
+
+    /**
+     * Whether {@link #users} lists all the users of the node, or only the users whose presence just changed.
+     */
+    private boolean full;
+
+    private List<UserPresenceDTO> users = new ArrayList<>();
+
+    public ClusterPresenceDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ClusterPresenceDTO(String nodeId, boolean full, List<UserPresenceDTO> users) {
+        this.nodeId = nodeId;
+        this.full = full;
+        this.users = users;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<UserPresenceDTO> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserPresenceDTO> users) {
+        this.users = users;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ClusterPresenceDTO{" +
+            "nodeId='" + getNodeId() + "'" +
+            ", full=" + isFull() +
+            ", users=" + getUsers().size() +
+            "}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.chatty.web.websocket.dto;
+
+import com.chatty.domain.enumeration.NotificationType;
+
+/**
+ * A message sent to a room, {@link NotificationType#INCOMING_MESSAGE}.
+ */
+public class MessageNotificationDTO extends NotificationDTO {
+
+    private String message;
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MessageNotificationDTO{" +
+            "room=" + getRoom() +
+            "}";
+    }
+}
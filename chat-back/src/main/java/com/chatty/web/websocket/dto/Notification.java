@@ -0,0 +1,135 @@
+package com.chatty.web.websocket.dto;
+
+import com.chatty.domain.enumeration.NotificationType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A notification sent to the clients.
+ * <p>
+ * Each {@link NotificationType} only sets the fields it needs, the others are left out of the JSON:
+ * <ul>
+ *     <li>{@code room}: the calls, {@link NotificationType#INCOMING_MESSAGE}, {@link NotificationType#ROOM_JOINED},
+ *     {@link NotificationType#ROOM_LEFT} and {@link NotificationType#MESSAGE_REJECTED};</li>
+ *     <li>{@code user} and {@code message}: the login of the sender of a call or a message, and the message, also sent
+ *     back to its sender with {@link NotificationType#MESSAGE_REJECTED};</li>
+ *     <li>{@code users} and {@code version}: {@link NotificationType#ONLINE_USERS};</li>
+ *     <li>{@code changes} and {@code version}: {@link NotificationType#USER_STATE};</li>
+ *     <li>{@code receipts}: {@link NotificationType#SEEN}.</li>
+ * </ul>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Notification {
+
+    private NotificationType type;
+    private String content;
+    private Instant time;
+    private Long room;
+    private String user;
+    private String message;
+    private List<UserSocketDTO> users;
+    private List<UserStateChangeDTO> changes;
+    private Long version;
+    private List<SeenDTO> receipts;
+
+    public Notification() {
+    }
+
+    public Notification(NotificationType type) {
+        this.type = type;
+        this.time = Instant.now();
+    }
+
+    public NotificationType getType() {
+        return type;
+    }
+
+    public void setType(NotificationType type) {
+        this.type = type;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public void setTime(Instant time) {
+        this.time = time;
+    }
+
+    public Long getRoom() {
+        return room;
+    }
+
+    public void setRoom(Long room) {
+        this.room = room;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<UserSocketDTO> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserSocketDTO> users) {
+        this.users = users;
+    }
+
+    public List<UserStateChangeDTO> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<UserStateChangeDTO> changes) {
+        this.changes = changes;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public List<SeenDTO> getReceipts() {
+        return receipts;
+    }
+
+    public void setReceipts(List<SeenDTO> receipts) {
+        this.receipts = receipts;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "Notification{" +
+            "type='" + getType() + "'" +
+            ", room=" + getRoom() +
+            ", user='" + getUser() + "'" +
+            ", version=" + getVersion() +
+            "}";
+    }
+}
@@ -1,20 +1,26 @@
 package com.chatty.web.websocket.dto;
 
 import com.chatty.domain.enumeration.NotificationType;
-
-public class NotificationDTO {
-
-    private String content;
-    private NotificationType type;
-    private String metadata;
-
-    public String getContent() {
-        return content;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * A notification sent by a client to {@code /chat}, decoded in one pass into the class of its {@code type}.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type", visible = true)
+@JsonSubTypes(
+    {
+        @JsonSubTypes.Type(value = MessageNotificationDTO.class, name = "INCOMING_MESSAGE"),
+        @JsonSubTypes.Type(
+            value = CallNotificationDTO.class,
+            names = { "INCOMING_CALL", "ACCEPTED_CALL", "CANCELLED_CALL", "REJECTED_CALL" }
+        ),
     }
+)
+public abstract class NotificationDTO {
 
-    public void setContent(String content) {
-        this.content = content;
-    }
+    private NotificationType type;
+    private Long room;
 
     public NotificationType getType() {
         return type;
@@ -24,11 +30,11 @@ public class NotificationDTO {
         this.type = type;
     }
 
-    public String getMetadata() {
-        return metadata;
+    public Long getRoom() {
+        return room;
     }
 
-    public void setMetadata(String metadata) {
-        this.metadata = metadata;
+    public void setRoom(Long room) {
+        this.room = room;
     }
 }
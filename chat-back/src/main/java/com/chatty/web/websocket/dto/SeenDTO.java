@@ -0,0 +1,40 @@
+package com.chatty.web.websocket.dto;
+
+/**
+ * A read receipt sent to the sender of a message: every message of the room up to {@code conversation} was seen by
+ * {@code user}.
+ */
+public class SeenDTO {
+
+    private final Long room;
+    private final String user;
+    private final Long conversation;
+
+    public SeenDTO(Long room, String user, Long conversation) {
+        this.room = room;
+        this.user = user;
+        this.conversation = conversation;
+    }
+
+    public Long getRoom() {
+        return room;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Long getConversation() {
+        return conversation;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SeenDTO{" +
+            "room=" + getRoom() +
+            ", user='" + getUser() + "'" +
+            ", conversation=" + getConversation() +
+            "}";
+    }
+}
@@ -0,0 +1,65 @@
+package com.chatty.web.websocket.dto;
+
+import com.chatty.domain.enumeration.UserState;
+
+/**
+ * The presence of a user on a node of the cluster, exchanged between the nodes.
+ */
+public class UserPresenceDTO {
+
+    private String username;
+
+    /**
+     * The state of the user, {@code null} once they have no session left on the node.
+     */
+    private UserState state;
+
+    /**
+     * When the state was last set, so that the most recent state wins across nodes.
+     */
+    private long stateTimestamp;
+
+    public UserPresenceDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public UserPresenceDTO(String username, UserState state, long stateTimestamp) {
+        this.username = username;
+        this.state = state;
+        this.stateTimestamp = stateTimestamp;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public UserState getState() {
+        return state;
+    }
+
+    public void setState(UserState state) {
+        this.state = state;
+    }
+
+    public long getStateTimestamp() {
+        return stateTimestamp;
+    }
+
+    public void setStateTimestamp(long stateTimestamp) {
+        this.stateTimestamp = stateTimestamp;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserPresenceDTO{" +
+            "username='" + getUsername() + "'" +
+            ", state='" + getState() + "'" +
+            ", stateTimestamp=" + getStateTimestamp() +
+            "}";
+    }
+}
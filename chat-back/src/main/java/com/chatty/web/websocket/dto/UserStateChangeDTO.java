@@ -0,0 +1,41 @@
+package com.chatty.web.websocket.dto;
+
+import com.chatty.domain.enumeration.UserState;
+
+/**
+ * A change of presence of a user, numbered by the presence registry.
+ */
+public class UserStateChangeDTO {
+
+    private final String username;
+    private final UserState state;
+    private final long version;
+
+    public UserStateChangeDTO(String username, UserState state, long version) {
+        this.username = username;
+        this.state = state;
+        this.version = version;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UserState getState() {
+        return state;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserStateChangeDTO{" +
+            "username='" + getUsername() + "'" +
+            ", state='" + getState() + "'" +
+            ", version=" + getVersion() +
+            "}";
+    }
+}
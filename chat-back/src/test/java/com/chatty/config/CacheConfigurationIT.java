@@ -0,0 +1,129 @@
+package com.chatty.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.IntegrationTest;
+import com.chatty.domain.Room;
+import com.chatty.domain.User;
+import com.chatty.repository.RoomRepository;
+import com.chatty.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.persistence.EntityManagerFactory;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the Hibernate second-level and query caches, enabled as documented in {@code application.yml}.
+ * <p>
+ * The caches are filled once a transaction commits, so each step of a test runs in its own transaction.
+ */
+@IntegrationTest
+@TestPropertySource(
+    properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+    }
+)
+class CacheConfigurationIT {
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private User member;
+
+    private Room room;
+
+    @BeforeEach
+    public void init() {
+        transactionTemplate.executeWithoutResult(status -> {
+            member = new User();
+            member.setLogin("member" + RandomStringUtils.randomAlphabetic(5).toLowerCase());
+            member.setPassword(RandomStringUtils.random(60));
+            member.setFirstName("before");
+            member.setActivated(true);
+            member = userRepository.save(member);
+            room = roomRepository.save(new Room().name("before").addUser(member));
+        });
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            roomRepository.deleteById(room.getId());
+            userRepository.deleteById(member.getId());
+        });
+    }
+
+    @Test
+    void testRoomsAndTheirMembersAreReadFromTheCacheUntilTheyChange() {
+        assertThat(loadRoomWithMembers()).isEqualTo("before:1");
+        statistics.clear();
+
+        assertThat(loadRoomWithMembers()).isEqualTo("before:1");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(Room.class.getName()).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(Room.class.getName() + ".users").getHitCount()).isEqualTo(1);
+        assertThat(
+            meterRegistry
+                .get("hibernate.second.level.cache.requests")
+                .tag("region", Room.class.getName())
+                .tag("result", "hit")
+                .functionCounter()
+                .count()
+        )
+            .isEqualTo(1);
+
+        transactionTemplate.executeWithoutResult(status -> roomRepository.findById(room.getId()).get().setName("after"));
+
+        assertThat(loadRoomWithMembers()).isEqualTo("after:1");
+    }
+
+    @Test
+    void testUsersFoundByLoginAreReadFromTheQueryCacheUntilTheyChange() {
+        assertThat(findFirstNameByLogin()).isEqualTo("before");
+        statistics.clear();
+
+        assertThat(findFirstNameByLogin()).isEqualTo("before");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.findById(member.getId()).get().setFirstName("after"));
+
+        assertThat(findFirstNameByLogin()).isEqualTo("after");
+    }
+
+    private String loadRoomWithMembers() {
+        return transactionTemplate.execute(status -> {
+            Room loaded = roomRepository.findById(room.getId()).get();
+            return loaded.getName() + ":" + loaded.getUsers().size();
+        });
+    }
+
+    private String findFirstNameByLogin() {
+        return transactionTemplate.execute(status -> userRepository.findOneByLogin(member.getLogin()).get().getFirstName());
+    }
+}
@@ -0,0 +1,36 @@
+package com.chatty.config;
+
+import java.io.File;
+import org.apache.activemq.broker.BrokerService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * In-JVM STOMP broker, standing in for the external broker of the relay mode in tests.
+ * <p>
+ * Activate the {@code embedded-broker} profile to run the application against it: the broker listens on
+ * {@code application.websocket.broker.relay.host} and {@code port}, so other clients of this broker see the messages
+ * of the application as they would on another node.
+ */
+@Configuration
+@Profile(EmbeddedStompBrokerConfiguration.PROFILE)
+public class EmbeddedStompBrokerConfiguration {
+
+    public static final String PROFILE = "embedded-broker";
+
+    @Bean(destroyMethod = "stop")
+    public BrokerService embeddedStompBroker(ApplicationProperties applicationProperties) throws Exception {
+        ApplicationProperties.Websocket.Broker.Relay relay = applicationProperties.getWebsocket().getBroker().getRelay();
+        BrokerService broker = new BrokerService();
+        broker.setBrokerName("embedded-stomp-broker");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setAdvisorySupport(false);
+        broker.setDataDirectoryFile(new File("target/embedded-stomp-broker"));
+        broker.addConnector("stomp://" + relay.getHost() + ":" + relay.getPort());
+        broker.start();
+        broker.waitUntilStarted();
+        return broker;
+    }
+}
@@ -0,0 +1,141 @@
+package com.chatty.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.IntegrationTest;
+import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.UserSocketService;
+import com.chatty.web.websocket.cluster.BrokerClusterTransport;
+import com.chatty.web.websocket.dto.ClusterPresenceDTO;
+import com.chatty.web.websocket.dto.UserPresenceDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration tests for the broker relay mode of {@link WebsocketConfiguration} and the cluster transport over the
+ * broker, against the embedded STOMP broker.
+ */
+@IntegrationTest
+@ActiveProfiles(EmbeddedStompBrokerConfiguration.PROFILE)
+class StompBrokerRelayIT {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private StompBrokerRelayMessageHandler stompBrokerRelayMessageHandler;
+
+    @Autowired
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @Autowired
+    private UserSocketService userSocketService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    private ReactorNettyTcpStompClient stompClient;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties.Websocket.Broker.Relay relay = applicationProperties.getWebsocket().getBroker().getRelay();
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+        stompClient = new ReactorNettyTcpStompClient(relay.getHost(), relay.getPort());
+        stompClient.setMessageConverter(new StringMessageConverter());
+        stompClient.setTaskScheduler(taskScheduler);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stompClient.shutdown();
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    void messagesSentByTheServerReachOtherClientsOfTheBroker() throws Exception {
+        awaitBrokerAvailable();
+        // a client of the broker, as a websocket session relayed by another node would be
+        StompSession session = stompClient.connect(new StompSessionHandlerAdapter() {}).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        session.setAutoReceipt(true);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        session
+            .subscribe(
+                "/topic/room.1",
+                new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return String.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        received.add((String) payload);
+                    }
+                }
+            )
+            .addReceiptTask(subscribed::countDown);
+        assertThat(subscribed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+        messagingTemplate.convertAndSend("/topic/room.1", "hello");
+
+        assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo("hello");
+        session.disconnect();
+    }
+
+    @Test
+    void usersOfOtherNodesAreOnline() throws Exception {
+        // another node of the cluster, sharing the presence of its users through the broker
+        BrokerClusterTransport otherNode = new BrokerClusterTransport(applicationProperties, objectMapper);
+        otherNode.start();
+        try {
+            ClusterPresenceDTO presence = new ClusterPresenceDTO(
+                "other-node",
+                false,
+                Collections.singletonList(new UserPresenceDTO("other-node-user", UserState.AWAY, System.currentTimeMillis()))
+            );
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            // messages are dropped until both nodes are connected to the broker
+            while (userSocketService.getState("other-node-user") == UserState.OFFLINE && System.currentTimeMillis() < deadline) {
+                otherNode.send(presence);
+                Thread.sleep(100);
+            }
+
+            assertThat(userSocketService.getState("other-node-user")).isEqualTo(UserState.AWAY);
+        } finally {
+            otherNode.stop();
+        }
+    }
+
+    private void awaitBrokerAvailable() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (!stompBrokerRelayMessageHandler.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(stompBrokerRelayMessageHandler.isBrokerAvailable()).isTrue();
+    }
+}
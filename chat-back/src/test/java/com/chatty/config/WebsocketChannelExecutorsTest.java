@@ -0,0 +1,101 @@
+package com.chatty.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+class WebsocketChannelExecutorsTest {
+
+    private MeterRegistry meterRegistry;
+
+    private WebsocketChannelExecutors channelExecutors;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        channelExecutors = new WebsocketChannelExecutors(meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testMessagesAreRefusedOnceTheQueueIsFull() throws Exception {
+        ApplicationProperties.Websocket.Channels.Channel outbound = new ApplicationProperties.Websocket.Channels.Channel(1, 1);
+        outbound.setQueueCapacity(1);
+        executor = channelExecutors.outbound(outbound);
+        executor.initialize();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch queuedDone = new CountDownLatch(1);
+        executor.execute(queuedDone::countDown);
+
+        assertThatThrownBy(() -> executor.execute(() -> {})).isInstanceOf(TaskRejectedException.class);
+        assertThat(gauge("active")).isEqualTo(1);
+        assertThat(gauge("queued")).isEqualTo(1);
+        assertThat(meterRegistry.get(WebsocketChannelExecutors.METER_PREFIX + ".rejected").tag("channel", "outbound").counter().count())
+            .isEqualTo(1);
+
+        release.countDown();
+        assertThat(queuedDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(gauge("queued")).isZero();
+        assertThat(meterRegistry.get(WebsocketChannelExecutors.METER_PREFIX + ".wait").tag("channel", "outbound").timer().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void testVirtualThreadsWhenSupported() throws Exception {
+        ApplicationProperties.Websocket.Channels.Inbound inbound = new ApplicationProperties.Websocket.Channels.Inbound();
+        inbound.getVirtualThreads().setEnabled(true);
+        inbound.getVirtualThreads().setMaxConcurrency(4);
+        executor = channelExecutors.inbound(inbound);
+        executor.initialize();
+        boolean supported = WebsocketChannelExecutors.virtualThreadFactory("test-") != null;
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            thread.set(Thread.currentThread());
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        // platform threads are kept on runtimes without virtual threads
+        assertThat(thread.get().getName().startsWith("clientInboundChannel-virtual-")).isEqualTo(supported);
+        assertThat(executor.getMaxPoolSize()).isEqualTo(supported ? 4 : inbound.getMaxPoolSize());
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(WebsocketChannelExecutors.METER_PREFIX + "." + name).tag("channel", "outbound").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatty.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chatty.IntegrationTest;
+import com.chatty.domain.Room;
+import com.chatty.domain.User;
+import javax.persistence.EntityManager;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.messaging.access.intercept.ChannelSecurityInterceptor;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the authorization of the room topics in {@link WebsocketSecurityConfiguration}.
+ */
+@IntegrationTest
+@Transactional
+class WebsocketSecurityConfigurationIT {
+
+    private static final String MEMBER_LOGIN = "room-member";
+
+    @Autowired
+    @Qualifier("inboundChannelSecurity")
+    private ChannelSecurityInterceptor inboundChannelSecurity;
+
+    @Autowired
+    private EntityManager em;
+
+    private Room room;
+
+    @BeforeEach
+    public void initTest() {
+        User user = new User();
+        user.setLogin(MEMBER_LOGIN);
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(MEMBER_LOGIN + "@localhost");
+        em.persist(user);
+        room = new Room().name("room").isActivated(true).addUser(user);
+        em.persist(room);
+        em.flush();
+    }
+
+    @Test
+    @WithMockUser(MEMBER_LOGIN)
+    void memberCanSubscribeToRoomTopic() {
+        Message<?> message = message(SimpMessageType.SUBSCRIBE, "/topic/room." + room.getId());
+
+        assertThat(inboundChannelSecurity.preSend(message, null)).isSameAs(message);
+    }
+
+    @Test
+    @WithMockUser("not-a-member")
+    void nonMemberCannotSubscribeToRoomTopic() {
+        Message<?> message = message(SimpMessageType.SUBSCRIBE, "/topic/room." + room.getId());
+
+        assertThatThrownBy(() -> inboundChannelSecurity.preSend(message, null)).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @WithMockUser(MEMBER_LOGIN)
+    void memberCannotPublishToRoomTopic() {
+        Message<?> message = message(SimpMessageType.MESSAGE, "/topic/room." + room.getId());
+
+        assertThatThrownBy(() -> inboundChannelSecurity.preSend(message, null)).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @WithMockUser(MEMBER_LOGIN)
+    void malformedRoomTopicIsDenied() {
+        Message<?> message = message(SimpMessageType.SUBSCRIBE, "/topic/room.abc");
+
+        assertThatThrownBy(() -> inboundChannelSecurity.preSend(message, null)).isInstanceOf(AccessDeniedException.class);
+    }
+
+    private static Message<?> message(SimpMessageType type, String destination) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(type);
+        headers.setDestination(destination);
+        headers.setSessionId("session");
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+}
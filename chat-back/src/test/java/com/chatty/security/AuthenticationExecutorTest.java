@@ -0,0 +1,120 @@
+package com.chatty.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chatty.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+class AuthenticationExecutorTest {
+
+    private MeterRegistry meterRegistry;
+
+    private AuthenticationExecutor authenticationExecutor;
+
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAuthentication().setPoolSize(1);
+        applicationProperties.getAuthentication().setQueueCapacity(1);
+        applicationProperties.getAuthentication().setQueueTimeoutMs(200);
+        meterRegistry = new SimpleMeterRegistry();
+        authenticationExecutor = new AuthenticationExecutor(applicationProperties, meterRegistry);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        authenticationExecutor.destroy();
+    }
+
+    @Test
+    void testAuthenticationRunsOnThePool() {
+        Authentication authentication = authenticationExecutor.authenticate(() -> authenticated(Thread.currentThread().getName())).join();
+
+        assertThat(authentication.getName()).startsWith("authentication-");
+        assertThat(meterRegistry.get(AuthenticationExecutor.METER_PREFIX + ".execution").tag("result", "success").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void testAuthenticationFailureIsRethrown() {
+        assertThatThrownBy(() -> authenticationExecutor.authenticate(() -> {
+                    throw new BadCredentialsException("test");
+                })
+                .join()
+        )
+            .hasCauseInstanceOf(BadCredentialsException.class);
+        assertThat(meterRegistry.get(AuthenticationExecutor.METER_PREFIX + ".execution").tag("result", "failure").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void testAuthenticationIsRefusedWhenTheQueueIsFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        authenticationExecutor.authenticate(() -> blocking(running));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        authenticationExecutor.authenticate(() -> blocking(running));
+        assertThat(authenticationExecutor.getQueued()).isEqualTo(1);
+
+        CompletableFuture<Authentication> refused = authenticationExecutor.authenticate(() -> authenticated("user"));
+
+        assertThat(refused).isCompletedExceptionally();
+        assertThatThrownBy(refused::join)
+            .getCause()
+            .isInstanceOf(AuthenticationSaturatedException.class)
+            .extracting("retryAfterSeconds")
+            .isEqualTo(5);
+        assertThat(meterRegistry.get(AuthenticationExecutor.METER_PREFIX + ".rejected").tag("cause", "queue-full").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void testAuthenticationIsAbandonedAfterTheQueueTimeout() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        authenticationExecutor.authenticate(() -> blocking(running));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        AtomicBoolean checked = new AtomicBoolean();
+
+        CompletableFuture<Authentication> abandoned = authenticationExecutor.authenticate(() -> {
+            checked.set(true);
+            return authenticated("user");
+        });
+        Thread.sleep(300);
+        release.countDown();
+
+        assertThatThrownBy(() -> abandoned.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AuthenticationSaturatedException.class);
+        assertThat(checked).isFalse();
+        assertThat(meterRegistry.get(AuthenticationExecutor.METER_PREFIX + ".rejected").tag("cause", "queue-timeout").counter().count())
+            .isEqualTo(1);
+    }
+
+    private Authentication blocking(CountDownLatch running) {
+        running.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return authenticated("blocking");
+    }
+
+    private static Authentication authenticated(String login) {
+        return new UsernamePasswordAuthenticationToken(login, null, Collections.emptyList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.chatty.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.management.SecurityMetersService;
+import com.chatty.security.AuthoritiesConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import tech.jhipster.config.JHipsterProperties;
+
+class JWTChannelInterceptorTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private TokenProvider tokenProvider;
+
+    private JWTChannelInterceptor interceptor;
+
+    private Map<String, Object> sessionAttributes;
+
+    @BeforeEach
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        String base64Secret = "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(base64Secret);
+        SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
+        interceptor = new JWTChannelInterceptor(tokenProvider);
+        sessionAttributes = new HashMap<>();
+    }
+
+    @Test
+    void testConnectFrameAuthenticatesTheSession() {
+        Message<?> message = frame(StompCommand.CONNECT, token("test-user"));
+
+        interceptor.preSend(message, mock(MessageChannel.class));
+
+        assertThat(StompHeaderAccessor.getUser(message.getHeaders()).getName()).isEqualTo("test-user");
+        assertThat(StompHeaderAccessor.wrap(message).getNativeHeader(JWTFilter.AUTHORIZATION_HEADER)).isNull();
+        assertThat((Instant) sessionAttributes.get(JWTChannelInterceptor.EXPIRES_AT_ATTRIBUTE)).isAfter(Instant.now());
+    }
+
+    @Test
+    void testConnectFrameWithoutValidTokenIsRefused() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, null), mock(MessageChannel.class)))
+            .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, "invalid"), mock(MessageChannel.class)))
+            .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void testFramesAreRefusedOnceTheTokenExpiredUntilItIsRenewed() {
+        interceptor.preSend(frame(StompCommand.CONNECT, token("test-user")), mock(MessageChannel.class));
+        interceptor.preSend(frame(StompCommand.SEND, null), mock(MessageChannel.class));
+        sessionAttributes.put(JWTChannelInterceptor.EXPIRES_AT_ATTRIBUTE, Instant.now().minusSeconds(1));
+
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SEND, null), mock(MessageChannel.class)))
+            .isInstanceOf(CredentialsExpiredException.class);
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, token("other-user")), mock(MessageChannel.class)))
+            .isInstanceOf(CredentialsExpiredException.class);
+
+        Message<?> renewed = interceptor.preSend(frame(StompCommand.SEND, token("test-user")), mock(MessageChannel.class));
+        assertThat((Instant) sessionAttributes.get(JWTChannelInterceptor.EXPIRES_AT_ATTRIBUTE)).isAfter(Instant.now());
+        assertThat(StompHeaderAccessor.wrap(renewed).getNativeHeader(JWTFilter.AUTHORIZATION_HEADER)).isNull();
+        assertThat(StompHeaderAccessor.getUser(renewed.getHeaders()).getName()).isEqualTo("test-user");
+    }
+
+    private String token(String login) {
+        return tokenProvider.createToken(
+            new UsernamePasswordAuthenticationToken(login, "", Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)))
+        );
+    }
+
+    private Message<?> frame(StompCommand command, String token) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setSessionAttributes(sessionAttributes);
+        if (command != StompCommand.CONNECT) {
+            accessor.setUser(new UsernamePasswordAuthenticationToken("test-user", "", Collections.emptyList()));
+        }
+        if (token != null) {
+            accessor.setNativeHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + token);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
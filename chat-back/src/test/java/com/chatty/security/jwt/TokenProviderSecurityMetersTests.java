@@ -2,6 +2,7 @@ package com.chatty.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.chatty.config.ApplicationProperties;
 import com.chatty.management.SecurityMetersService;
 import com.chatty.security.AuthoritiesConstants;
 import io.jsonwebtoken.Jwts;
@@ -43,7 +44,7 @@ class TokenProviderSecurityMetersTests {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(meterRegistry);
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
         Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -110,7 +111,7 @@ class TokenProviderSecurityMetersTests {
     private String createValidToken() {
         Authentication authentication = createAuthentication();
 
-        return tokenProvider.createToken(authentication, false);
+        return tokenProvider.createToken(authentication);
     }
 
     private String createExpiredToken() {
@@ -118,7 +119,7 @@ class TokenProviderSecurityMetersTests {
 
         Authentication authentication = createAuthentication();
 
-        return tokenProvider.createToken(authentication, false);
+        return tokenProvider.createToken(authentication);
     }
 
     private Authentication createAuthentication() {
@@ -2,6 +2,7 @@ package com.chatty.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.chatty.config.ApplicationProperties;
 import com.chatty.management.SecurityMetersService;
 import com.chatty.security.AuthoritiesConstants;
 import io.jsonwebtoken.Jwts;
@@ -11,6 +12,8 @@ import io.jsonwebtoken.security.Keys;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -36,7 +39,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
         key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -53,7 +56,7 @@ class TokenProviderTest {
     @Test
     void testReturnFalseWhenJWTisMalformed() {
         Authentication authentication = createAuthentication();
-        String token = tokenProvider.createToken(authentication, false);
+        String token = tokenProvider.createToken(authentication);
         String invalidToken = token.substring(1);
         boolean isTokenValid = tokenProvider.validateToken(invalidToken);
 
@@ -65,7 +68,7 @@ class TokenProviderTest {
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
 
         Authentication authentication = createAuthentication();
-        String token = tokenProvider.createToken(authentication, false);
+        String token = tokenProvider.createToken(authentication);
 
         boolean isTokenValid = tokenProvider.validateToken(token);
 
@@ -88,6 +91,51 @@ class TokenProviderTest {
         assertThat(isTokenValid).isFalse();
     }
 
+    @Test
+    void testRefreshTokenIsNotAnAccessToken() {
+        String refreshToken = tokenProvider.createRefreshToken("anonymous", false);
+        String accessToken = tokenProvider.createToken(createAuthentication());
+
+        assertThat(tokenProvider.validateToken(refreshToken)).isFalse();
+        assertThat(tokenProvider.verifyRefreshToken(accessToken)).isEmpty();
+        assertThat(tokenProvider.verifyRefreshToken(refreshToken))
+            .hasValueSatisfying(claims -> {
+                assertThat(claims.getSubject()).isEqualTo("anonymous");
+                assertThat(claims.getId()).isNotEmpty();
+            });
+    }
+
+    @Test
+    void testRefreshTokenIsIssuedAtTheMillisecond() {
+        Instant before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        String refreshToken = tokenProvider.createRefreshToken("anonymous", false);
+        Instant after = Instant.now();
+
+        assertThat(tokenProvider.verifyRefreshToken(refreshToken).flatMap(tokenProvider::getIssuedAt))
+            .hasValueSatisfying(issuedAt -> assertThat(issuedAt).isBetween(before, after));
+    }
+
+    @Test
+    void testVerifiedTokenIsNotParsedAgain() {
+        String token = tokenProvider.createToken(createAuthentication());
+        Optional<Authentication> first = tokenProvider.authenticate(token);
+        // a parser which would reject the token, to tell a cache hit from a new parse
+        Key otherKey = Keys.hmacShaKeyFor(
+            Decoders.BASE64.decode("Xfd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8")
+        );
+        ReflectionTestUtils.setField(tokenProvider, "jwtParser", Jwts.parserBuilder().setSigningKey(otherKey).build());
+
+        Optional<Authentication> second = tokenProvider.authenticate(token);
+
+        assertThat(first).isPresent();
+        assertThat(second).isPresent();
+        assertThat(second.get()).isNotSameAs(first.get());
+        assertThat(second.get().getName()).isEqualTo("anonymous");
+        assertThat(second.get().getCredentials()).hasToString(token);
+        Authentication other = new UsernamePasswordAuthenticationToken("other", "other", createAuthentication().getAuthorities());
+        assertThat(tokenProvider.authenticate(tokenProvider.createToken(other))).isEmpty();
+    }
+
     @Test
     void testKeyIsSetFromSecretWhenSecretIsNotEmpty() {
         final String secret = "NwskoUmKHZtzGRKJKVjsJF7BtQMMxNWi";
@@ -96,7 +144,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)));
@@ -110,7 +158,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), securityMetersService);
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret)));
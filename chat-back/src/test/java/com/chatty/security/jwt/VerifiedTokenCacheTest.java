@@ -0,0 +1,45 @@
+package com.chatty.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+class VerifiedTokenCacheTest {
+
+    private static final long ONE_MINUTE = 60000;
+
+    @Test
+    void testTokensAreReadUntilTheyExpire() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+
+        cache.put("valid", principal("john"), Collections.<GrantedAuthority>emptyList(), System.currentTimeMillis() + ONE_MINUTE);
+        cache.put("expired", principal("jane"), Collections.<GrantedAuthority>emptyList(), System.currentTimeMillis() - 1);
+
+        assertThat(cache.get("valid").getName()).isEqualTo("john");
+        assertThat(cache.get("expired")).isNull();
+        assertThat(cache.get("unknown")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsDropped() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        long expiresAt = System.currentTimeMillis() + ONE_MINUTE;
+
+        cache.put("1", principal("user-1"), Collections.<GrantedAuthority>emptyList(), expiresAt);
+        cache.put("2", principal("user-2"), Collections.<GrantedAuthority>emptyList(), expiresAt);
+        cache.get("1");
+        cache.put("3", principal("user-3"), Collections.<GrantedAuthority>emptyList(), expiresAt);
+
+        assertThat(cache.get("1")).isNotNull();
+        assertThat(cache.get("2")).isNull();
+        assertThat(cache.get("3")).isNotNull();
+    }
+
+    private static User principal(String login) {
+        return new User(login, "", Collections.<GrantedAuthority>emptyList());
+    }
+}
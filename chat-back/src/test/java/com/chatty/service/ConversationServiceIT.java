@@ -0,0 +1,121 @@
+package com.chatty.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.IntegrationTest;
+import com.chatty.domain.Conversation;
+import com.chatty.domain.Room;
+import com.chatty.domain.User;
+import com.chatty.repository.ConversationRepository;
+import com.chatty.service.dto.ConversationDTO;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.persistence.EntityManager;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link ConversationService}.
+ */
+@IntegrationTest
+@Transactional
+class ConversationServiceIT {
+
+    private static final int CONVERSATIONS = 6;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private Room room;
+
+    @BeforeEach
+    public void init() {
+        room = new Room().name("history");
+        em.persist(room);
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            // a sender per conversation: as many selects of the senders as conversations if they were loaded one by one
+            User sender = new User();
+            sender.setLogin("sender" + RandomStringUtils.randomAlphabetic(5).toLowerCase());
+            sender.setPassword(RandomStringUtils.random(60));
+            sender.setActivated(true);
+            em.persist(sender);
+            conversationRepository.save(new Conversation().content("message " + i).room(room).sender(sender));
+        }
+        em.flush();
+        em.clear();
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void testHistoryPageIsReadWithItsCountOnly() {
+        Page<ConversationDTO> page = conversationService.findAllByRoom(PageRequest.of(0, CONVERSATIONS / 2), room.getId());
+
+        assertThat(page.getContent()).hasSize(CONVERSATIONS / 2);
+        assertThat(page.getContent()).allSatisfy(conversation -> assertThat(conversation.getSender().getLogin()).isNotNull());
+        assertThat(page.getTotalElements()).isEqualTo(CONVERSATIONS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void testHistorySliceIsReadWithOneQuery() {
+        Slice<ConversationDTO> slice = conversationService.findAllByRoomBefore(room.getId(), null, CONVERSATIONS / 2);
+
+        assertThat(slice.getContent()).hasSize(CONVERSATIONS / 2);
+        assertThat(slice.getContent()).allSatisfy(conversation -> assertThat(conversation.getRoom().getId()).isEqualTo(room.getId()));
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void testIdsAreTakenInBlocksOfTheirTransaction() {
+        List<Long> ids = conversationRepository.findAll().stream().map(Conversation::getId).sorted().collect(Collectors.toList());
+        Long first = ids.get(ids.size() - CONVERSATIONS);
+        // a single block for the conversations of the transaction
+        assertThat(ids.subList(ids.size() - CONVERSATIONS, ids.size())).containsExactlyElementsOf(
+            LongStream.range(first, first + CONVERSATIONS).boxed().collect(Collectors.toList())
+        );
+
+        TransactionTemplate otherTransaction = new TransactionTemplate(transactionManager);
+        otherTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long otherId = otherTransaction.execute(status -> {
+            status.setRollbackOnly();
+            return conversationRepository.save(new Conversation().content("other")).getId();
+        });
+
+        // not taken from the block of this transaction, whatever the ids it has left
+        assertThat(otherId).isGreaterThanOrEqualTo(first + 50);
+    }
+}
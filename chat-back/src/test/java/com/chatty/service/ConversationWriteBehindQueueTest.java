@@ -0,0 +1,152 @@
+package com.chatty.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.service.dto.PendingConversationDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConversationWriteBehindQueueTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private ConversationService conversationService;
+
+    private List<List<PendingConversationDTO>> flushedBatches;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        conversationService = mock(ConversationService.class);
+        flushedBatches = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> flushedBatches.add(new ArrayList<>(invocation.getArgument(0))))
+            .when(conversationService)
+            .saveAll(anyList());
+    }
+
+    @Test
+    void testRejectsWhenNotRunning() {
+        ConversationWriteBehindQueue queue = new ConversationWriteBehindQueue(
+            conversationService,
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+
+        assertThat(queue.enqueue(pending(1))).isFalse();
+
+        assertThat(flushedBatches).isEmpty();
+        assertThat(queue.findLastQueued(1L)).isEmpty();
+    }
+
+    @Test
+    void testFlushesInBatchesAndDrainsOnStop() {
+        applicationProperties.getConversation().getWriteBehind().setBatchSize(10);
+        applicationProperties.getConversation().getWriteBehind().setFlushIntervalMs(60000);
+        ConversationWriteBehindQueue queue = new ConversationWriteBehindQueue(
+            conversationService,
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+        queue.start();
+
+        for (int i = 0; i < 25; i++) {
+            assertThat(queue.enqueue(pending(i))).isTrue();
+        }
+        queue.stop();
+
+        assertThat(flushedBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+        assertThat(flushedBatches.stream().mapToInt(List::size).sum()).isEqualTo(25);
+        assertThat(queue.isRunning()).isFalse();
+    }
+
+    @Test
+    void testRejectsWithoutWaitingWhenTheQueueIsFull() throws Exception {
+        applicationProperties.getConversation().getWriteBehind().setQueueCapacity(1);
+        applicationProperties.getConversation().getWriteBehind().setBatchSize(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return flushedBatches.add(new ArrayList<>(invocation.getArgument(0)));
+            })
+            .when(conversationService)
+            .saveAll(anyList());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConversationWriteBehindQueue queue = new ConversationWriteBehindQueue(conversationService, applicationProperties, meterRegistry);
+        queue.start();
+        queue.enqueue(pending(0));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(queue.enqueue(pending(1))).isTrue();
+
+        assertThat(queue.enqueue(pending(2))).isFalse();
+        assertThat(meterRegistry.counter(ConversationWriteBehindQueue.METER_PREFIX + ".full").count()).isEqualTo(1);
+        assertThat(flushedBatches).isEmpty();
+
+        release.countDown();
+        queue.stop();
+
+        assertThat(flushedBatches.stream().flatMap(List::stream).map(PendingConversationDTO::getContent))
+            .containsExactly("message 0", "message 1");
+    }
+
+    @Test
+    void testStopWaitsForTheBatchBeingWrittenBeforeDraining() throws Exception {
+        applicationProperties.getConversation().getWriteBehind().setBatchSize(1);
+        applicationProperties.getConversation().getWriteBehind().setFlushIntervalMs(10);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger writers = new AtomicInteger();
+        AtomicInteger maxWriters = new AtomicInteger();
+        doAnswer(invocation -> {
+                maxWriters.accumulateAndGet(writers.incrementAndGet(), Math::max);
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                flushedBatches.add(new ArrayList<>(invocation.getArgument(0)));
+                writers.decrementAndGet();
+                return null;
+            })
+            .when(conversationService)
+            .saveAll(anyList());
+        ConversationWriteBehindQueue queue = new ConversationWriteBehindQueue(
+            conversationService,
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+        queue.start();
+        queue.enqueue(pending(0));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.enqueue(pending(1));
+        queue.enqueue(pending(2));
+
+        Thread stopping = new Thread(queue::stop);
+        stopping.start();
+        // longer than the flush interval: the batch being written is still waited for
+        stopping.join(500);
+        assertThat(stopping.isAlive()).isTrue();
+        assertThat(flushedBatches).isEmpty();
+
+        release.countDown();
+        stopping.join(5000);
+
+        assertThat(stopping.isAlive()).isFalse();
+        assertThat(maxWriters.get()).isEqualTo(1);
+        assertThat(flushedBatches.stream().flatMap(List::stream).map(PendingConversationDTO::getContent))
+            .containsExactly("message 0", "message 1", "message 2");
+    }
+
+    private PendingConversationDTO pending(int index) {
+        return new PendingConversationDTO("message " + index, 1L, "sender");
+    }
+}
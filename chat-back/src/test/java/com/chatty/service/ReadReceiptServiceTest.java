@@ -0,0 +1,215 @@
+package com.chatty.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.service.dto.PendingConversationDTO;
+import com.chatty.service.dto.ReadReceiptDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+class ReadReceiptServiceTest {
+
+    private static final long COALESCE_INTERVAL_MS = 100;
+
+    private List<Map<Long, Map<String, Long>>> savedReads;
+
+    private ConversationWriteBehindQueue conversationWriteBehindQueue;
+
+    private volatile Long lastSavedId;
+
+    private volatile int failures;
+
+    private List<Collection<Long>> lastSavedIdLookups;
+
+    private List<ReadReceiptsEvent> publishedEvents;
+
+    private MeterRegistry meterRegistry;
+
+    private ReadReceiptService readReceiptService;
+
+    @BeforeEach
+    public void setup() {
+        savedReads = new CopyOnWriteArrayList<>();
+        publishedEvents = new CopyOnWriteArrayList<>();
+        lastSavedId = 10L;
+        failures = 0;
+        lastSavedIdLookups = new CopyOnWriteArrayList<>();
+        ConversationService conversationService = mock(ConversationService.class);
+        doAnswer(invocation -> {
+                Collection<Long> roomIds = invocation.getArgument(0);
+                lastSavedIdLookups.add(new ArrayList<>(roomIds));
+                Map<Long, Long> lastSavedIds = new HashMap<>();
+                if (lastSavedId != null) {
+                    roomIds.forEach(roomId -> lastSavedIds.put(roomId, lastSavedId));
+                }
+                return lastSavedIds;
+            })
+            .when(conversationService)
+            .findLastConversationIds(anyCollection());
+        doAnswer(invocation -> {
+                if (failures > 0) {
+                    failures--;
+                    throw new CannotAcquireLockException("deadlock detected");
+                }
+                Map<Long, Map<String, Long>> watermarksByRoom = invocation.getArgument(0);
+                savedReads.add(new HashMap<>(watermarksByRoom));
+                return watermarksByRoom
+                    .entrySet()
+                    .stream()
+                    .flatMap(entry ->
+                        entry
+                            .getValue()
+                            .entrySet()
+                            .stream()
+                            .map(watermark ->
+                                new ReadReceiptDTO(entry.getKey(), watermark.getKey(), watermark.getValue(), Collections.singleton("sender"))
+                            )
+                    )
+                    .collect(Collectors.toList());
+            })
+            .when(conversationService)
+            .markRoomsAsRead(anyMap());
+        conversationWriteBehindQueue = mock(ConversationWriteBehindQueue.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getConversation().getReadReceipt().setCoalesceIntervalMs(COALESCE_INTERVAL_MS);
+        meterRegistry = new SimpleMeterRegistry();
+        readReceiptService =
+            new ReadReceiptService(
+                conversationService,
+                conversationWriteBehindQueue,
+                event -> publishedEvents.add((ReadReceiptsEvent) event),
+                applicationProperties,
+                meterRegistry
+            );
+    }
+
+    @Test
+    void testFirstReadIsSavedRightAway() {
+        readReceiptService.markRoomAsRead(1L, "john");
+
+        assertThat(savedReads).containsExactly(watermark(1L, "john", 10L));
+        assertThat(publishedEvents).isEmpty();
+
+        readReceiptService.flush();
+
+        assertThat(savedReads).hasSize(1);
+        assertThat(publishedEvents).hasSize(1);
+        assertThat(publishedEvents.get(0).getReadReceipts()).extracting(ReadReceiptDTO::getReader).containsExactly("john");
+    }
+
+    @Test
+    void testRepeatedReadsAreSavedOnceAtTheEndOfTheWindow() throws Exception {
+        readReceiptService.markRoomAsRead(1L, "john");
+        readReceiptService.markRoomAsRead(1L, "john");
+        readReceiptService.markRoomAsRead(1L, "john");
+        readReceiptService.markRoomAsRead(2L, "jane");
+        readReceiptService.markRoomAsRead(2L, "jane");
+
+        readReceiptService.flush();
+        assertThat(savedReads).hasSize(2);
+
+        Thread.sleep(COALESCE_INTERVAL_MS + 50);
+        readReceiptService.flush();
+
+        assertThat(savedReads).hasSize(3);
+        Map<Long, Map<String, Long>> coalesced = new HashMap<>();
+        coalesced.put(1L, Collections.singletonMap("john", 10L));
+        coalesced.put(2L, Collections.singletonMap("jane", 10L));
+        assertThat(savedReads.get(2)).isEqualTo(coalesced);
+        assertThat(meterRegistry.counter(ReadReceiptService.METER_PREFIX + ".coalesced").count()).isEqualTo(3);
+        // one lookup per first read, then one for the rooms of the flush
+        assertThat(lastSavedIdLookups).hasSize(3);
+        assertThat(lastSavedIdLookups.get(2)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void testReadAfterTheWindowIsSavedRightAway() throws Exception {
+        readReceiptService.markRoomAsRead(1L, "john");
+        Thread.sleep(COALESCE_INTERVAL_MS + 50);
+
+        readReceiptService.markRoomAsRead(1L, "john");
+
+        assertThat(savedReads).hasSize(2);
+        readReceiptService.flush();
+        assertThat(savedReads).hasSize(2);
+    }
+
+    @Test
+    void testCoalescedReadIsSavedUpToTheConversationsSavedAtTheFlush() throws Exception {
+        readReceiptService.markRoomAsRead(1L, "john");
+        lastSavedId = 12L;
+        readReceiptService.markRoomAsRead(1L, "john");
+        readReceiptService.markRoomAsRead(1L, "john");
+        assertThat(lastSavedIdLookups).hasSize(1);
+        lastSavedId = 15L;
+
+        Thread.sleep(COALESCE_INTERVAL_MS + 50);
+        readReceiptService.flush();
+
+        assertThat(savedReads).containsExactly(watermark(1L, "john", 10L), watermark(1L, "john", 15L));
+        assertThat(lastSavedIdLookups).hasSize(2);
+    }
+
+    @Test
+    void testReadCoversTheMessagesStillQueued() throws Exception {
+        PendingConversationDTO queued = new PendingConversationDTO("message", 1L, "sender");
+        when(conversationWriteBehindQueue.findLastQueued(1L)).thenReturn(Optional.of(queued));
+
+        readReceiptService.markRoomAsRead(1L, "john");
+
+        assertThat(savedReads).containsExactly(watermark(1L, "john", 10L));
+
+        Thread.sleep(COALESCE_INTERVAL_MS + 50);
+        readReceiptService.flush();
+        // not flushed yet: only the saved conversations are read
+        assertThat(savedReads).hasSize(2);
+
+        queued.setId(11L);
+        queued.flushed(true);
+        lastSavedId = 11L;
+        readReceiptService.flush();
+
+        assertThat(savedReads).hasSize(3);
+        assertThat(savedReads.get(2)).isEqualTo(watermark(1L, "john", 11L));
+        readReceiptService.flush();
+        assertThat(savedReads).hasSize(3);
+    }
+
+    @Test
+    void testReadsAreSavedAgainWhenTheFlushFails() throws Exception {
+        readReceiptService.markRoomAsRead(1L, "john");
+        readReceiptService.markRoomAsRead(1L, "john");
+        Thread.sleep(COALESCE_INTERVAL_MS + 50);
+        failures = 1;
+
+        readReceiptService.flush();
+        assertThat(savedReads).containsExactly(watermark(1L, "john", 10L));
+
+        readReceiptService.flush();
+        assertThat(savedReads).containsExactly(watermark(1L, "john", 10L), watermark(1L, "john", 10L));
+        readReceiptService.flush();
+        assertThat(savedReads).hasSize(2);
+    }
+
+    private static Map<Long, Map<String, Long>> watermark(Long roomId, String login, Long lastSeenId) {
+        return Collections.singletonMap(roomId, Collections.singletonMap(login, lastSeenId));
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatty.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.config.ApplicationProperties;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RoomMembershipCacheTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private AtomicInteger loads;
+
+    private Function<Long, Set<String>> loader;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        loads = new AtomicInteger();
+        loader =
+            roomId -> {
+                loads.incrementAndGet();
+                return new HashSet<>(Collections.singletonList("user-" + roomId));
+            };
+    }
+
+    @Test
+    void testLoadsOnlyOnMiss() {
+        RoomMembershipCache cache = new RoomMembershipCache(applicationProperties);
+
+        assertThat(cache.get(1L, loader)).containsExactly("user-1");
+        assertThat(cache.get(1L, loader)).containsExactly("user-1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testEvictReloads() {
+        RoomMembershipCache cache = new RoomMembershipCache(applicationProperties);
+
+        cache.get(1L, loader);
+        cache.evict(1L);
+        cache.get(1L, loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsDropped() {
+        applicationProperties.getCache().getRoomMembership().setMaxEntries(2);
+        RoomMembershipCache cache = new RoomMembershipCache(applicationProperties);
+
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+        cache.get(1L, loader);
+        cache.get(3L, loader);
+        assertThat(loads.get()).isEqualTo(3);
+
+        cache.get(1L, loader);
+        assertThat(loads.get()).isEqualTo(3);
+        cache.get(2L, loader);
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() {
+        applicationProperties.getCache().getRoomMembership().setTimeToLiveSeconds(-1);
+        RoomMembershipCache cache = new RoomMembershipCache(applicationProperties);
+
+        cache.get(1L, loader);
+        cache.get(1L, loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testLoadRacingAnEvictionIsNotCached() {
+        RoomMembershipCache cache = new RoomMembershipCache(applicationProperties);
+
+        cache.get(
+            1L,
+            roomId -> {
+                cache.evict(roomId);
+                return loader.apply(roomId);
+            }
+        );
+        cache.get(1L, loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,100 @@
+package com.chatty.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.IntegrationTest;
+import com.chatty.domain.Group;
+import com.chatty.domain.Room;
+import com.chatty.domain.User;
+import com.chatty.repository.UserRepository;
+import com.chatty.service.dto.GroupDTO;
+import com.chatty.service.dto.RoomDTO;
+import com.chatty.service.dto.UserDTO;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link RoomService}, checking the rooms are loaded with what their DTOs show, without a select
+ * per room.
+ */
+@IntegrationTest
+@Transactional
+@WithMockUser("user")
+class RoomServiceIT {
+
+    private static final int ROOMS = 3;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private Statistics statistics;
+
+    private Group group;
+
+    @BeforeEach
+    public void init() {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        group = new Group().name("group").addUsers(loggedUser);
+        em.persist(group);
+        for (int i = 0; i < ROOMS; i++) {
+            User member = new User();
+            member.setLogin("member" + RandomStringUtils.randomAlphabetic(5).toLowerCase());
+            member.setPassword(RandomStringUtils.random(60));
+            member.setActivated(true);
+            em.persist(member);
+            group.addUsers(member);
+            em.persist(new Room().name("room" + i).group(group).addUser(loggedUser).addUser(member));
+        }
+        em.flush();
+        em.clear();
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void testRoomsOfGroupAreLoadedWithTheirMembers() {
+        List<RoomDTO> rooms = roomService.findAllOfGroupJoinedByLoggedUser(group.getId());
+
+        assertThat(rooms).hasSize(ROOMS);
+        assertThat(rooms).allSatisfy(room -> {
+            assertThat(room.getUsers().stream().map(UserDTO::getLogin).collect(Collectors.toList())).contains("user").hasSize(2);
+            assertThat(room.getGroup().getId()).isEqualTo(group.getId());
+        });
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+        assertThat(statistics.getEntityFetchCount()).isZero();
+    }
+
+    @Test
+    void testGroupsOfLoggedUserAreLoadedWithTheirMembers() {
+        List<GroupDTO> groups = groupService.findGroupsByLoggedUser();
+
+        assertThat(groups).extracting(GroupDTO::getId).contains(group.getId());
+        assertThat(groups.stream().filter(g -> g.getId().equals(group.getId())).findFirst().get().getUsers()).hasSize(ROOMS + 1);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+}
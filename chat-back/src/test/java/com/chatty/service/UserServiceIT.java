@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManagerFactory;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +25,7 @@ import org.springframework.data.auditing.AuditingHandler;
 import org.springframework.data.auditing.DateTimeProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import tech.jhipster.security.RandomUtil;
 
@@ -53,6 +57,9 @@ class UserServiceIT {
     @Autowired
     private AuditingHandler auditingHandler;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @MockBean
     private DateTimeProvider dateTimeProvider;
 
@@ -182,4 +189,52 @@ class UserServiceIT {
         Optional<User> maybeDbUser = userRepository.findById(dbUser.getId());
         assertThat(maybeDbUser).contains(dbUser);
     }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void assertThatUsersByLoginAreCachedUntilTheyChange() {
+        userRepository.saveAndFlush(user);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN).map(User::getFirstName)).contains(DEFAULT_FIRSTNAME);
+            statistics.clear();
+            assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN).map(User::getFirstName)).contains(DEFAULT_FIRSTNAME);
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+
+            AdminUserDTO userDTO = new AdminUserDTO(user);
+            userDTO.setFirstName("jane");
+            userService.updateUser(userDTO);
+            assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN).map(User::getFirstName)).contains("jane");
+
+            userService.deleteUser(DEFAULT_LOGIN);
+            assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).isEmpty();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+            userService.deleteUser(DEFAULT_LOGIN);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void assertThatUsersByEmailAreCachedUntilTheyChange() {
+        userRepository.saveAndFlush(user);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            assertThat(userRepository.findOneWithAuthoritiesByEmailIgnoreCase(DEFAULT_EMAIL)).isPresent();
+            statistics.clear();
+            assertThat(userRepository.findOneWithAuthoritiesByEmailIgnoreCase(DEFAULT_EMAIL)).isPresent();
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+
+            AdminUserDTO userDTO = new AdminUserDTO(user);
+            userDTO.setEmail("janedoe@localhost");
+            userService.updateUser(userDTO);
+            assertThat(userRepository.findOneWithAuthoritiesByEmailIgnoreCase(DEFAULT_EMAIL)).isEmpty();
+            assertThat(userRepository.findOneWithAuthoritiesByEmailIgnoreCase("janedoe@localhost")).isPresent();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+            userService.deleteUser(DEFAULT_LOGIN);
+        }
+    }
 }
@@ -1,17 +1,28 @@
 package com.chatty.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.chatty.IntegrationTest;
 import com.chatty.domain.Conversation;
+import com.chatty.domain.Room;
 import com.chatty.domain.User;
+import com.chatty.domain.RoomReadState;
 import com.chatty.repository.ConversationRepository;
+import com.chatty.repository.RoomReadStateRepository;
+import com.chatty.repository.UserRepository;
+import com.chatty.service.ConversationService;
+import com.chatty.service.dto.ReadReceiptDTO;
 import com.chatty.service.dto.ConversationDTO;
+import com.chatty.service.dto.PendingConversationDTO;
 import com.chatty.service.mapper.ConversationMapper;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.persistence.EntityManager;
@@ -47,6 +58,15 @@ class ConversationResourceIT {
     @Autowired
     private ConversationMapper conversationMapper;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomReadStateRepository roomReadStateRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
     @Autowired
     private EntityManager em;
 
@@ -109,9 +129,7 @@ class ConversationResourceIT {
         assertThat(conversationList).hasSize(databaseSizeBeforeCreate + 1);
         Conversation testConversation = conversationList.get(conversationList.size() - 1);
         assertThat(testConversation.getContent()).isEqualTo(DEFAULT_CONTENT);
-
-        // Validate the id for MapsId, the ids must be same
-        assertThat(testConversation.getId()).isEqualTo(testConversation.getSender().getId());
+        assertThat(testConversation.getSender().getId()).isEqualTo(conversation.getSender().getId());
     }
 
     @Test
@@ -453,4 +471,224 @@ class ConversationResourceIT {
         List<Conversation> conversationList = conversationRepository.findAll();
         assertThat(conversationList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    void markRoomAsReadMovesUnreadCountToZero() throws Exception {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(conversation.getSender());
+        em.persist(room);
+        String sender = conversation.getSender().getLogin();
+        conversationService.saveAll(
+            Arrays.asList(
+                new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender),
+                new PendingConversationDTO(UPDATED_CONTENT, room.getId(), sender),
+                new PendingConversationDTO(UPDATED_CONTENT, room.getId(), loggedUser.getLogin())
+            )
+        );
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/room/{id}/count", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("2"));
+
+        restConversationMockMvc.perform(put(ENTITY_API_URL + "/logged/room/{id}", room.getId())).andExpect(status().isOk());
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/room/{id}/count", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("0"));
+
+        conversationService.saveAll(Collections.singletonList(new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender)));
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/by-room/count"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].[0]").value(hasItem(room.getId().intValue())))
+            .andExpect(jsonPath("$.[*].[1]").value(hasItem(1)));
+    }
+
+    @Test
+    @Transactional
+    void getConversationHistoryByRoomFromACursor() throws Exception {
+        Room room = RoomResourceIT.createEntity(em);
+        em.persist(room);
+        Conversation first = conversationRepository.saveAndFlush(conversation.room(room));
+        Conversation second = conversationRepository.saveAndFlush(new Conversation().content(UPDATED_CONTENT).room(room).sender(first.getSender()));
+        Conversation third = conversationRepository.saveAndFlush(new Conversation().content(UPDATED_CONTENT).room(room).sender(first.getSender()));
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/room/{roomId}/history?size=2", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.[*].id").value(contains(third.getId().intValue(), second.getId().intValue())))
+            .andExpect(jsonPath("$.last").value(false))
+            .andExpect(jsonPath("$.totalElements").doesNotExist());
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/room/{roomId}/history?before={before}&size=2", room.getId(), second.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.[*].id").value(contains(first.getId().intValue())))
+            .andExpect(jsonPath("$.last").value(true));
+    }
+
+    @Test
+    @Transactional
+    void getConversationHistoryByRoomWithAnInvalidSize() throws Exception {
+        restConversationMockMvc.perform(get(ENTITY_API_URL + "/room/{roomId}/history?size=101", 1L)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void unreadCountsFollowDeliveriesAndDeletions() throws Exception {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        User sender = conversation.getSender();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(sender);
+        em.persist(room);
+        conversationService.saveAll(
+            Arrays.asList(
+                new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender.getLogin()),
+                new PendingConversationDTO(UPDATED_CONTENT, room.getId(), sender.getLogin())
+            )
+        );
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/by-sender/count"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].[0]").value(hasItem(sender.getId().intValue())))
+            .andExpect(jsonPath("$.[*].[1]").value(hasItem(2)));
+
+        Long lastConversationId = (Long) conversationRepository.findLastConversationIdsByRoomIds(Collections.singleton(room.getId())).get(0)[1];
+        conversationService.delete(lastConversationId);
+
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/room/{id}/count", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("1"));
+    }
+
+    @Test
+    @Transactional
+    void savedConversationsAreCreatedByTheirSender() {
+        Room room = RoomResourceIT.createEntity(em);
+        em.persist(room);
+        String sender = conversation.getSender().getLogin();
+
+        conversationService.saveAll(Collections.singletonList(new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender)));
+
+        assertThat(conversationRepository.findAll())
+            .filteredOn(saved -> room.getId().equals(saved.getRoom().getId()))
+            .singleElement()
+            .satisfies(saved -> {
+                assertThat(saved.getCreatedBy()).isEqualTo(sender);
+                assertThat(saved.getLastModifiedBy()).isEqualTo(sender);
+            });
+    }
+
+    @Test
+    @Transactional
+    void markRoomsAsReadReturnsTheSendersOfTheSeenConversations() {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(conversation.getSender());
+        em.persist(room);
+        conversationService.saveAll(
+            Arrays.asList(
+                new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), conversation.getSender().getLogin()),
+                new PendingConversationDTO(UPDATED_CONTENT, room.getId(), loggedUser.getLogin())
+            )
+        );
+        Long lastId = conversationService.findLastConversationIds(Collections.singleton(room.getId())).get(room.getId());
+        Map<Long, Map<String, Long>> watermarksByRoom = Collections.singletonMap(room.getId(), Collections.singletonMap("user", lastId));
+
+        List<ReadReceiptDTO> readReceipts = conversationService.markRoomsAsRead(watermarksByRoom);
+
+        assertThat(readReceipts).hasSize(1);
+        assertThat(readReceipts.get(0).getLastReadConversationId()).isEqualTo(lastId);
+        assertThat(readReceipts.get(0).getSenders()).containsExactly(conversation.getSender().getLogin());
+        // the watermark is already on the last conversation: nothing is written
+        assertThat(conversationService.markRoomsAsRead(watermarksByRoom)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    void markRoomsAsReadKeepsTheConversationsSavedAfterTheReadUnread() throws Exception {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(conversation.getSender());
+        em.persist(room);
+        String sender = conversation.getSender().getLogin();
+        conversationService.saveAll(Collections.singletonList(new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender)));
+        Long seenId = conversationService.findLastConversationIds(Collections.singleton(room.getId())).get(room.getId());
+        conversationService.saveAll(Collections.singletonList(new PendingConversationDTO(UPDATED_CONTENT, room.getId(), sender)));
+
+        List<ReadReceiptDTO> readReceipts = conversationService.markRoomsAsRead(
+            Collections.singletonMap(room.getId(), Collections.singletonMap("user", seenId))
+        );
+
+        assertThat(readReceipts).extracting(ReadReceiptDTO::getLastReadConversationId).containsExactly(seenId);
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/room/{id}/count", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("1"));
+    }
+
+    @Test
+    @Transactional
+    void readStateIsCreatedOnce() {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(conversation.getSender());
+        em.persist(room);
+        Conversation before = conversationRepository.saveAndFlush(conversation.room(room));
+        Map<Long, Map<String, Long>> nothingSeen = Collections.singletonMap(room.getId(), Collections.singletonMap("user", 0L));
+
+        assertThat(conversationService.markRoomsAsRead(nothingSeen)).isEmpty();
+        // created by the first read: kept as is
+        assertThat(conversationService.markRoomsAsRead(nothingSeen)).isEmpty();
+
+        assertThat(roomReadStateRepository.findById(new RoomReadState.RoomReadStateId(room.getId(), loggedUser.getId())))
+            .hasValueSatisfying(state -> {
+                assertThat(state.getLastReadConversationId()).isEqualTo(before.getId());
+                assertThat(state.getUnreadCount()).isZero();
+            });
+    }
+
+    @Test
+    @Transactional
+    void memberJoiningAfterTheConversationsOnlyCountsTheNextOnesAsUnread() throws Exception {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        String sender = conversation.getSender().getLogin();
+        Room room = RoomResourceIT.createEntity(em).addUser(conversation.getSender());
+        em.persist(room);
+        conversationService.saveAll(
+            Arrays.asList(
+                new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender),
+                new PendingConversationDTO(DEFAULT_CONTENT, room.getId(), sender)
+            )
+        );
+        Long lastBeforeJoining = conversationService.findLastConversationIds(Collections.singleton(room.getId())).get(room.getId());
+
+        room.addUser(loggedUser);
+        em.flush();
+        conversationService.saveAll(Collections.singletonList(new PendingConversationDTO(UPDATED_CONTENT, room.getId(), sender)));
+
+        assertThat(roomReadStateRepository.findById(new RoomReadState.RoomReadStateId(room.getId(), loggedUser.getId())))
+            .hasValueSatisfying(state -> assertThat(state.getLastReadConversationId()).isEqualTo(lastBeforeJoining));
+        restConversationMockMvc
+            .perform(get(ENTITY_API_URL + "/logged/delivered/room/{id}/count", room.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string("1"));
+    }
+
+    @Test
+    @Transactional
+    void conversationDeliveredBehindTheWatermarkIsNotCountedAsUnread() {
+        User loggedUser = userRepository.findOneByLogin("user").get();
+        Room room = RoomResourceIT.createEntity(em).addUser(loggedUser).addUser(conversation.getSender());
+        em.persist(room);
+        Conversation delivered = conversationRepository.saveAndFlush(conversation.room(room));
+        // read on another node before this delivery counted it
+        conversationService.markRoomsAsRead(Collections.singletonMap(room.getId(), Collections.singletonMap("user", delivered.getId())));
+
+        roomReadStateRepository.incrementUnreadCount(room.getId(), Collections.singletonList(delivered.getId()));
+
+        assertThat(roomReadStateRepository.findUnreadCountByRoomIdAndUserId(room.getId(), loggedUser.getId())).contains(0);
+    }
 }
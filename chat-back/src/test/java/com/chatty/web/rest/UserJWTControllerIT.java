@@ -1,28 +1,44 @@
 package com.chatty.web.rest;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.chatty.IntegrationTest;
+import com.chatty.domain.RefreshTokenCutoff;
 import com.chatty.domain.User;
+import com.chatty.repository.RefreshTokenCutoffRepository;
+import com.chatty.repository.RevokedTokenRepository;
 import com.chatty.repository.UserRepository;
+import com.chatty.service.UserService;
 import com.chatty.web.rest.vm.LoginVM;
+import com.chatty.web.rest.vm.RefreshTokenVM;
+import com.jayway.jsonpath.JsonPath;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 
 /**
  * Integration tests for the {@link UserJWTController} REST controller.
+ * <p>
+ * The users are committed, as the authentications run on the threads of the
+ * {@link com.chatty.security.AuthenticationExecutor}, outside of the transaction of the test.
  */
 @AutoConfigureMockMvc
 @IntegrationTest
@@ -31,14 +47,31 @@ class UserJWTControllerIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private RefreshTokenCutoffRepository refreshTokenCutoffRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     @Autowired
     private MockMvc mockMvc;
 
+    @AfterEach
+    public void cleanup() {
+        userService.deleteUser("user-jwt-controller");
+        userService.deleteUser("user-jwt-controller-remember-me");
+        userService.deleteUser("user-jwt-controller-refresh");
+        revokedTokenRepository.deleteAll();
+        refreshTokenCutoffRepository.deleteAll();
+    }
+
     @Test
-    @Transactional
     void testAuthorize() throws Exception {
         User user = new User();
         user.setLogin("user-jwt-controller");
@@ -51,17 +84,17 @@ class UserJWTControllerIT {
         LoginVM login = new LoginVM();
         login.setUsername("user-jwt-controller");
         login.setPassword("test");
-        mockMvc
-            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+        authenticate(login)
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id_token").isString())
             .andExpect(jsonPath("$.id_token").isNotEmpty())
+            .andExpect(jsonPath("$.refresh_token").isString())
+            .andExpect(jsonPath("$.refresh_token").isNotEmpty())
             .andExpect(header().string("Authorization", not(nullValue())))
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
     @Test
-    @Transactional
     void testAuthorizeWithRememberMe() throws Exception {
         User user = new User();
         user.setLogin("user-jwt-controller-remember-me");
@@ -75,8 +108,7 @@ class UserJWTControllerIT {
         login.setUsername("user-jwt-controller-remember-me");
         login.setPassword("test");
         login.setRememberMe(true);
-        mockMvc
-            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+        authenticate(login)
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id_token").isString())
             .andExpect(jsonPath("$.id_token").isNotEmpty())
@@ -84,15 +116,149 @@ class UserJWTControllerIT {
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
+    @Test
+    void testRefreshUntilRevoked() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String response = authenticate(login)
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        RefreshTokenVM refreshToken = new RefreshTokenVM();
+        refreshToken.setRefreshToken(JsonPath.read(response, "$.refresh_token"));
+
+        String refreshed = refresh(refreshToken)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id_token").isString())
+            .andExpect(jsonPath("$.id_token").isNotEmpty())
+            .andExpect(jsonPath("$.refresh_token").value(not(refreshToken.getRefreshToken())))
+            .andExpect(header().string("Authorization", not(nullValue())))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        RefreshTokenVM rotatedRefreshToken = new RefreshTokenVM();
+        rotatedRefreshToken.setRefreshToken(JsonPath.read(refreshed, "$.refresh_token"));
+
+        // the refresh token used was revoked by the refresh: a replay is refused
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+
+        mockMvc
+            .perform(
+                post("/api/authenticate/revoke")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(rotatedRefreshToken))
+            )
+            .andExpect(status().isNoContent());
+        assertThat(revokedTokenRepository.count()).isEqualTo(2);
+
+        refresh(rotatedRefreshToken).andExpect(status().isUnauthorized()).andExpect(jsonPath("$.id_token").doesNotExist());
+    }
+
+    @Test
+    void testRefreshFailsAfterAPasswordReset() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String response = authenticate(login).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        RefreshTokenVM refreshToken = new RefreshTokenVM();
+        refreshToken.setRefreshToken(JsonPath.read(response, "$.refresh_token"));
+
+        String resetKey = userService.requestPasswordReset("user-jwt-controller-refresh@example.com").get().getResetKey();
+        userService.completePasswordReset("new password", resetKey);
+
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRefreshFailsAfterAPasswordChangeOnAnotherNode() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String response = authenticate(login).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        RefreshTokenVM refreshToken = new RefreshTokenVM();
+        refreshToken.setRefreshToken(JsonPath.read(response, "$.refresh_token"));
+
+        // committed by another node: this one has not read it
+        Instant now = Instant.now();
+        refreshTokenCutoffRepository.saveAndFlush(new RefreshTokenCutoff("user-jwt-controller-refresh", now.plusMillis(1), now.plus(1, ChronoUnit.DAYS)));
+
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRefreshFailsWithAnAccessToken() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String response = authenticate(login)
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        RefreshTokenVM refreshToken = new RefreshTokenVM();
+        refreshToken.setRefreshToken(JsonPath.read(response, "$.id_token"));
+
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+    }
+
     @Test
     void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
         login.setUsername("wrong-user");
         login.setPassword("wrong password");
-        mockMvc
-            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+        authenticate(login)
             .andExpect(status().isUnauthorized())
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    /**
+     * The authentications are answered asynchronously, once they ran on the pool.
+     */
+    private ResultActions authenticate(LoginVM login) throws Exception {
+        MvcResult result = mockMvc
+            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    private ResultActions refresh(RefreshTokenVM refreshToken) throws Exception {
+        return mockMvc.perform(
+            post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(refreshToken))
+        );
+    }
 }
@@ -1,5 +1,6 @@
 package com.chatty.web.rest.errors;
 
+import com.chatty.security.AuthenticationSaturatedException;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.springframework.dao.ConcurrencyFailureException;
@@ -17,6 +18,11 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/authentication-saturated")
+    public void authenticationSaturated() {
+        throw new AuthenticationSaturatedException("test authentication saturated", 5, null);
+    }
+
     @PostMapping("/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {}
 
@@ -0,0 +1,105 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.service.ConversationWriteBehindQueue;
+import com.chatty.service.RoomService;
+import com.chatty.web.websocket.cluster.ClusterPresenceService;
+import com.chatty.web.websocket.dto.CallNotificationDTO;
+import com.chatty.web.websocket.dto.MessageNotificationDTO;
+import com.chatty.web.websocket.dto.Notification;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+class ChatServiceTest {
+
+    private static final Long ROOM_ID = 1L;
+
+    private RoomService roomService;
+
+    private ConversationWriteBehindQueue conversationWriteBehindQueue;
+
+    private MessageFanout messageFanout;
+
+    private SimpMessageSendingOperations messagingTemplate;
+
+    private ChatService chatService;
+
+    @BeforeEach
+    public void setup() {
+        roomService = mock(RoomService.class);
+        when(roomService.findMemberLogins(ROOM_ID)).thenReturn(new HashSet<>(Arrays.asList("john", "jane")));
+        when(roomService.isMember(ROOM_ID, "john")).thenReturn(true);
+        when(roomService.isMember(ROOM_ID, "jane")).thenReturn(true);
+        conversationWriteBehindQueue = mock(ConversationWriteBehindQueue.class);
+        messageFanout = mock(MessageFanout.class);
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        chatService =
+            new ChatService(
+                roomService,
+                conversationWriteBehindQueue,
+                new UserSocketService(),
+                mock(OnlineUsersSnapshotService.class),
+                mock(PresenceBroadcaster.class),
+                messageFanout,
+                messagingTemplate,
+                mock(ClusterPresenceService.class)
+            );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCallIsSentToTheOtherMembers() {
+        chatService.processMessage(call(NotificationType.INCOMING_CALL), principal("john"));
+
+        ArgumentCaptor<Collection<String>> recipients = ArgumentCaptor.forClass(Collection.class);
+        verify(messageFanout).sendToUsers(recipients.capture(), eq(ChatService.USER_DESTINATION), any(Notification.class));
+        assertThat(recipients.getValue()).containsExactly("jane");
+    }
+
+    @Test
+    void testCallOfANonMemberIsDropped() {
+        chatService.processMessage(call(NotificationType.ACCEPTED_CALL), principal("mallory"));
+
+        verify(messageFanout, never()).sendToUsers(anyCollection(), anyString(), any());
+    }
+
+    @Test
+    void testMessageOfANonMemberIsDropped() {
+        MessageNotificationDTO message = new MessageNotificationDTO();
+        message.setType(NotificationType.INCOMING_MESSAGE);
+        message.setRoom(ROOM_ID);
+        message.setMessage("hello");
+
+        chatService.processMessage(message, principal("mallory"));
+
+        verify(conversationWriteBehindQueue, never()).enqueue(any());
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    private CallNotificationDTO call(NotificationType type) {
+        CallNotificationDTO call = new CallNotificationDTO();
+        call.setType(type);
+        call.setRoom(ROOM_ID);
+        return call;
+    }
+
+    private Principal principal(String login) {
+        return () -> login;
+    }
+}
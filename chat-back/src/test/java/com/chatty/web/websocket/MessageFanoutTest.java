@@ -0,0 +1,77 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.web.websocket.dto.Notification;
+import com.chatty.domain.enumeration.NotificationType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class MessageFanoutTest {
+
+    private List<Message<?>> sentMessages;
+
+    private AtomicInteger serializations;
+
+    private MeterRegistry meterRegistry;
+
+    private MessageFanout messageFanout;
+
+    @BeforeEach
+    public void setup() {
+        sentMessages = new CopyOnWriteArrayList<>();
+        serializations = new AtomicInteger();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> sentMessages.add(message));
+        MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter() {
+            @Override
+            protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+                serializations.incrementAndGet();
+                return super.convertToInternal(payload, headers, conversionHint);
+            }
+        };
+        messageConverter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        messagingTemplate.setMessageConverter(messageConverter);
+        meterRegistry = new SimpleMeterRegistry();
+        messageFanout = new MessageFanout(messagingTemplate, meterRegistry);
+    }
+
+    @Test
+    void testPayloadIsSerializedOnceForAllRecipients() {
+        Notification notification = new Notification();
+        notification.setType(NotificationType.INCOMING_MESSAGE);
+
+        messageFanout.sendToUsers(Arrays.asList("john", "jane", "first/last"), "/queue/messages", notification);
+
+        assertThat(serializations.get()).isEqualTo(1);
+        assertThat(sentMessages).hasSize(3);
+        assertThat(sentMessages)
+            .extracting(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+            .containsExactly("/user/john/queue/messages", "/user/jane/queue/messages", "/user/first%2Flast/queue/messages");
+        assertThat(sentMessages).allSatisfy(message -> assertThat(message.getPayload()).isSameAs(sentMessages.get(0).getPayload()));
+        DistributionSummary saved = meterRegistry.find(MessageFanout.METER_PREFIX + ".serializations-saved").summary();
+        assertThat(saved.count()).isEqualTo(1);
+        assertThat(saved.totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void testNothingIsSerializedWithoutRecipients() {
+        messageFanout.sendToUsers(Collections.emptyList(), "/queue/messages", new Notification());
+
+        assertThat(serializations.get()).isZero();
+        assertThat(sentMessages).isEmpty();
+    }
+}
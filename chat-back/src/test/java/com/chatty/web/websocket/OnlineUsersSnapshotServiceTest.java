@@ -0,0 +1,86 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class OnlineUsersSnapshotServiceTest {
+
+    private UserSocketService userSocketService;
+
+    private List<Message<?>> sentMessages;
+
+    private MeterRegistry meterRegistry;
+
+    private OnlineUsersSnapshotService onlineUsersSnapshotService;
+
+    @BeforeEach
+    public void setup() {
+        userSocketService = new UserSocketService();
+        sentMessages = new CopyOnWriteArrayList<>();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> sentMessages.add(message));
+        MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        messagingTemplate.setMessageConverter(messageConverter);
+        meterRegistry = new SimpleMeterRegistry();
+        onlineUsersSnapshotService =
+            new OnlineUsersSnapshotService(
+                userSocketService,
+                new MessageFanout(messagingTemplate, meterRegistry),
+                meterRegistry,
+                new ApplicationProperties()
+            );
+    }
+
+    @Test
+    void testOutdatedSnapshotIsSerializedOnceForAllRequesters() {
+        userSocketService.connect("john", "session-1");
+        userSocketService.connect("jane", "session-2");
+
+        onlineUsersSnapshotService.sendSnapshot("john", "session-1");
+        onlineUsersSnapshotService.sendSnapshot("jane", "session-2");
+        assertThat(sentMessages).isEmpty();
+
+        onlineUsersSnapshotService.flushPendingSnapshots();
+
+        assertThat(sentMessages).hasSize(2);
+        assertThat(SimpMessageHeaderAccessor.getDestination(sentMessages.get(0).getHeaders())).isEqualTo("/user/john/queue/messages");
+        assertThat(SimpMessageHeaderAccessor.getDestination(sentMessages.get(1).getHeaders())).isEqualTo("/user/jane/queue/messages");
+        // only the requesting session gets the snapshot
+        assertThat(SimpMessageHeaderAccessor.getSessionId(sentMessages.get(0).getHeaders())).isEqualTo("session-1");
+        assertThat(SimpMessageHeaderAccessor.getSessionId(sentMessages.get(1).getHeaders())).isEqualTo("session-2");
+        assertThat(sentMessages.get(0).getPayload()).isSameAs(sentMessages.get(1).getPayload());
+        String payload = new String((byte[]) sentMessages.get(0).getPayload(), StandardCharsets.UTF_8);
+        assertThat(payload).contains("ONLINE_USERS").contains("\"version\":2").contains("john").contains("jane");
+        assertThat(meterRegistry.counter(OnlineUsersSnapshotService.METER_PREFIX + ".serializations").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testUpToDateSnapshotIsSentRightAway() {
+        userSocketService.connect("john", "session-1");
+        onlineUsersSnapshotService.sendSnapshot("john", "session-1");
+        onlineUsersSnapshotService.flushPendingSnapshots();
+
+        onlineUsersSnapshotService.sendSnapshot("john", "session-1");
+
+        assertThat(sentMessages).hasSize(2);
+        assertThat(sentMessages.get(1).getPayload()).isSameAs(sentMessages.get(0).getPayload());
+        assertThat(meterRegistry.counter(OnlineUsersSnapshotService.METER_PREFIX + ".serializations").count()).isEqualTo(1);
+
+        userSocketService.connect("jane", "session-2");
+        onlineUsersSnapshotService.sendSnapshot("john", "session-1");
+        assertThat(sentMessages).hasSize(2);
+    }
+}
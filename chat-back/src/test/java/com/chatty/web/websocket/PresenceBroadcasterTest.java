@@ -0,0 +1,87 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.dto.Notification;
+import com.chatty.web.websocket.dto.UserStateChangeDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+class PresenceBroadcasterTest {
+
+    private SimpMessageSendingOperations messagingTemplate;
+
+    private MeterRegistry meterRegistry;
+
+    private PresenceBroadcaster presenceBroadcaster;
+
+    @BeforeEach
+    public void setup() {
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        meterRegistry = new SimpleMeterRegistry();
+        presenceBroadcaster = new PresenceBroadcaster(messagingTemplate, meterRegistry, new ApplicationProperties());
+    }
+
+    @Test
+    void testChangesOfAWindowAreSentAsOneFrame() {
+        presenceBroadcaster.publish("john", UserState.ONLINE, 1);
+        presenceBroadcaster.publish("jane", UserState.AWAY, 2);
+        presenceBroadcaster.publish("john", UserState.OFFLINE, 3);
+
+        presenceBroadcaster.flush();
+
+        ArgumentCaptor<Notification> notification = ArgumentCaptor.forClass(Notification.class);
+        verify(messagingTemplate).convertAndSend(eq(PresenceBroadcaster.DESTINATION), notification.capture());
+        assertThat(notification.getValue().getType()).isEqualTo(NotificationType.USER_STATE);
+        assertThat(notification.getValue().getVersion()).isEqualTo(3);
+        assertThat(notification.getValue().getChanges())
+            .extracting(UserStateChangeDTO::getUsername, UserStateChangeDTO::getState, UserStateChangeDTO::getVersion)
+            .containsExactly(tuple("jane", UserState.AWAY, 2L), tuple("john", UserState.OFFLINE, 3L));
+        assertThat(meterRegistry.counter(PresenceBroadcaster.METER_PREFIX + ".collapsed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testOlderChangeDoesNotReplaceNewerOne() {
+        presenceBroadcaster.publish("john", UserState.BUSY, 5);
+        presenceBroadcaster.publish("john", UserState.ONLINE, 4);
+
+        presenceBroadcaster.flush();
+
+        ArgumentCaptor<Notification> notification = ArgumentCaptor.forClass(Notification.class);
+        verify(messagingTemplate).convertAndSend(eq(PresenceBroadcaster.DESTINATION), notification.capture());
+        assertThat(notification.getValue().getChanges()).extracting(UserStateChangeDTO::getState).containsExactly(UserState.BUSY);
+    }
+
+    @Test
+    void testClusterNodeBroadcastsOnItsOwnTopic() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getWebsocket().getCluster().setTransport(ApplicationProperties.Websocket.Cluster.ClusterTransportType.LOOPBACK);
+        applicationProperties.getWebsocket().getCluster().setNodeId("node-1");
+        presenceBroadcaster = new PresenceBroadcaster(messagingTemplate, meterRegistry, applicationProperties);
+        presenceBroadcaster.publish("john", UserState.ONLINE, 1);
+
+        presenceBroadcaster.flush();
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/public.node-1"), any(Notification.class));
+    }
+
+    @Test
+    void testNothingIsSentWithoutChanges() {
+        presenceBroadcaster.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+    }
+}
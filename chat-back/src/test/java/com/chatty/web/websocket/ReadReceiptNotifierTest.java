@@ -0,0 +1,52 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.service.ReadReceiptsEvent;
+import com.chatty.service.dto.ReadReceiptDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class ReadReceiptNotifierTest {
+
+    @Test
+    void testOneNotificationPerSender() {
+        List<Message<?>> sentMessages = new CopyOnWriteArrayList<>();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> sentMessages.add(message));
+        MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        messagingTemplate.setMessageConverter(messageConverter);
+        ReadReceiptNotifier readReceiptNotifier = new ReadReceiptNotifier(new MessageFanout(messagingTemplate, new SimpleMeterRegistry()));
+
+        readReceiptNotifier.onReadReceipts(
+            new ReadReceiptsEvent(
+                Arrays.asList(
+                    new ReadReceiptDTO(1L, "jane", 12L, new HashSet<>(Arrays.asList("john", "paul"))),
+                    new ReadReceiptDTO(2L, "paul", 20L, new HashSet<>(Arrays.asList("john")))
+                )
+            )
+        );
+
+        assertThat(sentMessages).hasSize(2);
+        Message<?> toJohn = sentMessages
+            .stream()
+            .filter(message -> "/user/john/queue/messages".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+            .findFirst()
+            .get();
+        String payload = new String((byte[]) toJohn.getPayload(), StandardCharsets.UTF_8);
+        assertThat(payload)
+            .contains("\"type\":\"SEEN\"")
+            .contains("{\"room\":1,\"user\":\"jane\",\"conversation\":12}")
+            .contains("{\"room\":2,\"user\":\"paul\",\"conversation\":20}");
+    }
+}
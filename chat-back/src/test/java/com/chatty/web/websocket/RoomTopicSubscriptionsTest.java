@@ -0,0 +1,134 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.chatty.domain.enumeration.NotificationType;
+import com.chatty.service.RoomMembershipChangedEvent;
+import com.chatty.web.websocket.dto.Notification;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+class RoomTopicSubscriptionsTest {
+
+    private static final String ROOM_TOPIC = ChatService.ROOM_TOPIC_PREFIX + 1;
+
+    private ExecutorSubscribableChannel clientInboundChannel;
+
+    private SimpleBrokerMessageHandler broker;
+
+    private SimpMessagingTemplate messagingTemplate;
+
+    private List<String> receivingSessions;
+
+    private RoomTopicSubscriptions roomTopicSubscriptions;
+
+    @BeforeEach
+    public void setup() {
+        clientInboundChannel = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutboundChannel = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        receivingSessions = new CopyOnWriteArrayList<>();
+        clientOutboundChannel.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                receivingSessions.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            }
+        });
+        broker = new SimpleBrokerMessageHandler(clientInboundChannel, clientOutboundChannel, brokerChannel, Collections.singletonList("/topic"));
+        broker.start();
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        roomTopicSubscriptions = new RoomTopicSubscriptions(messagingTemplate);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Test
+    void testRemovedMemberStopsReceivingTheMessagesOfTheRoom() {
+        subscribe("session-john", "john", ROOM_TOPIC);
+        subscribe("session-jane", "jane", ROOM_TOPIC);
+
+        assertThat(roomTopicSubscriptions.revoke(1L, Collections.singleton("jane"))).containsExactly("john");
+        messagingTemplate.convertAndSend(ROOM_TOPIC, "hello");
+
+        assertThat(receivingSessions).containsExactly("session-jane");
+    }
+
+    @Test
+    void testMembersAndOtherRoomsAreKept() {
+        subscribe("session-john", "john", ROOM_TOPIC);
+        subscribe("session-john", "john", ChatService.ROOM_TOPIC_PREFIX + 2);
+
+        assertThat(roomTopicSubscriptions.revoke(1L, new HashSet<>(Arrays.asList("john", "jane")))).isEmpty();
+        assertThat(roomTopicSubscriptions.revoke(2L, Collections.singleton("jane"))).containsExactly("john");
+        messagingTemplate.convertAndSend(ROOM_TOPIC, "hello");
+
+        assertThat(receivingSessions).containsExactly("session-john");
+    }
+
+    @Test
+    void testDeletedRoomUnsubscribesAllItsMembers() {
+        MessageFanout messageFanout = mock(MessageFanout.class);
+        RoomSubscriptionNotifier roomSubscriptionNotifier = new RoomSubscriptionNotifier(messageFanout, roomTopicSubscriptions);
+        subscribe("session-john", "john", ROOM_TOPIC);
+        subscribe("session-jane", "jane", ROOM_TOPIC);
+
+        // as published by RoomService.delete
+        roomSubscriptionNotifier.onRoomMembershipChanged(new RoomMembershipChangedEvent(1L, Collections.emptySet()));
+        messagingTemplate.convertAndSend(ROOM_TOPIC, "hello");
+
+        assertThat(receivingSessions).isEmpty();
+        ArgumentCaptor<Notification> left = ArgumentCaptor.forClass(Notification.class);
+        verify(messageFanout)
+            .sendToUsers(eq(new HashSet<>(Arrays.asList("john", "jane"))), eq(ChatService.USER_DESTINATION), left.capture());
+        assertThat(left.getValue().getType()).isEqualTo(NotificationType.ROOM_LEFT);
+    }
+
+    @Test
+    void testDisconnectedSessionsAreForgotten() {
+        subscribe("session-john", "john", ROOM_TOPIC);
+
+        roomTopicSubscriptions.onDisconnect(
+            new SessionDisconnectEvent(this, MessageBuilder.withPayload(new byte[0]).build(), "session-john", CloseStatus.NORMAL)
+        );
+
+        assertThat(roomTopicSubscriptions.revoke(1L, Collections.emptySet())).isEmpty();
+    }
+
+    private void subscribe(String sessionId, String login, String destination) {
+        // the broker only delivers to the sessions it saw connect
+        SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        connect.setSessionId(sessionId);
+        clientInboundChannel.send(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId("sub-" + destination);
+        headers.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+        clientInboundChannel.send(message);
+        Principal user = () -> login;
+        roomTopicSubscriptions.onSubscribe(new SessionSubscribeEvent(this, message, user));
+    }
+}
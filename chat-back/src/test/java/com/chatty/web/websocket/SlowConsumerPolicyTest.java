@@ -0,0 +1,131 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.chatty.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.security.Principal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class SlowConsumerPolicyTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private OnlineUsersSnapshotService onlineUsersSnapshotService;
+
+    private MeterRegistry meterRegistry;
+
+    private SlowConsumerPolicy slowConsumerPolicy;
+
+    private WebSocketSession session;
+
+    private CountDownLatch writing;
+
+    private CountDownLatch release;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        onlineUsersSnapshotService = mock(OnlineUsersSnapshotService.class);
+        ObjectProvider<OnlineUsersSnapshotService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(onlineUsersSnapshotService);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getWebsocket().getTransport().setSlowConsumerThresholdMs(10);
+        meterRegistry = new SimpleMeterRegistry();
+        slowConsumerPolicy = new SlowConsumerPolicy(provider, applicationProperties, meterRegistry);
+
+        Principal principal = () -> "john";
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(SESSION_ID);
+        when(session.getPrincipal()).thenReturn(principal);
+        writing = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+                writing.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            })
+            .when(session)
+            .sendMessage(any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void testPresenceChangesAreDroppedWhileTheClientIsSlow() throws Exception {
+        WebSocketSession decorated = slowConsumerPolicy.register(session);
+        Thread writer = new Thread(() -> send(decorated));
+        writer.start();
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+
+        assertThat(slowConsumerPolicy.preSend(frame(PresenceBroadcaster.DESTINATION), mock(MessageChannel.class))).isNull();
+        assertThat(slowConsumerPolicy.preSend(frame("/topic/room.1"), mock(MessageChannel.class))).isNotNull();
+        assertThat(meterRegistry.counter(SlowConsumerPolicy.METER_PREFIX + ".dropped").count()).isEqualTo(1);
+        assertThat(meterRegistry.get(SlowConsumerPolicy.METER_PREFIX + ".slow").gauge().value()).isEqualTo(1);
+        verify(onlineUsersSnapshotService, never()).sendSnapshot(any(), any());
+
+        release.countDown();
+        writer.join(5000);
+
+        assertThat(slowConsumerPolicy.preSend(frame(PresenceBroadcaster.DESTINATION), mock(MessageChannel.class))).isNotNull();
+        verify(onlineUsersSnapshotService).sendSnapshot("john", SESSION_ID);
+        slowConsumerPolicy.unregister(SESSION_ID);
+        assertThat(meterRegistry.get(SlowConsumerPolicy.METER_PREFIX + ".dropped-per-session").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void testFramesAreSentToSessionsKeepingUp() {
+        slowConsumerPolicy.register(session);
+
+        assertThat(slowConsumerPolicy.preSend(frame(PresenceBroadcaster.DESTINATION), mock(MessageChannel.class))).isNotNull();
+        assertThat(meterRegistry.counter(SlowConsumerPolicy.METER_PREFIX + ".dropped").count()).isZero();
+    }
+
+    @Test
+    void testSessionsClosedAsNotReliableAreCountedAsEvicted() throws Exception {
+        WebSocketSession decorated = slowConsumerPolicy.register(session);
+
+        decorated.close(CloseStatus.SESSION_NOT_RELIABLE);
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(meterRegistry.counter(SlowConsumerPolicy.METER_PREFIX + ".evicted").count()).isEqualTo(1);
+    }
+
+    private static void send(WebSocketSession session) {
+        try {
+            session.sendMessage(new TextMessage("MESSAGE"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Message<byte[]> frame(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
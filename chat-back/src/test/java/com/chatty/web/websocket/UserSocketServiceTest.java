@@ -0,0 +1,94 @@
+package com.chatty.web.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chatty.domain.enumeration.UserState;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserSocketServiceTest {
+
+    private UserSocketService userSocketService;
+
+    @BeforeEach
+    public void setup() {
+        userSocketService = new UserSocketService();
+    }
+
+    @Test
+    void testUserStaysOnlineUntilLastSessionIsClosed() {
+        assertThat(userSocketService.connect("john", "session-1")).isEqualTo(1L);
+        assertThat(userSocketService.connect("john", "session-2")).isEqualTo(UserSocketService.UNCHANGED);
+        assertThat(userSocketService.updateStatus("john", UserState.BUSY)).isEqualTo(2L);
+        assertThat(userSocketService.updateStatus("john", UserState.BUSY)).isEqualTo(UserSocketService.UNCHANGED);
+
+        assertThat(userSocketService.disconnect("john", "session-1")).isEqualTo(UserSocketService.UNCHANGED);
+        assertThat(userSocketService.getState("john")).isEqualTo(UserState.BUSY);
+
+        assertThat(userSocketService.disconnect("john", "session-2")).isEqualTo(3L);
+        assertThat(userSocketService.getState("john")).isEqualTo(UserState.OFFLINE);
+        assertThat(userSocketService.findUserSocketByUsername("john")).isNull();
+    }
+
+    @Test
+    void testUnknownSessionAndLateUpdateAreIgnored() {
+        userSocketService.connect("john", "session-1");
+
+        assertThat(userSocketService.disconnect("john", "session-2")).isEqualTo(UserSocketService.UNCHANGED);
+        assertThat(userSocketService.disconnect("jane", "session-1")).isEqualTo(UserSocketService.UNCHANGED);
+        assertThat(userSocketService.updateStatus("jane", UserState.BUSY)).isEqualTo(UserSocketService.UNCHANGED);
+
+        assertThat(userSocketService.getState("john")).isEqualTo(UserState.ONLINE);
+        assertThat(userSocketService.findUserSocketByUsername("jane")).isNull();
+    }
+
+    @Test
+    void testConcurrentSessionsAreRefcounted() throws InterruptedException {
+        int sessions = 1000;
+        AtomicInteger online = new AtomicInteger();
+        AtomicInteger offline = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(sessions);
+        for (int i = 0; i < sessions; i++) {
+            String sessionId = "session-" + i;
+            executor.execute(() -> {
+                if (userSocketService.connect("john", sessionId) != UserSocketService.UNCHANGED) {
+                    online.incrementAndGet();
+                }
+                if (userSocketService.disconnect("john", sessionId) != UserSocketService.UNCHANGED) {
+                    offline.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        assertThat(online.get()).isEqualTo(offline.get()).isPositive();
+        assertThat(userSocketService.getState("john")).isEqualTo(UserState.OFFLINE);
+        assertThat(userSocketService.getVersion()).isEqualTo(online.get() + offline.get());
+    }
+
+    @Test
+    void testSnapshotHasTheUsersOfItsVersion() {
+        userSocketService.connect("john", "session-1");
+        userSocketService.connect("jane", "session-2");
+        userSocketService.updateStatus("jane", UserState.AWAY);
+        userSocketService.disconnect("john", "session-1");
+
+        UserSocketService.PresenceSnapshot snapshot = userSocketService.snapshot();
+
+        assertThat(snapshot.getVersion()).isEqualTo(4L);
+        assertThat(snapshot.getUsers())
+            .singleElement()
+            .satisfies(user -> {
+                assertThat(user.getUsername()).isEqualTo("jane");
+                assertThat(user.getState()).isEqualTo(UserState.AWAY);
+            });
+    }
+}
@@ -0,0 +1,122 @@
+package com.chatty.web.websocket.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.chatty.config.ApplicationProperties;
+import com.chatty.domain.enumeration.UserState;
+import com.chatty.web.websocket.PresenceBroadcaster;
+import com.chatty.web.websocket.UserSocketService;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClusterPresenceServiceTest {
+
+    private LoopbackClusterTransport transport;
+
+    private Node nodeA;
+
+    private Node nodeB;
+
+    @BeforeEach
+    public void setup() {
+        transport = new LoopbackClusterTransport();
+        nodeA = new Node("node-a", 15000);
+        nodeB = new Node("node-b", 15000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeA.clusterPresenceService.stop();
+        nodeB.clusterPresenceService.stop();
+    }
+
+    @Test
+    void testUserConnectedToOneNodeIsOnlineOnTheOthers() {
+        nodeA.connect("john", "session-1");
+
+        assertThat(nodeB.userSocketService.getState("john")).isEqualTo(UserState.ONLINE);
+        verify(nodeB.presenceBroadcaster).publish(eq("john"), eq(UserState.ONLINE), anyLong());
+    }
+
+    @Test
+    void testUserStaysOnlineWhileConnectedToAnyNode() {
+        nodeA.connect("john", "session-1");
+        nodeB.connect("john", "session-2");
+
+        nodeA.disconnect("john", "session-1");
+        assertThat(nodeA.userSocketService.getState("john")).isEqualTo(UserState.ONLINE);
+        assertThat(nodeB.userSocketService.getState("john")).isEqualTo(UserState.ONLINE);
+
+        nodeB.disconnect("john", "session-2");
+        assertThat(nodeA.userSocketService.getState("john")).isEqualTo(UserState.OFFLINE);
+        assertThat(nodeB.userSocketService.getState("john")).isEqualTo(UserState.OFFLINE);
+        verify(nodeA.presenceBroadcaster).publish(eq("john"), eq(UserState.OFFLINE), anyLong());
+    }
+
+    @Test
+    void testStateChangeIsSharedWithTheOtherNodes() throws InterruptedException {
+        nodeA.connect("john", "session-1");
+        nodeB.connect("john", "session-2");
+        // states are ordered by time
+        Thread.sleep(5);
+
+        nodeA.updateStatus("john", UserState.BUSY);
+
+        assertThat(nodeB.userSocketService.getState("john")).isEqualTo(UserState.BUSY);
+        verify(nodeB.presenceBroadcaster).publish(eq("john"), eq(UserState.BUSY), anyLong());
+    }
+
+    @Test
+    void testUsersOfASilentNodeGoOffline() throws InterruptedException {
+        Node nodeC = new Node("node-c", 1);
+        nodeA.connect("john", "session-1");
+        assertThat(nodeC.userSocketService.getState("john")).isEqualTo(UserState.ONLINE);
+
+        Thread.sleep(5);
+        nodeC.clusterPresenceService.heartbeat();
+        nodeC.clusterPresenceService.stop();
+
+        assertThat(nodeC.userSocketService.getState("john")).isEqualTo(UserState.OFFLINE);
+        verify(nodeC.presenceBroadcaster).publish(eq("john"), eq(UserState.OFFLINE), anyLong());
+    }
+
+    private class Node {
+
+        private final UserSocketService userSocketService = new UserSocketService();
+
+        private final PresenceBroadcaster presenceBroadcaster = mock(PresenceBroadcaster.class);
+
+        private final ClusterPresenceService clusterPresenceService;
+
+        private Node(String nodeId, long nodeTimeoutMs) {
+            ApplicationProperties applicationProperties = new ApplicationProperties();
+            applicationProperties.getWebsocket().getCluster().setTransport(ApplicationProperties.Websocket.Cluster.ClusterTransportType.LOOPBACK);
+            applicationProperties.getWebsocket().getCluster().setNodeId(nodeId);
+            applicationProperties.getWebsocket().getCluster().setNodeTimeoutMs(nodeTimeoutMs);
+            clusterPresenceService =
+                new ClusterPresenceService(userSocketService, presenceBroadcaster, Optional.of(transport), applicationProperties);
+            clusterPresenceService.init();
+        }
+
+        private void connect(String username, String sessionId) {
+            userSocketService.connect(username, sessionId);
+            clusterPresenceService.localPresenceChanged(username);
+        }
+
+        private void disconnect(String username, String sessionId) {
+            userSocketService.disconnect(username, sessionId);
+            clusterPresenceService.localPresenceChanged(username);
+        }
+
+        private void updateStatus(String username, UserState state) {
+            userSocketService.updateStatus(username, state);
+            clusterPresenceService.localPresenceChanged(username);
+        }
+    }
+}
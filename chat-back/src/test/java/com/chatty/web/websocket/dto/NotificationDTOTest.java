@@ -0,0 +1,55 @@
+package com.chatty.web.websocket.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chatty.domain.enumeration.NotificationType;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.MessageBuilder;
+
+class NotificationDTOTest {
+
+    private MappingJackson2MessageConverter messageConverter;
+
+    @BeforeEach
+    public void setup() {
+        messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @Test
+    void testMessageIsDecodedInOnePass() {
+        Object notification = decode("{\"type\":\"INCOMING_MESSAGE\",\"room\":12,\"message\":\"hello\"}");
+
+        assertThat(notification).isInstanceOf(MessageNotificationDTO.class);
+        MessageNotificationDTO message = (MessageNotificationDTO) notification;
+        assertThat(message.getType()).isEqualTo(NotificationType.INCOMING_MESSAGE);
+        assertThat(message.getRoom()).isEqualTo(12L);
+        assertThat(message.getMessage()).isEqualTo("hello");
+    }
+
+    @Test
+    void testCallsShareTheirClass() {
+        Object notification = decode("{\"type\":\"REJECTED_CALL\",\"room\":3}");
+
+        assertThat(notification).isInstanceOf(CallNotificationDTO.class);
+        assertThat(((CallNotificationDTO) notification).getType()).isEqualTo(NotificationType.REJECTED_CALL);
+        assertThat(((CallNotificationDTO) notification).getRoom()).isEqualTo(3L);
+    }
+
+    @Test
+    void testTypesNotSentByClientsAreRejected() {
+        assertThatThrownBy(() -> decode("{\"type\":\"ONLINE_USERS\",\"room\":3}")).isInstanceOf(MessageConversionException.class);
+    }
+
+    private Object decode(String json) {
+        Message<byte[]> message = MessageBuilder.withPayload(json.getBytes(StandardCharsets.UTF_8)).build();
+        return messageConverter.fromMessage(message, NotificationDTO.class);
+    }
+}
@@ -55,6 +55,11 @@ export class AppComponent implements OnInit {
       ).subscribe((loggedUser: string | undefined) => {
       this.idle.watch();
       this.websocketService.subscribeToTopic(loggedUser!);
+      if (loggedUser) {
+        this.roomService.findByLoggedUser().subscribe((res: HttpResponse<IRoom[]>) => {
+          this.websocketService.subscribeToRooms((res.body ?? []).map(room => room.id!));
+        });
+      }
     });
     this.websocketService.notification$.subscribe((content: string) => {
       this.toastrService.show(content);
@@ -1,7 +1,7 @@
 import {Injectable} from '@angular/core';
 import {HttpClient, HttpHeaders} from '@angular/common/http';
 import {Observable} from 'rxjs';
-import {map} from 'rxjs/operators';
+import {finalize, map, shareReplay} from 'rxjs/operators';
 
 import {ApplicationConfigService} from '../config/application-config.service';
 import {Login} from '../../models/login.model';
@@ -10,10 +10,14 @@ import {UserState} from "../../models/user-state.model";
 
 type JwtToken = {
     id_token: string;
+    refresh_token: string;
 };
 
 @Injectable({providedIn: 'root'})
 export class AuthServerProvider {
+    // the refresh in flight, shared by the requests refused at the same time: a refresh token is used once
+    private refreshing?: Observable<string>;
+
     constructor(
         private http: HttpClient,
         private applicationConfigService: ApplicationConfigService
@@ -26,6 +30,32 @@ export class AuthServerProvider {
         return tokenInLocalStorage ?? tokenInSessionStorage ?? '';
     }
 
+    getRefreshToken(): string {
+        return localStorage.getItem('refreshToken') ?? sessionStorage.getItem('refreshToken') ?? '';
+    }
+
+    /**
+     * Gets a new access token for the refresh token, without the password, and stores it next to the refresh token.
+     * The refresh token is used once: the new one returned replaces it.
+     */
+    refreshToken(): Observable<string> {
+        if (!this.refreshing) {
+            this.refreshing = this.http
+                .post<JwtToken>(SERVER_API_URL + 'api/authenticate/refresh', {refreshToken: this.getRefreshToken()})
+                .pipe(
+                    map(response => {
+                        const storage = localStorage.getItem('refreshToken') ? localStorage : sessionStorage;
+                        storage.setItem('authenticationToken', response.id_token);
+                        storage.setItem('refreshToken', response.refresh_token);
+                        return response.id_token;
+                    }),
+                    finalize(() => (this.refreshing = undefined)),
+                    shareReplay(1)
+                );
+        }
+        return this.refreshing;
+    }
+
     login(credentials: Login): Observable<void> {
         return this.http
             .post<JwtToken>(SERVER_API_URL + 'api/authenticate', credentials)
@@ -33,8 +63,15 @@ export class AuthServerProvider {
     }
 
     logout(): Observable<void> {
+        const refreshToken = this.getRefreshToken();
+        if (refreshToken) {
+            // the refresh token is revoked on the server, whether or not the request succeeds the tokens are forgotten
+            this.http.post(SERVER_API_URL + 'api/authenticate/revoke', {refreshToken}).subscribe({error: () => undefined});
+        }
         return new Observable(observer => {
             localStorage.removeItem('authenticationToken');
+            localStorage.removeItem('refreshToken');
+            sessionStorage.removeItem('refreshToken');
             localStorage.removeItem('userState');
             sessionStorage.removeItem('authenticationToken');
             sessionStorage.removeItem('userState');
@@ -47,11 +84,15 @@ export class AuthServerProvider {
         if (rememberMe) {
             localStorage.setItem('authenticationToken', jwt);
             sessionStorage.removeItem('authenticationToken');
+            localStorage.setItem('refreshToken', response.refresh_token);
+            sessionStorage.removeItem('refreshToken');
             localStorage.setItem('userState', UserState.ONLINE);
             sessionStorage.removeItem('userState');
         } else {
             sessionStorage.setItem('authenticationToken', jwt);
             localStorage.removeItem('authenticationToken');
+            sessionStorage.setItem('refreshToken', response.refresh_token);
+            localStorage.removeItem('refreshToken');
             sessionStorage.setItem('userState', UserState.ONLINE);
             localStorage.removeItem('userState');
         }
@@ -1,10 +1,11 @@
 import { Injectable } from '@angular/core';
 import { HttpInterceptor, HttpRequest, HttpHandler, HttpEvent, HttpErrorResponse } from '@angular/common/http';
-import { Observable } from 'rxjs';
-import { tap } from 'rxjs/operators';
+import { Observable, throwError } from 'rxjs';
+import { catchError, switchMap } from 'rxjs/operators';
 import { Router } from '@angular/router';
 import {StateStorageService} from '../auth/state-storage.service';
 import {AccountService} from '../auth/account.service';
+import {AuthServerProvider} from '../auth/auth-jwt.service';
 import {LoginService} from '../../shared/services/login.service';
 
 @Injectable()
@@ -13,20 +14,37 @@ export class AuthExpiredInterceptor implements HttpInterceptor {
     private loginService: LoginService,
     private stateStorageService: StateStorageService,
     private router: Router,
-    private accountService: AccountService
+    private accountService: AccountService,
+    private authServerProvider: AuthServerProvider
   ) {}
 
   intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
     return next.handle(request).pipe(
-      tap({
-        error: (err: HttpErrorResponse) => {
-          if (err.status === 401 && err.url && !err.url.includes('api/account') && this.accountService.isAuthenticated()) {
-            this.stateStorageService.storeUrl(this.router.routerState.snapshot.url);
-            this.loginService.logout();
-            this.router.navigate(['/login']);
-          }
-        },
+      catchError((err: HttpErrorResponse) => {
+        if (err.status !== 401 || !err.url || err.url.includes('api/authenticate')) {
+          return throwError(() => err);
+        }
+        if (this.authServerProvider.getRefreshToken()) {
+          // the access token expired: get a new one with the refresh token, and send the request again
+          return this.authServerProvider.refreshToken().pipe(
+            catchError(() => {
+              this.expired(err);
+              return throwError(() => err);
+            }),
+            switchMap(jwt => next.handle(request.clone({ setHeaders: { Authorization: `Bearer ${jwt}` } })))
+          );
+        }
+        this.expired(err);
+        return throwError(() => err);
       })
     );
   }
+
+  private expired(err: HttpErrorResponse): void {
+    if (err.url && !err.url.includes('api/account') && this.accountService.isAuthenticated()) {
+      this.stateStorageService.storeUrl(this.router.routerState.snapshot.url);
+      this.loginService.logout();
+      this.router.navigate(['/login']);
+    }
+  }
 }
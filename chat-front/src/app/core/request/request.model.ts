@@ -9,3 +9,11 @@ export interface Search {
 }
 
 export interface SearchWithPagination extends Search, Pagination {}
+
+/**
+ * A page of a Spring Data Slice: the content, without the total count, and whether it is the last one.
+ */
+export interface ISlice<T> {
+  content: T[];
+  last: boolean;
+}
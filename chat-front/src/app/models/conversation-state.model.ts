@@ -1,4 +0,0 @@
-export enum ConversationState {
-    DELIVERED = 'DELIVERED',
-    SEEN = 'SEEN',
- }
@@ -1,8 +1,19 @@
+import {IUserSocket} from "./user-socket.model";
+import {UserState} from "./user-state.model";
+
 export interface Notification {
-    content?: string | null;
     type: NotificationType;
-    metadata?: Map<string, string> | string;
+    content?: string | null;
     time?: Date;
+    room?: number;
+    // login of the sender of a call or a message
+    user?: string;
+    message?: string;
+    users?: IUserSocket[];
+    changes?: { username: string, state: UserState, version: number }[];
+    version?: number;
+    // rooms read by other members, up to the given conversation
+    receipts?: { room: number, user: string, conversation: number }[];
 }
 
 export enum NotificationType {
@@ -12,5 +23,9 @@ export enum NotificationType {
     INCOMING_CALL = 'INCOMING_CALL',
     REJECTED_CALL = 'REJECTED_CALL',
     CANCELLED_CALL = 'CANCELLED_CALL',
-    ACCEPTED_CALL = 'ACCEPTED_CALL'
+    ACCEPTED_CALL = 'ACCEPTED_CALL',
+    ROOM_JOINED = 'ROOM_JOINED',
+    ROOM_LEFT = 'ROOM_LEFT',
+    SEEN = 'SEEN',
+    MESSAGE_REJECTED = 'MESSAGE_REJECTED'
 }
@@ -30,8 +30,9 @@ export class ChatConversationComponent implements OnInit, OnDestroy {
   scrollTop?: number;
   message: string = '';
   size: number = 5;
-  page: number = 0;
-  totalPages: number = 0;
+  // id of the oldest conversation loaded, the cursor of the next page
+  before?: number;
+  last: boolean = false;
   conversations: { user: IUser, message: string, timestamp: Date }[] = [];
   isLoading: boolean = false;
 
@@ -102,10 +103,13 @@ export class ChatConversationComponent implements OnInit, OnDestroy {
     if (this.room) {
       this.isLoading = true;
       const {id} = this.room;
-      return this.conversationService.loadAllMessagesByRoom(id!, {page: this.page, size: this.size}).pipe(
+      return this.conversationService.loadMessagesByRoomBefore(id!, this.size, this.before).pipe(
         map((res: any) => {
-          const conversations: IConversation[] = res.body?.content;
-          this.totalPages = res.body?.totalPages || 1;
+          const conversations: IConversation[] = res.body?.content || [];
+          this.last = res.body?.last ?? true;
+          if (conversations.length) {
+            this.before = conversations[conversations.length - 1].id;
+          }
           return conversations.reverse()
             .map((conversation) => {
               return {
@@ -117,7 +121,6 @@ export class ChatConversationComponent implements OnInit, OnDestroy {
         }),
         finalize(() => {
           this.isLoading = false;
-          this.page++;
           setTimeout(() => {
             this.scrollTop = this.scroll!.nativeElement.scrollHeight + 100;
           }, 50);
@@ -143,15 +146,12 @@ export class ChatConversationComponent implements OnInit, OnDestroy {
       return;
     }
     const {id} = this.room;
-    let metadata = new Map<string, string>();
-    metadata.set("MESSAGE", this.message);
-    metadata.set("ROOM", String(id));
-    this.sendNotification(metadata);
+    this.sendNotification(id);
   }
 
-  sendNotification(metadata: any): void {
+  sendNotification(room: number): void {
     if (this.sender) {
-      this.chatCallNotificationService.sendNotificationTo(metadata, null, NotificationType.INCOMING_MESSAGE);
+      this.chatCallNotificationService.sendNotificationTo(room, this.message, NotificationType.INCOMING_MESSAGE);
       this.conversations.push({user: this.sender, message: this.message, timestamp: new Date()});
       setTimeout(() => {
         this.scrollTop = this.scroll!.nativeElement.scrollHeight + 100;
@@ -165,7 +165,7 @@ export class ChatConversationComponent implements OnInit, OnDestroy {
   }
 
   onScrollUp() {
-    if (this.page >= this.totalPages) {
+    if (this.last || this.isLoading) {
       return;
     }
     this.conversationsSubscription = this.loadMessages()
@@ -37,36 +37,26 @@ export class ChatCallNotificationService {
   }
 
   interceptCall(callState: string, room: string): void {
-    let metadata = new Map<string, string>();
-    metadata.set("ROOM", room);
     switch (callState) {
       case CallState.CANCELLED_CALL:
-        this.sendNotificationTo(metadata, null, NotificationType.CANCELLED_CALL);
+        this.sendNotificationTo(Number(room), null, NotificationType.CANCELLED_CALL);
         break;
       case CallState.ACCEPTED_CALL:
-        this.sendNotificationTo(metadata, null, NotificationType.ACCEPTED_CALL);
+        this.sendNotificationTo(Number(room), null, NotificationType.ACCEPTED_CALL);
         break;
       case CallState.REJECTED_CALL:
-        this.sendNotificationTo(metadata, null, NotificationType.REJECTED_CALL);
+        this.sendNotificationTo(Number(room), null, NotificationType.REJECTED_CALL);
         break;
       case CallState.INCOMING_CALL:
-        this.sendNotificationTo(metadata, null, NotificationType.INCOMING_CALL);
+        this.sendNotificationTo(Number(room), null, NotificationType.INCOMING_CALL);
     }
   }
 
-  sendNotificationTo(metadata: Map<string, string>, content: string | null, type: NotificationType): void {
-    if (metadata) {
-      let jsonObject: any = {};
-      metadata.forEach((value, key) => {
-        jsonObject[key] = value
-      });
+  sendNotificationTo(room: number, message: string | null, type: NotificationType): void {
+    if (room) {
       this.websocketService.sendNotification(
         '/chat',
-        {
-          content: content,
-          type,
-          metadata: JSON.stringify(jsonObject),
-        }
+        message !== null ? {type, room, message} : {type, room}
       );
     }
   }
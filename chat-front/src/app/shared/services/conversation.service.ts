@@ -3,7 +3,7 @@ import {Observable, Subject} from 'rxjs';
 import {WebsocketService} from './websocket.service';
 import {CallState} from '../../models/call-state.model';
 import {NotificationType} from '../../models/notification.model';
-import {Pagination} from "../../core/request/request.model";
+import {ISlice, Pagination} from "../../core/request/request.model";
 import {createRequestOption} from "../../core/request/request-util";
 import {SERVER_API_URL} from "../../config/app.constants";
 import {HttpClient, HttpResponse} from "@angular/common/http";
@@ -26,6 +26,11 @@ export class ConversationService {
     return this.http.get<IConversation[]>(this.resourceUrl + '/room/' + roomId, {params: options, observe: 'response'});
   }
 
+  loadMessagesByRoomBefore(roomId: number, size: number, before?: number): Observable<HttpResponse<ISlice<IConversation>>> {
+    const options = createRequestOption(before ? {before, size} : {size});
+    return this.http.get<ISlice<IConversation>>(this.resourceUrl + '/room/' + roomId + '/history', {params: options, observe: 'response'});
+  }
+
   getCurrentUserConversationsCountByStateGroupedByRoom(): Observable<HttpResponse<any[]>> {
     return this.http.get<any[]>(this.resourceUrl + '/logged/delivered/by-room/count', {observe: 'response'});
   }
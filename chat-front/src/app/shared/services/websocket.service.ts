@@ -2,6 +2,7 @@ import {Injectable} from '@angular/core';
 import {Location} from '@angular/common';
 import {Router} from '@angular/router';
 import {BehaviorSubject, Observable, ReplaySubject, Subject, Subscription} from 'rxjs';
+import {take} from 'rxjs/operators';
 import * as SockJS from 'sockjs-client';
 import * as Stomp from 'webstomp-client';
 import {AuthServerProvider} from '../../core/auth/auth-jwt.service';
@@ -20,6 +21,11 @@ export class WebsocketService {
   private connectionSubject: ReplaySubject<void> = new ReplaySubject(1);
   private connectionSubscription: Subscription | null = null;
   private stompSubscription: Stomp.Subscription | null = null;
+  // subscriptions to the room topics, by room id
+  private roomSubscriptions: Map<number, Stomp.Subscription> = new Map();
+  private loggedUser: string | null = null;
+  // version of the last online users snapshot or user state change applied
+  private presenceVersion = 0;
   private userStateSubject$: Subject<{ user: string, content: string, state: UserState }> = new Subject();
   readonly userState$: Observable<{ user: string, content: string, state: UserState }> = this.userStateSubject$.asObservable();
   private callStateSubject$: Subject<{ room: string, user: IUser, content: string, state: CallState }> = new Subject();
@@ -30,6 +36,8 @@ export class WebsocketService {
   readonly userSocketList$: Observable<UserSocket[]> = this.userSocketListSubject$.asObservable();
   private messageSubject$: Subject<{ user: IUser, message: string, room: number }> = new Subject();
   readonly message$: Observable<{ user: IUser, message: string, room: number }> = this.messageSubject$.asObservable();
+  private seenSubject$: Subject<{ room: number, user: string, conversation: number }> = new Subject();
+  readonly seen$: Observable<{ room: number, user: string, conversation: number }> = this.seenSubject$.asObservable();
 
   constructor(
     private router: Router,
@@ -42,15 +50,15 @@ export class WebsocketService {
     if (this.stompClient?.connected) {
       return;
     }
-    let url = environment.wsEndpoint;
-    const authToken = this.authServerProvider.getToken();
-    if (authToken) {
-      url += '?access_token=' + authToken;
-    }
-    const socket: WebSocket = new SockJS(url);
+    const socket: WebSocket = new SockJS(environment.wsEndpoint);
     this.stompClient = Stomp.over(socket, {protocols: ['v12.stomp']});
     this.stompClient.debug = () => {};
     const headers: Stomp.ConnectionHeaders = {};
+    const authToken = this.authServerProvider.getToken();
+    if (authToken) {
+      // the session is authenticated on the CONNECT frame, keeping the token out of the URLs of the transport
+      Object.assign(headers, { Authorization: 'Bearer ' + authToken });
+    }
     this.stompClient.connect(headers, () => {
       this.connectionSubject.next();
     });
@@ -75,6 +83,7 @@ export class WebsocketService {
     if (this.connectionSubscription) {
       return;
     }
+    this.loggedUser = loggedUser;
     this.connectionSubscription = this.connectionSubject.subscribe(() => {
       if (this.stompClient) {
         this.stompSubscription = this.stompClient.subscribe(
@@ -84,7 +93,8 @@ export class WebsocketService {
             this.handleNotification(payload);
           });
         this.stompSubscription = this.stompClient.subscribe(
-          '/user/' + loggedUser + '/queue/messages',
+          // resolved by the server to the queue of this session, with both the simple broker and the relay
+          '/user/queue/messages',
           (data: Stomp.Message) => {
             const payload: Notification = JSON.parse(data.body);
             this.handleNotification(payload);
@@ -93,7 +103,15 @@ export class WebsocketService {
     });
   }
 
+  subscribeToRooms(roomIds: number[]): void {
+    this.connectionSubject.pipe(take(1)).subscribe(() => {
+      roomIds.forEach(roomId => this.subscribeToRoom(roomId));
+    });
+  }
+
   unsubscribe(): void {
+    this.roomSubscriptions.forEach(subscription => subscription.unsubscribe());
+    this.roomSubscriptions.clear();
     if (this.stompSubscription) {
       this.stompSubscription.unsubscribe();
       this.stompSubscription = null;
@@ -109,7 +127,7 @@ export class WebsocketService {
       this.stompClient.send(
         destination,
         JSON.stringify(notification),
-        {}
+        this.authHeaders()
       );
     }
   }
@@ -119,7 +137,7 @@ export class WebsocketService {
       this.stompClient.send(
         '/online-users',
         '',
-        {}
+        this.authHeaders()
       );
     }
   }
@@ -129,48 +147,87 @@ export class WebsocketService {
       this.stompClient.send(
         '/update-user-state',
         state,
-        {}
+        this.authHeaders()
       );
     }
   }
 
+  private subscribeToRoom(roomId: number): void {
+    if (!this.stompClient || this.roomSubscriptions.has(roomId)) {
+      return;
+    }
+    this.roomSubscriptions.set(roomId, this.stompClient.subscribe(
+      '/topic/room.' + roomId,
+      (data: Stomp.Message) => {
+        const payload: Notification = JSON.parse(data.body);
+        this.handleNotification(payload);
+      }, this.authHeaders()));
+  }
+
+  // the access tokens are short-lived: once the token of the CONNECT frame expires, the server only accepts the frames
+  // carrying the renewed token of the user
+  private authHeaders(): { Authorization?: string } {
+    const authToken = this.authServerProvider.getToken();
+    return authToken ? { Authorization: 'Bearer ' + authToken } : {};
+  }
+
   private handleNotification(notification: Notification): void {
-    let {type, content, metadata} = notification;
-    typeof metadata === 'string' ? metadata = JSON.parse(metadata) : null;
-    const data = metadata ? new Map(Object.entries(metadata)) : null;
-    const room = data?.get("ROOM");
-    const user = data?.get("USER");
+    let {type, content} = notification;
+    const room = String(notification.room);
+    const user: IUser = {login: notification.user};
     switch (type) {
       case NotificationType.USER_STATE:
-        const state = data?.get("STATE");
-        !content ? content = '' : null;
-        this.userStateSubject$.next({user, content, state: state});
+        // the changes of a broadcast window, in version order
+        const changes = notification.changes || [];
+        const appliedVersion = this.presenceVersion;
+        // changes already part of the last online users snapshot are skipped
+        changes.filter(change => change.version > appliedVersion).forEach(change => {
+          this.userStateSubject$.next({user: change.username, content: content || '', state: change.state});
+        });
+        this.presenceVersion = Math.max(appliedVersion, notification.version || 0);
         break;
       case NotificationType.INCOMING_CALL:
         !content ? content = '' : null;
-        this.callStateSubject$.next({room, content, user: JSON.parse(user) ,state: CallState.INCOMING_CALL});
+        this.callStateSubject$.next({room, content, user, state: CallState.INCOMING_CALL});
         break;
       case NotificationType.INCOMING_MESSAGE:
-        const message = data?.get("MESSAGE");
-        this.messageSubject$.next({user: JSON.parse(user), message, room});
+        // room messages are published to every subscriber of the room, the sender included
+        if (notification.user === this.loggedUser) {
+          break;
+        }
+        this.messageSubject$.next({user, message: notification.message || '', room: Number(notification.room)});
         content ? this.notificationSubject$.next(content) : null;
         break;
       case NotificationType.ACCEPTED_CALL:
         !content ? content = '' : null;
-        this.callStateSubject$.next({room, content, user: JSON.parse(user) , state: CallState.ACCEPTED_CALL});
+        this.callStateSubject$.next({room, content, user, state: CallState.ACCEPTED_CALL});
         break;
       case NotificationType.REJECTED_CALL:
         !content ? content = '' : null;
-        this.callStateSubject$.next({room, content, user: JSON.parse(user) , state: CallState.REJECTED_CALL});
+        this.callStateSubject$.next({room, content, user, state: CallState.REJECTED_CALL});
         break;
       case NotificationType.CANCELLED_CALL:
         !content ? content = '' : null;
-        this.callStateSubject$.next({room, content, user: JSON.parse(user) , state: CallState.CANCELLED_CALL});
+        this.callStateSubject$.next({room, content, user, state: CallState.CANCELLED_CALL});
+        break;
+      case NotificationType.ROOM_JOINED:
+        this.subscribeToRoom(Number(notification.room));
+        break;
+      case NotificationType.ROOM_LEFT:
+        // the server already unsubscribed the session: the subscription is only forgotten, to subscribe again on a join
+        this.roomSubscriptions.delete(Number(notification.room));
         break;
       case NotificationType.ONLINE_USERS:
-        const resultStr = data?.get("USERS");
-        const users = resultStr ? resultStr.split(",") : [];
-        this.userSocketListSubject$.next(JSON.parse(users));
+        const users: UserSocket[] = notification.users || [];
+        this.presenceVersion = notification.version || 0;
+        this.userSocketListSubject$.next(users.filter(userSocket => userSocket.username !== this.loggedUser));
+        break;
+      case NotificationType.SEEN:
+        (notification.receipts || []).forEach(receipt => this.seenSubject$.next(receipt));
+        break;
+      case NotificationType.MESSAGE_REJECTED:
+        // a message of the logged user the server was too busy to save, not delivered to the room
+        content ? this.notificationSubject$.next(content) : null;
         break;
       default:
     }